@@ -0,0 +1,59 @@
+package engine;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import models.GameBoard;
+import models.GameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Whole games played through the engine alone, random legal moves until a result.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark {
+
+  @Param({"3", "15"})
+  int size;
+
+  @Benchmark
+  public GameState playRandomGame() {
+    return play(size);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public GameState playRandomGameAllCores() {
+    return play(size);
+  }
+
+  private static GameState play(int size) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    GameBoard board = GameEngine.createGame('X', size, Math.min(size, 5));
+    GameEngine.joinGame(board);
+    GameState status = GameState.CONTINUE;
+    while (status == GameState.CONTINUE) {
+      int x = random.nextInt(size);
+      int y = random.nextInt(size);
+      if (!board.isOccupied(x, y)) {
+        GameEngine.applyMove(board, board.getTurn(), x, y);
+        status = GameEngine.getStatus(board);
+      }
+    }
+    return status;
+  }
+}
@@ -0,0 +1,78 @@
+package engine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import models.GameBoard;
+import models.GameBoardBenchmark.BenchmarkBoards;
+import models.Message;
+import models.Move;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of move validation and of the objects allocated for every move.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveValidationBenchmark {
+
+  @Param({"3", "15", "25"})
+  int size;
+
+  @Param({"0.1", "0.5", "0.9"})
+  double fill;
+
+  private GameBoard board;
+
+  private Move validMove;
+
+  private Move takenMove;
+
+  /** Pick one free and one taken cell for the player whose turn it is.
+   *
+   */
+  @Setup
+  public void setUp() {
+    board = BenchmarkBoards.filled(size, fill, new Random(4156));
+    for (int cell = 0; cell < size * size; cell++) {
+      Move move = new Move(board.getTurn() == 1 ? board.getP1() : board.getP2(),
+          cell / size, cell % size);
+      if (board.isOccupied(move.getMoveX(), move.getMoveY())) {
+        takenMove = move;
+      } else {
+        validMove = move;
+      }
+    }
+  }
+
+  @Benchmark
+  public boolean isValidFreeCell() {
+    return GameEngine.isValid(board, validMove, new Message());
+  }
+
+  @Benchmark
+  public boolean isValidTakenCell() {
+    return GameEngine.isValid(board, takenMove, new Message());
+  }
+
+  @Benchmark
+  public Message allocateMoveAndMessage() {
+    Move move = new Move(validMove.getPlayer(), validMove.getMoveX(), validMove.getMoveY());
+    Message msg = new Message();
+    msg.setFullMessage(move.getMoveX() >= 0, 200, "");
+    return msg;
+  }
+}
@@ -0,0 +1,139 @@
+package models;
+
+import com.google.gson.Gson;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the GameBoard hot paths across board sizes and fill levels.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBoardBenchmark {
+
+  @Param({"3", "15", "25"})
+  int size;
+
+  // Share of the cells holding a piece
+  @Param({"0.1", "0.5", "0.9"})
+  double fill;
+
+  private GameBoard board;
+
+  private int lastX;
+
+  private int lastY;
+
+  private int emptyX;
+
+  private int emptyY;
+
+  private final Gson gson = new Gson();
+
+  /** Fill the board at random, skipping any piece which would end the game.
+   *
+   */
+  @Setup
+  public void setUp() {
+    board = BenchmarkBoards.filled(size, fill, new Random(4156));
+    for (int cell = 0; cell < size * size; cell++) {
+      int x = cell / size;
+      int y = cell % size;
+      if (board.isOccupied(x, y)) {
+        lastX = x;
+        lastY = y;
+      } else {
+        emptyX = x;
+        emptyY = y;
+      }
+    }
+  }
+
+  @Benchmark
+  public GameState checkGameResultAfterMove() {
+    return board.checkGameResult(lastX, lastY);
+  }
+
+  @Benchmark
+  public GameState checkGameResultWholeBoard() {
+    return board.checkGameResult();
+  }
+
+  @Benchmark
+  public char[][] getBoardState() {
+    return board.getBoardState();
+  }
+
+  @Benchmark
+  public boolean setBoardState() {
+    board.setBoardState(emptyX, emptyY, 'X');
+    board.setBoardState(emptyX, emptyY, '\u0000');
+    return board.isOccupied(emptyX, emptyY);
+  }
+
+  @Benchmark
+  public String toJson() {
+    return gson.toJson(board);
+  }
+
+  /** Boards shared by the benchmarks.
+   *
+   */
+  public static final class BenchmarkBoards {
+
+    private BenchmarkBoards() {
+    }
+
+    /** Build a started game with about the given share of cells taken and no winner yet.
+     *
+     * @param size int: Board size
+     * @param fill double: Share of the cells to fill
+     * @param random Random: Source of the cell order
+     * @return GameBoard: The board
+     */
+    public static GameBoard filled(int size, double fill, Random random) {
+      GameBoard board = new GameBoard(size, Math.min(size, 5));
+      board.setP1(new Player('X', 1));
+      board.setP2(new Player('O', 2));
+      board.setGameStarted(true);
+      List<Integer> cells = new ArrayList<>();
+      for (int cell = 0; cell < size * size; cell++) {
+        cells.add(cell);
+      }
+      Collections.shuffle(cells, random);
+      int target = (int) Math.ceil(fill * size * size);
+      int placed = 0;
+      for (int i = 0; i < cells.size() && placed < target; i++) {
+        int x = cells.get(i) / size;
+        int y = cells.get(i) % size;
+        board.setBoardState(x, y, placed % 2 == 0 ? 'X' : 'O');
+        if (board.checkGameResult(x, y) != GameState.CONTINUE) {
+          board.setBoardState(x, y, '\u0000');
+        } else {
+          placed++;
+        }
+      }
+      board.setMoveCount(placed);
+      board.setTurn(placed % 2 + 1);
+      return board;
+    }
+  }
+}
@@ -0,0 +1,282 @@
+package tools;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Drives concurrent games against a running server and reports throughput and latencies.
+ *
+ * <p>Every game thread plays games over and over on its own game id: it starts the game, joins
+ * it, plays random free cells for both players until the server rejects a move because the game
+ * is over, then reads the board. Only accepted moves count towards the move throughput and
+ * latency, the rejected last move of each game is counted apart. Any response but a 200 is an
+ * error, not a rejection, and abandons the game. The WebSocket listeners follow the games
+ * round-robin with the delta protocol and measure the time from sending a move to receiving its
+ * delta.
+ *
+ * <p>Run against a server started separately, for example:
+ * <pre>
+ * mvn -P benchmark test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=tools.LoadGenerator -Dexec.args="--games=64 --listeners=128"
+ * </pre>
+ * Options: --base (http://localhost:8080), --games (16), --listeners (32), --seconds (30),
+ * --size (3), --prefix (load).
+ *
+ */
+public class LoadGenerator {
+
+  private final String base;
+
+  private final int games;
+
+  private final int listeners;
+
+  private final long seconds;
+
+  private final int size;
+
+  private final String prefix;
+
+  private final HttpClient client = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(Duration.ofSeconds(5))
+      .build();
+
+  // Send time of every move still waiting for its broadcast, keyed by gameId:seq
+  private final ConcurrentHashMap<String, Long> pendingMoves = new ConcurrentHashMap<>();
+
+  private final List<long[]> moveLatencies = Collections.synchronizedList(new ArrayList<>());
+
+  private final LatencyLog fanOutLatencies = new LatencyLog();
+
+  private final LongAdder requests = new LongAdder();
+
+  private final LongAdder gamesPlayed = new LongAdder();
+
+  // Moves refused because the game was over, kept out of the move latencies and throughput
+  private final LongAdder rejectedMoves = new LongAdder();
+
+  private final LongAdder messages = new LongAdder();
+
+  private final LongAdder errors = new LongAdder();
+
+  LoadGenerator(Map<String, String> options) {
+    base = options.getOrDefault("base", "http://localhost:8080");
+    games = Integer.parseInt(options.getOrDefault("games", "16"));
+    listeners = Integer.parseInt(options.getOrDefault("listeners", "32"));
+    seconds = Long.parseLong(options.getOrDefault("seconds", "30"));
+    size = Integer.parseInt(options.getOrDefault("size", "3"));
+    prefix = options.getOrDefault("prefix", "load");
+  }
+
+  /** Main method of the load generator.
+   *
+   * @param args Options in the form --name=value
+   * @throws Exception If the run is interrupted or the server cannot be reached
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (!arg.startsWith("--") || eq < 0) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      options.put(arg.substring(2, eq), arg.substring(eq + 1));
+    }
+    new LoadGenerator(options).run();
+  }
+
+  void run() throws InterruptedException {
+    List<WebSocket> sockets = new ArrayList<>();
+    for (int i = 0; i < listeners; i++) {
+      sockets.add(listen(prefix + (i % games)));
+    }
+
+    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+    CountDownLatch done = new CountDownLatch(games);
+    long start = System.nanoTime();
+    for (int i = 0; i < games; i++) {
+      String gameId = prefix + i;
+      Random random = new Random(i);
+      Thread t = new Thread(() -> {
+        LatencyLog latencies = new LatencyLog();
+        try {
+          while (System.nanoTime() < deadline) {
+            playGame(gameId, random, latencies);
+          }
+        } catch (Exception e) {
+          errors.increment();
+          System.err.println(gameId + ": " + e);
+        } finally {
+          moveLatencies.add(latencies.toArray());
+          done.countDown();
+        }
+      }, "load-" + gameId);
+      t.start();
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+    // Give the last broadcasts a moment to arrive
+    Thread.sleep(500);
+    for (WebSocket socket : sockets) {
+      socket.abort();
+    }
+    report(elapsed);
+  }
+
+  private void playGame(String gameId, Random random, LatencyLog latencies) throws Exception {
+    post("/game/" + gameId + "/startgame", "type=X&size=" + size);
+    get("/game/" + gameId + "/joingame");
+    List<Integer> cells = new ArrayList<>();
+    for (int cell = 0; cell < size * size; cell++) {
+      cells.add(cell);
+    }
+    Collections.shuffle(cells, random);
+    for (int i = 0; i < cells.size(); i++) {
+      int x = cells.get(i) / size;
+      int y = cells.get(i) % size;
+      int seq = i + 1;
+      long sent = System.nanoTime();
+      if (listeners > 0) {
+        pendingMoves.put(gameId + ":" + seq, sent);
+      }
+      HttpResponse<String> response =
+          post("/game/" + gameId + "/move/" + (i % 2 + 1), "x=" + x + "&y=" + y);
+      long latency = System.nanoTime() - sent;
+      if (response.statusCode() != 200) {
+        // Already counted as an error, the game cannot go on
+        pendingMoves.remove(gameId + ":" + seq);
+        return;
+      }
+      if (!response.body().contains("\"moveValidity\":true")) {
+        // The game is over
+        pendingMoves.remove(gameId + ":" + seq);
+        rejectedMoves.increment();
+        break;
+      }
+      latencies.add(latency);
+    }
+    get("/game/" + gameId + "/gameboard");
+    gamesPlayed.increment();
+  }
+
+  private HttpResponse<String> post(String path, String form) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+        .header("Content-Type", "application/x-www-form-urlencoded")
+        .POST(HttpRequest.BodyPublishers.ofString(form))
+        .build();
+    return send(request);
+  }
+
+  private HttpResponse<String> get(String path) throws Exception {
+    return send(HttpRequest.newBuilder(URI.create(base + path)).GET().build());
+  }
+
+  private HttpResponse<String> send(HttpRequest request) throws Exception {
+    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    requests.increment();
+    if (response.statusCode() != 200) {
+      errors.increment();
+    }
+    return response;
+  }
+
+  private WebSocket listen(String gameId) {
+    String wsBase = base.replaceFirst("^http", "ws");
+    WebSocket.Listener listener = new WebSocket.Listener() {
+      private final StringBuilder text = new StringBuilder();
+
+      @Override
+      public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        text.append(data);
+        if (last) {
+          onMessage(text.toString());
+          text.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+      }
+    };
+    return client.newWebSocketBuilder()
+        .buildAsync(URI.create(wsBase + "/gameboard?protocol=delta&gameId=" + gameId), listener)
+        .join();
+  }
+
+  private void onMessage(String message) {
+    long received = System.nanoTime();
+    messages.increment();
+    JsonObject json = new JsonParser().parse(message).getAsJsonObject();
+    if (!"delta".equals(json.get("type").getAsString())) {
+      return;
+    }
+    // Several listeners may follow one game, every one of them counts
+    Long sent = pendingMoves.get(json.get("gameId").getAsString() + ":"
+        + json.get("seq").getAsInt());
+    if (sent != null && received > sent) {
+      fanOutLatencies.add(received - sent);
+    }
+  }
+
+  private void report(long elapsedNanos) {
+    double secs = elapsedNanos / 1e9;
+    long[] moves = moveLatencies.stream().flatMapToLong(Arrays::stream).toArray();
+    System.out.printf("games=%d listeners=%d size=%d duration=%.1fs%n", games, listeners, size,
+        secs);
+    System.out.printf("games played: %d, requests: %d (%.0f/s), errors: %d%n",
+        gamesPlayed.sum(), requests.sum(), requests.sum() / secs, errors.sum());
+    System.out.printf("moves: %d (%.0f/s), rejected: %d%n", moves.length, moves.length / secs,
+        rejectedMoves.sum());
+    printPercentiles("move latency", moves);
+    System.out.printf("websocket messages: %d (%.0f/s)%n", messages.sum(), messages.sum() / secs);
+    printPercentiles("broadcast fan-out latency", fanOutLatencies.toArray());
+  }
+
+  private static void printPercentiles(String name, long[] nanos) {
+    if (nanos.length == 0) {
+      System.out.println(name + ": no samples");
+      return;
+    }
+    Arrays.sort(nanos);
+    System.out.printf("%s ms: p50=%.3f p99=%.3f p999=%.3f max=%.3f%n", name,
+        percentile(nanos, 0.50), percentile(nanos, 0.99), percentile(nanos, 0.999),
+        nanos[nanos.length - 1] / 1e6);
+  }
+
+  private static double percentile(long[] sorted, double p) {
+    int index = (int) Math.ceil(p * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  // Growable array of latency samples in nanoseconds
+  private static final class LatencyLog {
+    private long[] samples = new long[1024];
+    private int count;
+
+    private synchronized void add(long nanos) {
+      if (count == samples.length) {
+        samples = Arrays.copyOf(samples, count * 2);
+      }
+      samples[count++] = nanos;
+    }
+
+    private synchronized long[] toArray() {
+      return Arrays.copyOf(samples, count);
+    }
+  }
+}
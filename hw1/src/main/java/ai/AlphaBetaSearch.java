@@ -0,0 +1,347 @@
+package ai;
+
+import java.util.concurrent.ThreadLocalRandom;
+import models.TicTacToeTable;
+
+/** Server player which picks moves by alpha-beta search.
+ *
+ * <p>The search deepens one ply at a time until the difficulty's depth, the end of the game or
+ * the time budget is reached, and plays the best move of the last finished depth. Its
+ * transposition table is shared by every game and thread, and keyed by the canonical hash of
+ * {@link Position}, so a position or any of its symmetries is searched once and then answered
+ * from the table. Perfect play on the 3 x 3 board looks the move up in {@link TicTacToeTable}
+ * instead of searching. Boards larger than 5 x 5 only consider cells near the pieces already
+ * played and score unfinished positions by the open lines of each side.
+ */
+public class AlphaBetaSearch {
+
+  // Score of a win one ply away, each further ply is worth one less
+  static final int WIN = 30000;
+
+  private static final int WIN_THRESHOLD = WIN - 1000;
+
+  private static final int MAX_EVALUATION = 20000;
+
+  // Worth of an open line by how many pieces it holds, eight times more per piece up to the cap
+  private static final long[] LINE_WEIGHTS = lineWeights(64);
+
+  // Boards up to this size search every empty cell
+  private static final int FULL_WIDTH_SIZE = 5;
+
+  // Cells within this many rows and columns of a piece are searched on larger boards
+  private static final int NEIGHBOURHOOD = 2;
+
+  private static final int MAX_TABLE_DEPTH = 255;
+
+  // Nodes between two checks of the clock
+  private static final int CLOCK_INTERVAL = 1024;
+
+  private static final TimeoutException TIMEOUT = new TimeoutException();
+
+  private final TranspositionTable table;
+
+  private final long moveNanos;
+
+  /** Create a player.
+   *
+   * @param cacheEntries int: Positions kept in the shared transposition table
+   * @param moveMillis long: Time budget of one move
+   */
+  public AlphaBetaSearch(int cacheEntries, long moveMillis) {
+    this.table = new TranspositionTable(cacheEntries);
+    this.moveNanos = moveMillis * 1_000_000;
+  }
+
+  /** Choose a move for the piece to move.
+   *
+   * @param position Position: Position to play from, restored before returning
+   * @param difficulty Difficulty: How well to play
+   * @return int: Cell x * size + y, -1 if the game is over
+   */
+  public int chooseMove(Position position, Difficulty difficulty) {
+    int[] moves = orderedMoves(position, -1);
+    if (moves.length == 0) {
+      return -1;
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (random.nextDouble() < difficulty.getRandomMoveRate()) {
+      return moves[random.nextInt(moves.length)];
+    }
+    if (difficulty.getMaxDepth() >= position.getCellCount()) {
+      // The classic board is solved once for all positions, perfect play is a lookup
+      int state = position.tableState();
+      if (state >= 0) {
+        return TicTacToeTable.get().bestMove(state);
+      }
+    }
+    Search search = new Search(position, System.nanoTime() + moveNanos);
+    int best = moves[0];
+    int maxDepth = Math.min(difficulty.getMaxDepth(),
+        position.getCellCount() - position.getPieceCount());
+    for (int depth = 1; depth <= maxDepth; depth++) {
+      try {
+        best = search.root(depth);
+      } catch (TimeoutException e) {
+        break;
+      }
+      if (Math.abs(search.rootScore) >= WIN_THRESHOLD) {
+        // The game is decided, deeper searches would not change the move
+        break;
+      }
+    }
+    return best;
+  }
+
+  /** Score a position for the piece to move by the lines each side can still complete.
+   *
+   * @param position Position: Position to score
+   * @return int: Positive when the piece to move stands better
+   */
+  static int evaluate(Position position) {
+    int size = position.getSize();
+    int winLength = position.getWinLength();
+    long score = 0;
+    int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    for (int[] direction : directions) {
+      for (int x = 0; x < size; x++) {
+        for (int y = 0; y < size; y++) {
+          int endX = x + (winLength - 1) * direction[0];
+          int endY = y + (winLength - 1) * direction[1];
+          if (endX >= size || endY < 0 || endY >= size) {
+            continue;
+          }
+          int mine = 0;
+          int theirs = 0;
+          for (int i = 0; i < winLength; i++) {
+            byte piece = position.get((x + i * direction[0]) * size + y + i * direction[1]);
+            if (piece == position.getToMove()) {
+              mine++;
+            } else if (piece != 0) {
+              theirs++;
+            }
+          }
+          // A line holding both pieces can no longer be won by either
+          if (theirs == 0 && mine > 0) {
+            score += lineWeight(mine);
+          } else if (mine == 0 && theirs > 0) {
+            score -= lineWeight(theirs);
+          }
+        }
+      }
+    }
+    return (int) Math.max(-MAX_EVALUATION, Math.min(MAX_EVALUATION, score));
+  }
+
+  private static long lineWeight(int pieces) {
+    return LINE_WEIGHTS[Math.min(pieces, LINE_WEIGHTS.length - 1)];
+  }
+
+  private static long[] lineWeights(int count) {
+    long[] weights = new long[count];
+    long weight = 1;
+    for (int pieces = 0; pieces < count; pieces++) {
+      weights[pieces] = weight;
+      weight = Math.min(weight * 8, MAX_EVALUATION);
+    }
+    return weights;
+  }
+
+  /** List the cells worth playing, the cached best move first, then the most crowded cells.
+   *
+   * @param position Position: Position to play from
+   * @param first int: Cell to put first, -1 for none
+   * @return int[]: Empty cells to try, in order
+   */
+  static int[] orderedMoves(Position position, int first) {
+    int size = position.getSize();
+    int cells = position.getCellCount();
+    if (position.getPieceCount() == 0 && size > FULL_WIDTH_SIZE) {
+      return new int[] {size / 2 * size + size / 2};
+    }
+    int reach = size > FULL_WIDTH_SIZE ? NEIGHBOURHOOD : size;
+    int[] moves = new int[cells];
+    int[] weights = new int[cells];
+    int count = 0;
+    for (int cell = 0; cell < cells; cell++) {
+      if (position.get(cell) != 0) {
+        continue;
+      }
+      int near = 0;
+      int adjacent = 0;
+      int x = cell / size;
+      int y = cell % size;
+      for (int nx = Math.max(0, x - reach); nx <= Math.min(size - 1, x + reach); nx++) {
+        for (int ny = Math.max(0, y - reach); ny <= Math.min(size - 1, y + reach); ny++) {
+          if (position.get(nx * size + ny) != 0) {
+            near++;
+            if (Math.abs(nx - x) <= 1 && Math.abs(ny - y) <= 1) {
+              adjacent++;
+            }
+          }
+        }
+      }
+      if (near == 0 && size > FULL_WIDTH_SIZE) {
+        continue;
+      }
+      // Center cells first on an empty small board, crowded cells first otherwise
+      int center = size - Math.abs(x - size / 2) - Math.abs(y - size / 2);
+      moves[count] = cell;
+      weights[count] = cell == first ? Integer.MAX_VALUE : adjacent * 4 * size + center;
+      count++;
+    }
+    // Insertion sort by weight, the lists are short
+    for (int i = 1; i < count; i++) {
+      int move = moves[i];
+      int weight = weights[i];
+      int j = i - 1;
+      while (j >= 0 && weights[j] < weight) {
+        moves[j + 1] = moves[j];
+        weights[j + 1] = weights[j];
+        j--;
+      }
+      moves[j + 1] = move;
+      weights[j + 1] = weight;
+    }
+    int[] ordered = new int[count];
+    System.arraycopy(moves, 0, ordered, 0, count);
+    return ordered;
+  }
+
+  // One search, its position and clock
+  private final class Search {
+    private final Position position;
+    private final long deadline;
+    private int nodes;
+    private int rootScore;
+
+    private Search(Position position, long deadline) {
+      this.position = position;
+      this.deadline = deadline;
+    }
+
+    private int root(int depth) {
+      int t = position.canonicalTransform();
+      long key = position.key(t);
+      long entry = table.get(key);
+      int cached = entry == 0 ? -1 : TranspositionTable.moveOf(entry);
+      if (entry != 0 && cached >= 0 && TranspositionTable.depthOf(entry) == depth
+          && TranspositionTable.flagOf(entry) == TranspositionTable.EXACT) {
+        // Already searched exactly this deep, a deeper result would play above the difficulty
+        rootScore = TranspositionTable.scoreOf(entry);
+        return position.fromCanonical(t, cached);
+      }
+      // Nor may a deeper best move win the ties of a shallower search
+      int first = cached >= 0 && TranspositionTable.depthOf(entry) <= depth
+          ? position.fromCanonical(t, cached) : -1;
+      int[] moves = orderedMoves(position, first);
+      int alpha = -WIN - 1;
+      int best = moves[0];
+      for (int move : moves) {
+        int score = scoreMove(move, depth, alpha, WIN + 1, 0);
+        if (score > alpha) {
+          alpha = score;
+          best = move;
+        }
+      }
+      rootScore = alpha;
+      table.put(key, alpha, Math.min(depth, MAX_TABLE_DEPTH), TranspositionTable.EXACT,
+          position.toCanonical(t, best));
+      return best;
+    }
+
+    // Play a move, score it for the side which played it and take it back
+    private int scoreMove(int move, int depth, int alpha, int beta, int ply) {
+      position.play(move);
+      try {
+        if (position.winsAt(move)) {
+          return WIN - ply;
+        }
+        if (position.isFull()) {
+          return 0;
+        }
+        return -negamax(depth - 1, -beta, -alpha, ply + 1);
+      } finally {
+        // Also when the search runs out of time, the caller's position must come back whole
+        position.undo(move);
+      }
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+      if (++nodes % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+        throw TIMEOUT;
+      }
+      if (depth == 0) {
+        return evaluate(position);
+      }
+      int t = position.canonicalTransform();
+      long key = position.key(t);
+      long entry = table.get(key);
+      int first = -1;
+      if (entry != 0) {
+        int cached = TranspositionTable.moveOf(entry);
+        first = cached < 0 ? -1 : position.fromCanonical(t, cached);
+        if (TranspositionTable.depthOf(entry) >= depth) {
+          int score = fromTable(TranspositionTable.scoreOf(entry), ply);
+          int flag = TranspositionTable.flagOf(entry);
+          if (flag == TranspositionTable.EXACT) {
+            return score;
+          } else if (flag == TranspositionTable.LOWER) {
+            alpha = Math.max(alpha, score);
+          } else {
+            beta = Math.min(beta, score);
+          }
+          if (alpha >= beta) {
+            return score;
+          }
+        }
+      }
+      int originalAlpha = alpha;
+      int best = -WIN - 1;
+      int bestMove = -1;
+      for (int move : orderedMoves(position, first)) {
+        int score = scoreMove(move, depth, alpha, beta, ply);
+        if (score > best) {
+          best = score;
+          bestMove = move;
+        }
+        alpha = Math.max(alpha, score);
+        if (alpha >= beta) {
+          break;
+        }
+      }
+      if (bestMove < 0) {
+        // No cell near the pieces is left on a large board
+        return evaluate(position);
+      }
+      int flag = best <= originalAlpha ? TranspositionTable.UPPER
+          : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+      table.put(key, toTable(best, ply), Math.min(depth, MAX_TABLE_DEPTH), flag,
+          position.toCanonical(t, bestMove));
+      return best;
+    }
+  }
+
+  // Wins are stored relative to the node, so an entry means the same at any ply
+  private static int toTable(int score, int ply) {
+    if (score >= WIN_THRESHOLD) {
+      return score + ply;
+    }
+    return score <= -WIN_THRESHOLD ? score - ply : score;
+  }
+
+  private static int fromTable(int score, int ply) {
+    if (score >= WIN_THRESHOLD) {
+      return score - ply;
+    }
+    return score <= -WIN_THRESHOLD ? score + ply : score;
+  }
+
+  // Thrown without a stack trace when a search runs out of time
+  private static final class TimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private TimeoutException() {
+      super("Search out of time", null, false, false);
+    }
+  }
+}
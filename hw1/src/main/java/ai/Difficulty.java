@@ -0,0 +1,44 @@
+package ai;
+
+/** How well the server plays.
+ *
+ */
+public enum Difficulty {
+  // Looks one move ahead and often plays at random
+  EASY(1, 0.4),
+  // Looks three moves ahead and sometimes plays at random
+  MEDIUM(3, 0.1),
+  // Searches as deep as the time budget allows, perfect on the 3 x 3 board
+  HARD(Integer.MAX_VALUE, 0);
+
+  private final int maxDepth;
+
+  private final double randomMoveRate;
+
+  Difficulty(int maxDepth, double randomMoveRate) {
+    this.maxDepth = maxDepth;
+    this.randomMoveRate = randomMoveRate;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public double getRandomMoveRate() {
+    return randomMoveRate;
+  }
+
+  /** Parse a difficulty given by a client, ignoring case.
+   *
+   * @param name String: easy, medium or hard
+   * @return Difficulty: The level, or null if the name is unknown
+   */
+  public static Difficulty fromName(String name) {
+    for (Difficulty difficulty : values()) {
+      if (difficulty.name().equalsIgnoreCase(name)) {
+        return difficulty;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,262 @@
+package ai;
+
+import java.util.Random;
+import models.GameBoard;
+import models.Player;
+import models.TicTacToeTable;
+
+/** Copy of a board for the search, hashed the same way in all its eight symmetries.
+ *
+ * <p>Cells are numbered x * size + y and hold 0, {@link #X} or {@link #O}. Every rotation and
+ * reflection of the board has its own Zobrist hash, updated with each piece, and the smallest one
+ * is the canonical hash: the eight symmetric boards share it, and so share their transposition
+ * table entries. A move found on one of them is stored in the frame of the transform which gave
+ * the canonical hash and mapped back with the inverse transform.
+ */
+public class Position {
+
+  static final byte X = 1;
+
+  static final byte O = 2;
+
+  private static final int TRANSFORMS = 8;
+
+  private static final int MAX_CELLS = GameBoard.MAX_SIZE * GameBoard.MAX_SIZE;
+
+  // Zobrist keys of each piece on each cell, fixed so hashes mean the same in every run
+  private static final long[][] PIECE_KEYS = new long[3][MAX_CELLS];
+
+  private static final long[] SHAPE_KEYS = new long[(GameBoard.MAX_SIZE + 1) * 32];
+
+  private static final long O_TO_MOVE_KEY;
+
+  // Cell maps of the eight transforms and of their inverses, by board size
+  private static final int[][][] TRANSFORM_MAPS = new int[GameBoard.MAX_SIZE + 1][][];
+
+  private static final int[][][] INVERSE_MAPS = new int[GameBoard.MAX_SIZE + 1][][];
+
+  static {
+    Random random = new Random(0x7ac7ac70eL);
+    for (int cell = 0; cell < MAX_CELLS; cell++) {
+      PIECE_KEYS[X][cell] = random.nextLong();
+      PIECE_KEYS[O][cell] = random.nextLong();
+    }
+    for (int i = 0; i < SHAPE_KEYS.length; i++) {
+      SHAPE_KEYS[i] = random.nextLong();
+    }
+    O_TO_MOVE_KEY = random.nextLong();
+    for (int size = GameBoard.MIN_SIZE; size <= GameBoard.MAX_SIZE; size++) {
+      TRANSFORM_MAPS[size] = new int[TRANSFORMS][size * size];
+      INVERSE_MAPS[size] = new int[TRANSFORMS][size * size];
+      for (int t = 0; t < TRANSFORMS; t++) {
+        for (int x = 0; x < size; x++) {
+          for (int y = 0; y < size; y++) {
+            int to = transform(t, x, y, size);
+            TRANSFORM_MAPS[size][t][x * size + y] = to;
+            INVERSE_MAPS[size][t][to] = x * size + y;
+          }
+        }
+      }
+    }
+  }
+
+  private final int size;
+
+  private final int winLength;
+
+  private final byte[] cells;
+
+  private final long[] hashes = new long[TRANSFORMS];
+
+  private byte toMove;
+
+  private int pieceCount;
+
+  private Position(int size, int winLength) {
+    this.size = size;
+    this.winLength = winLength;
+    this.cells = new byte[size * size];
+  }
+
+  /** Copy a board, with the piece of the player whose turn it is to move.
+   *
+   * @param board GameBoard: Board with both players
+   * @return Position: The copy
+   */
+  public static Position of(GameBoard board) {
+    Position position = new Position(board.getSize(), board.getWinLength());
+    for (int x = 0; x < board.getSize(); x++) {
+      for (int y = 0; y < board.getSize(); y++) {
+        char cell = board.getCell(x, y);
+        if (cell != '\u0000') {
+          position.place(x * board.getSize() + y, cell == 'X' ? X : O);
+        }
+      }
+    }
+    Player mover = board.getTurn() == 1 ? board.getP1() : board.getP2();
+    position.toMove = mover != null && mover.getType() == 'O' ? O : X;
+    return position;
+  }
+
+  private static int transform(int t, int x, int y, int size) {
+    int last = size - 1;
+    switch (t) {
+      case 0:
+        return x * size + y;
+      case 1:
+        return y * size + last - x;
+      case 2:
+        return (last - x) * size + last - y;
+      case 3:
+        return (last - y) * size + x;
+      case 4:
+        return x * size + last - y;
+      case 5:
+        return (last - x) * size + y;
+      case 6:
+        return y * size + x;
+      default:
+        return (last - y) * size + last - x;
+    }
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  int getWinLength() {
+    return winLength;
+  }
+
+  int getCellCount() {
+    return cells.length;
+  }
+
+  byte get(int cell) {
+    return cells[cell];
+  }
+
+  byte getToMove() {
+    return toMove;
+  }
+
+  int getPieceCount() {
+    return pieceCount;
+  }
+
+  boolean isFull() {
+    return pieceCount == cells.length;
+  }
+
+  // State of a classic position in the TicTacToeTable, -1 for any other board
+  int tableState() {
+    if (size != GameBoard.DEFAULT_SIZE || winLength != GameBoard.DEFAULT_SIZE) {
+      return -1;
+    }
+    // X and O are the digits of the table's base 3 code, cell 0 the lowest
+    int code = 0;
+    for (int cell = cells.length - 1; cell >= 0; cell--) {
+      code = code * 3 + cells[cell];
+    }
+    return TicTacToeTable.get().stateOf(code, toMove == X ? 'X' : 'O');
+  }
+
+  // Put the piece to move on a cell and pass the turn
+  void play(int cell) {
+    place(cell, toMove);
+    toMove = toMove == X ? O : X;
+  }
+
+  // Take back the last piece played on a cell
+  void undo(int cell) {
+    toMove = cells[cell];
+    remove(cell);
+  }
+
+  private void place(int cell, byte piece) {
+    cells[cell] = piece;
+    pieceCount++;
+    int[][] maps = TRANSFORM_MAPS[size];
+    for (int t = 0; t < TRANSFORMS; t++) {
+      hashes[t] ^= PIECE_KEYS[piece][maps[t][cell]];
+    }
+  }
+
+  private void remove(int cell) {
+    byte piece = cells[cell];
+    cells[cell] = 0;
+    pieceCount--;
+    int[][] maps = TRANSFORM_MAPS[size];
+    for (int t = 0; t < TRANSFORMS; t++) {
+      hashes[t] ^= PIECE_KEYS[piece][maps[t][cell]];
+    }
+  }
+
+  // Transform which gives the smallest hash
+  int canonicalTransform() {
+    int best = 0;
+    for (int t = 1; t < TRANSFORMS; t++) {
+      if (hashes[t] < hashes[best]) {
+        best = t;
+      }
+    }
+    return best;
+  }
+
+  /** Get the key of the position in the transposition table.
+   *
+   * @param t int: Canonical transform, see {@link #canonicalTransform()}
+   * @return long: Hash shared by the symmetric positions with the same piece to move
+   */
+  long key(int t) {
+    long key = hashes[t] ^ SHAPE_KEYS[size * 32 + winLength];
+    return toMove == O ? key ^ O_TO_MOVE_KEY : key;
+  }
+
+  int toCanonical(int t, int cell) {
+    return TRANSFORM_MAPS[size][t][cell];
+  }
+
+  int fromCanonical(int t, int cell) {
+    return INVERSE_MAPS[size][t][cell];
+  }
+
+  // Whether the piece on a cell is part of winLength in a row
+  boolean winsAt(int cell) {
+    byte piece = cells[cell];
+    int x = cell / size;
+    int y = cell % size;
+    return count(piece, x, y, 0, 1) >= winLength || count(piece, x, y, 1, 0) >= winLength
+        || count(piece, x, y, 1, 1) >= winLength || count(piece, x, y, 1, -1) >= winLength;
+  }
+
+  /** Draw the position, one row per line, with the piece to move on the last line.
+   *
+   * @return String: Rows of X, O and '.', then "X to move" or "O to move"
+   */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    for (int cell = 0; cell < cells.length; cell++) {
+      text.append(cells[cell] == X ? 'X' : cells[cell] == O ? 'O' : '.');
+      if (cell % size == size - 1) {
+        text.append('\n');
+      }
+    }
+    return text.append(toMove == X ? 'X' : 'O').append(" to move").toString();
+  }
+
+  private int count(byte piece, int x, int y, int dx, int dy) {
+    int count = 1;
+    for (int sign = -1; sign <= 1; sign += 2) {
+      int nx = x + sign * dx;
+      int ny = y + sign * dy;
+      while (nx >= 0 && nx < size && ny >= 0 && ny < size && cells[nx * size + ny] == piece) {
+        count++;
+        nx += sign * dx;
+        ny += sign * dy;
+      }
+    }
+    return count;
+  }
+}
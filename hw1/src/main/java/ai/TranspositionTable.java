@@ -0,0 +1,80 @@
+package ai;
+
+/** Fixed-size search cache shared by every game and thread without locks.
+ *
+ * <p>Each slot holds the key XOR the data next to the data, so a slot torn by two threads
+ * writing at once fails the key check and reads as a miss instead of as a wrong entry. A slot is
+ * replaced by a different position, or by the same one searched at least as deep.
+ */
+class TranspositionTable {
+
+  static final int EXACT = 0;
+
+  static final int LOWER = 1;
+
+  static final int UPPER = 2;
+
+  // Set in every stored entry, so a stored entry is never 0
+  private static final long PRESENT = 1L << 62;
+
+  private final long[] checks;
+
+  private final long[] data;
+
+  private final int mask;
+
+  /** Create the table.
+   *
+   * @param entries int: Slots, rounded down to a power of two
+   */
+  TranspositionTable(int entries) {
+    int slots = Integer.highestOneBit(Math.max(1, entries));
+    checks = new long[slots];
+    data = new long[slots];
+    mask = slots - 1;
+  }
+
+  /** Look a position up.
+   *
+   * @param key long: Key of the position
+   * @return long: Packed entry, or 0 if the position is not cached
+   */
+  long get(long key) {
+    int slot = slot(key);
+    long entry = data[slot];
+    return (checks[slot] ^ entry) == key ? entry : 0;
+  }
+
+  void put(long key, int score, int depth, int flag, int move) {
+    int slot = slot(key);
+    long old = data[slot];
+    if ((checks[slot] ^ old) == key && depthOf(old) > depth) {
+      return;
+    }
+    // The move is stored + 1, so no move is 0
+    long entry = PRESENT | (score & 0xffffL) | (long) depth << 16 | (long) flag << 24
+        | (long) (move + 1) << 26;
+    data[slot] = entry;
+    checks[slot] = key ^ entry;
+  }
+
+  private int slot(long key) {
+    return (int) (key ^ key >>> 32) & mask;
+  }
+
+  static int scoreOf(long entry) {
+    return (short) entry;
+  }
+
+  static int depthOf(long entry) {
+    return (int) (entry >>> 16) & 0xff;
+  }
+
+  static int flagOf(long entry) {
+    return (int) (entry >>> 24) & 3;
+  }
+
+  static int moveOf(long entry) {
+    return (int) (entry >>> 26 & 0x3ff) - 1;
+  }
+}
@@ -0,0 +1,23 @@
+package controllers;
+
+import io.javalin.http.Context;
+import java.io.InputStream;
+
+/** Handler of a game route.
+ *
+ * <p>It returns the response body rather than setting it on the context, so that it can run on
+ * another thread than the request (see {@link ThreadModel#ASYNC}).
+ *
+ */
+@FunctionalInterface
+interface GameHandler {
+
+  /** Handle a request for a game.
+   *
+   * @param ctx Context: Request context, headers and status may be set on it
+   * @param gameId String: Id of the game the request is about
+   * @return InputStream: Response body, or null if the response has none
+   * @throws Exception Mapped to a response like the exceptions of any Javalin handler
+   */
+  InputStream handle(Context ctx, String gameId) throws Exception;
+}
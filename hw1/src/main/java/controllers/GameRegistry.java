@@ -0,0 +1,273 @@
+package controllers;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import models.GameBoard;
+
+/** Games hosted in memory, loaded from storage on first use.
+ *
+ * <p>The registry is a bounded cache in front of the game store: a game missing from memory is
+ * loaded by the loader when a request first asks for it, and cold games are dropped once there
+ * are too many of them or after their TTL. A change which cannot be stored drops its game from
+ * memory, so memory never runs ahead of storage and a dropped game is simply loaded again. An
+ * id the loader did not find is remembered for a short while, so clients polling a game which
+ * does not exist do not reach storage on every request, until a game with that id is put.
+ *
+ */
+public class GameRegistry {
+
+  // Game ids end up in URLs and in the GAMEHISTORY table, so keep them short and plain
+  private static final Pattern GAME_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+  // Number of locks the game ids are spread over, a power of two
+  private static final int LOCK_STRIPES = 256;
+
+  // How long an id the loader did not find is answered as missing without loading it again
+  private static final long MISS_TTL_MILLIS = 2000;
+
+  private final ConcurrentHashMap<String, GameRoom> games = new ConcurrentHashMap<>();
+
+  // Ids the loader did not find, with the time they may be loaded again
+  private final ConcurrentHashMap<String, Long> misses = new ConcurrentHashMap<>();
+
+  private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+  private final long idleTtlMillis;
+
+  private final long finishedTtlMillis;
+
+  private final int maxGames;
+
+  private final Function<String, GameBoard> loader;
+
+  private ScheduledExecutorService reaper;
+
+  /** Construct a registry that evicts games after they stay untouched for the given TTLs.
+   *
+   * @param idleTtlMillis long: How long an unfinished game may stay idle before eviction
+   * @param finishedTtlMillis long: How long a finished game is kept after its last access
+   * @param maxGames int: Most games kept in memory, the least recently used go first
+   * @param loader Function: Loads a game from storage, returns null for an unknown game
+   */
+  public GameRegistry(long idleTtlMillis, long finishedTtlMillis, int maxGames,
+      Function<String, GameBoard> loader) {
+    this.idleTtlMillis = idleTtlMillis;
+    this.finishedTtlMillis = finishedTtlMillis;
+    this.maxGames = maxGames;
+    this.loader = loader;
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /** Start the background task which evicts expired games.
+   *
+   * @param periodMillis long: Interval between two eviction sweeps
+   */
+  public void start(long periodMillis) {
+    reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "game-registry-reaper");
+      t.setDaemon(true);
+      return t;
+    });
+    reaper.scheduleAtFixedRate(() -> evictExpired(System.currentTimeMillis()),
+        periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /** Stop the eviction task.
+   *
+   */
+  public void stop() {
+    if (reaper != null) {
+      reaper.shutdownNow();
+      reaper = null;
+    }
+  }
+
+  public static boolean isValidGameId(String gameId) {
+    return gameId != null && GAME_ID_PATTERN.matcher(gameId).matches();
+  }
+
+  /** Get the lock which serializes every change to a game.
+   *
+   * <p>Locks are striped by game id rather than held by the rooms, so a game can be locked before
+   * it exists and stays locked while its room is replaced or evicted. Two games rarely share a
+   * stripe, and the games of different stripes proceed in parallel. They are explicit locks rather
+   * than monitors, because handlers hold them across storage writes and a virtual thread blocked
+   * inside synchronized pins its carrier thread up to JDK 23.
+   *
+   * @param gameId String: Game id
+   * @return ReentrantLock: Lock of the game's stripe
+   */
+  public ReentrantLock lockFor(String gameId) {
+    int h = gameId.hashCode();
+    return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+  }
+
+  /** Get the room of a game, loading the game if it is not in memory, and mark it as used.
+   *
+   * @param gameId String: Game id
+   * @return GameRoom: The room, or null if the game is neither in memory nor in storage
+   */
+  public GameRoom get(String gameId) {
+    GameRoom room = games.get(gameId);
+    if (room == null) {
+      Long retryAt = misses.get(gameId);
+      if (retryAt != null && System.currentTimeMillis() < retryAt) {
+        return null;
+      }
+      // Load under the game lock so two requests never load the same game twice
+      ReentrantLock lock = lockFor(gameId);
+      lock.lock();
+      try {
+        room = games.get(gameId);
+        if (room == null) {
+          GameBoard gameBoard = loader.apply(gameId);
+          if (gameBoard == null) {
+            recordMiss(gameId);
+            return null;
+          }
+          return put(gameId, gameBoard);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    room.touch();
+    return room;
+  }
+
+  /** Get the board of a game and mark it as recently used.
+   *
+   * @param gameId String: Game id
+   * @return GameBoard: The board, or null if the game is not hosted here or has no board yet
+   */
+  public GameBoard getBoard(String gameId) {
+    GameRoom room = get(gameId);
+    return room == null ? null : room.getGameBoard();
+  }
+
+  /** Host a board under the given game id, replacing any previous board of that game.
+   *
+   * @param gameId String: Game id
+   * @param gameBoard GameBoard: New board of the game
+   * @return GameRoom: The room hosting the game
+   */
+  public GameRoom put(String gameId, GameBoard gameBoard) {
+    misses.remove(gameId);
+    GameRoom room = games.computeIfAbsent(gameId, id -> new GameRoom(id, gameBoard));
+    room.setGameBoard(gameBoard);
+    room.touch();
+    if (games.size() > maxGames) {
+      // Make some room at once rather than scanning the games on every new one
+      evictColdest(games.size() - maxGames + Math.max(1, maxGames / 16), room);
+    }
+    return room;
+  }
+
+  public void remove(String gameId) {
+    games.remove(gameId);
+  }
+
+  /** Remove a game under its game lock without waiting for the lock.
+   *
+   * <p>For threads which a lock holder may be waiting on, such as the storage writer: the game is
+   * removed on the reaper thread once its lock is free, or at once if the reaper is not running.
+   *
+   * @param gameId String: Game id
+   */
+  public void removeLater(String gameId) {
+    ScheduledExecutorService executor = reaper;
+    if (executor != null) {
+      try {
+        executor.execute(() -> {
+          ReentrantLock lock = lockFor(gameId);
+          lock.lock();
+          try {
+            games.remove(gameId);
+          } finally {
+            lock.unlock();
+          }
+        });
+        return;
+      } catch (RejectedExecutionException e) {
+        // Stopped meanwhile
+      }
+    }
+    games.remove(gameId);
+  }
+
+  // Bounded like the games, past that misses are simply loaded again
+  private void recordMiss(String gameId) {
+    if (misses.size() < maxGames) {
+      misses.put(gameId, System.currentTimeMillis() + MISS_TTL_MILLIS);
+    }
+  }
+
+  public int size() {
+    return games.size();
+  }
+
+  // Drop the least recently used games, never the one just added
+  private void evictColdest(int count, GameRoom keep) {
+    PriorityQueue<GameRoom> coldest = new PriorityQueue<>(
+        Comparator.comparingLong(GameRoom::getLastAccessMillis).reversed());
+    for (GameRoom room : games.values()) {
+      if (room == keep) {
+        continue;
+      }
+      coldest.add(room);
+      if (coldest.size() > count) {
+        coldest.poll();
+      }
+    }
+    for (GameRoom room : coldest) {
+      evict(room);
+    }
+  }
+
+  /** Remove every game whose TTL has expired.
+   *
+   * @param now long: Current time in milliseconds
+   * @return int: Number of evicted games
+   */
+  int evictExpired(long now) {
+    misses.values().removeIf(retryAt -> now >= retryAt);
+    int evicted = 0;
+    for (GameRoom room : games.values()) {
+      long ttl = room.isFinished() ? finishedTtlMillis : idleTtlMillis;
+      if (now - room.getLastAccessMillis() > ttl && evict(room)) {
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /** Remove a room under its game lock, so no request is changing the game meanwhile.
+   *
+   * <p>A game whose lock is busy is in use and kept. Only trying the lock also keeps a caller which
+   * already holds another game's lock, as put does, from deadlocking with a request.
+   *
+   * @param room GameRoom: Room to remove
+   * @return boolean: Whether the room was removed
+   */
+  private boolean evict(GameRoom room) {
+    ReentrantLock lock = lockFor(room.getGameId());
+    if (!lock.tryLock()) {
+      return false;
+    }
+    try {
+      return games.remove(room.getGameId(), room);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
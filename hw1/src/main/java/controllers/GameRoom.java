@@ -0,0 +1,52 @@
+package controllers;
+
+import models.GameBoard;
+
+public class GameRoom {
+
+  private final String gameId;
+
+  private volatile GameBoard gameBoard;
+
+  private volatile long lastAccessMillis;
+
+  /** Construct a room hosting one game.
+   *
+   * @param gameId String: Id of the game hosted in this room
+   * @param gameBoard GameBoard: Current board of the game
+   */
+  public GameRoom(String gameId, GameBoard gameBoard) {
+    this.gameId = gameId;
+    this.gameBoard = gameBoard;
+    this.lastAccessMillis = System.currentTimeMillis();
+  }
+
+  public String getGameId() {
+    return gameId;
+  }
+
+  public GameBoard getGameBoard() {
+    return gameBoard;
+  }
+
+  public void setGameBoard(GameBoard gameBoard) {
+    this.gameBoard = gameBoard;
+  }
+
+  public long getLastAccessMillis() {
+    return lastAccessMillis;
+  }
+
+  public void touch() {
+    this.lastAccessMillis = System.currentTimeMillis();
+  }
+
+  /** Check whether the game in this room has ended with a winner or a draw.
+   *
+   * @return Boolean: true if the game is over
+   */
+  public boolean isFinished() {
+    GameBoard board = gameBoard;
+    return board != null && (board.getWinner() != 0 || board.isDraw());
+  }
+}
@@ -0,0 +1,353 @@
+package controllers;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Pairs waiting players into new games.
+ *
+ * <p>Clients are handed over through a lock-free inbox, so enqueueing never waits on the matcher.
+ * A single matcher thread drains the inbox in batches into three FIFO queues it owns, players
+ * who want X, players who want O and players who take either, and pairs the oldest waiting
+ * player with the oldest one it can play against. The older player of a pair is player 1 and
+ * moves first. A preference is kept for at most the preference wait, after which the player takes
+ * either piece rather than waiting forever for an opponent who wants the other one.
+ *
+ * @param <T> Client type, a WebSocket session on the server
+ */
+public class Matchmaker<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Matchmaker.class);
+
+  // Longest the matcher sleeps when nothing happens, so expired preferences are noticed
+  private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  /** Outcome of {@link #enqueue(Object, char, String, Runnable)}. */
+  public enum Admission {
+    QUEUED,
+    ALREADY_QUEUED,
+    FULL
+  }
+
+  /** Called on the matcher thread with every pair.
+   *
+   * @param <T> Client type
+   */
+  public interface MatchHandler<T> {
+
+    /** Start the game of a pair.
+     *
+     * @param p1 Ticket: Player 1, who moves first
+     * @param p2 Ticket: Player 2
+     * @param p1Type char: Piece of player 1, 'X' or 'O', player 2 has the other one
+     */
+    void onMatch(Ticket<T> p1, Ticket<T> p2, char p1Type);
+  }
+
+  // Life of a ticket, every change but the matcher settling a claim is a compare-and-set
+  private enum State {
+    QUEUED,
+    // Held by the matcher for a moment, while it takes the partner
+    CLAIMING,
+    CLAIMED,
+    CANCELLED
+  }
+
+  /** A waiting player.
+   *
+   * @param <T> Client type
+   */
+  public static final class Ticket<T> {
+    private final T client;
+    private final char piece;
+    private final String name;
+    private final long enqueuedNanos;
+    // Taken by whichever comes first, the matcher pairing it or the player cancelling it
+    private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+
+    private Ticket(T client, char piece, String name, long enqueuedNanos) {
+      this.client = client;
+      this.piece = piece;
+      this.name = name;
+      this.enqueuedNanos = enqueuedNanos;
+    }
+
+    public T getClient() {
+      return client;
+    }
+
+    /** Get the piece the player asked for.
+     *
+     * @return char: 'X', 'O', or '\u0000' for either
+     */
+    public char getPiece() {
+      return piece;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  private final int capacity;
+
+  private final long preferenceNanos;
+
+  private final MatchHandler<T> handler;
+
+  // Written by any thread, read only by the matcher
+  private final Queue<Ticket<T>> inbox = new ConcurrentLinkedQueue<>();
+
+  // Waiting tickets by client, to refuse a second ticket and to cancel
+  private final ConcurrentHashMap<T, Ticket<T>> waiting = new ConcurrentHashMap<>();
+
+  // Owned by the matcher thread
+  private final ArrayDeque<Ticket<T>> wantX = new ArrayDeque<>();
+
+  private final ArrayDeque<Ticket<T>> wantO = new ArrayDeque<>();
+
+  private final ArrayDeque<Ticket<T>> wantAny = new ArrayDeque<>();
+
+  private final List<ArrayDeque<Ticket<T>>> preferenceQueues = Arrays.asList(wantX, wantO);
+
+  private volatile Thread matcher;
+
+  private volatile boolean running;
+
+  /** Create a matchmaker.
+   *
+   * @param capacity int: Most players waiting at once
+   * @param preferenceMillis long: Longest a player waits for an opponent fitting its piece
+   * @param handler MatchHandler: Starts the game of each pair
+   */
+  public Matchmaker(int capacity, long preferenceMillis, MatchHandler<T> handler) {
+    this.capacity = capacity;
+    this.preferenceNanos = TimeUnit.MILLISECONDS.toNanos(preferenceMillis);
+    this.handler = handler;
+  }
+
+  /** Start the matcher thread.
+   *
+   */
+  public void start() {
+    running = true;
+    Thread t = new Thread(this::run, "matchmaker");
+    t.setDaemon(true);
+    matcher = t;
+    t.start();
+  }
+
+  /** Stop the matcher thread, the players still waiting are dropped.
+   *
+   */
+  public void stop() {
+    running = false;
+    Thread t = matcher;
+    if (t != null) {
+      LockSupport.unpark(t);
+      try {
+        t.join(TimeUnit.SECONDS.toMillis(5));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    waiting.clear();
+  }
+
+  /** Put a player in the queue.
+   *
+   * @param client T: The player
+   * @param piece char: 'X' or 'O' to ask for a piece, anything else for either
+   * @param name String: Player name for the game history, or null
+   * @return Admission: QUEUED, or why not
+   */
+  public Admission enqueue(T client, char piece, String name) {
+    return enqueue(client, piece, name, () -> { });
+  }
+
+  /** Put a player in the queue and run a callback before it can be matched.
+   *
+   * @param client T: The player
+   * @param piece char: 'X' or 'O' to ask for a piece, anything else for either
+   * @param name String: Player name for the game history, or null
+   * @param onQueued Runnable: Run if the player is queued, so a reply goes out before the match
+   * @return Admission: QUEUED, or why not
+   */
+  public Admission enqueue(T client, char piece, String name, Runnable onQueued) {
+    if (waiting.size() >= capacity) {
+      return Admission.FULL;
+    }
+    char wanted = piece == 'X' || piece == 'O' ? piece : '\u0000';
+    Ticket<T> ticket = new Ticket<>(client, wanted, name, System.nanoTime());
+    if (waiting.putIfAbsent(client, ticket) != null) {
+      return Admission.ALREADY_QUEUED;
+    }
+    onQueued.run();
+    inbox.add(ticket);
+    LockSupport.unpark(matcher);
+    return Admission.QUEUED;
+  }
+
+  /** Take a player out of the queue.
+   *
+   * @param client T: The player
+   * @return boolean: Whether it was waiting, false if it is already being matched
+   */
+  public boolean cancel(T client) {
+    Ticket<T> ticket = waiting.get(client);
+    if (ticket == null) {
+      return false;
+    }
+    while (true) {
+      State state = ticket.state.get();
+      if (state == State.QUEUED) {
+        if (ticket.state.compareAndSet(State.QUEUED, State.CANCELLED)) {
+          // The matcher drops the ticket when it reaches it
+          waiting.remove(client, ticket);
+          return true;
+        }
+      } else if (state == State.CLAIMING) {
+        // Settled within a few instructions, either matched or back in the queue to be cancelled
+        Thread.onSpinWait();
+      } else {
+        return false;
+      }
+    }
+  }
+
+  public int getWaitingCount() {
+    return waiting.size();
+  }
+
+  private void run() {
+    while (running) {
+      long now = System.nanoTime();
+      for (Ticket<T> ticket = inbox.poll(); ticket != null; ticket = inbox.poll()) {
+        queueFor(ticket.piece).add(ticket);
+      }
+      relaxPreferences(wantX, now);
+      relaxPreferences(wantO, now);
+      matchAll();
+      if (inbox.isEmpty()) {
+        LockSupport.parkNanos(this, idleNanos(now));
+      }
+    }
+  }
+
+  private ArrayDeque<Ticket<T>> queueFor(char piece) {
+    if (piece == 'X') {
+      return wantX;
+    }
+    return piece == 'O' ? wantO : wantAny;
+  }
+
+  // Move the players who waited too long for their piece to the players taking either
+  private void relaxPreferences(ArrayDeque<Ticket<T>> queue, long now) {
+    for (Ticket<T> head = live(queue); head != null && now - head.enqueuedNanos >= preferenceNanos;
+        head = live(queue)) {
+      wantAny.add(queue.poll());
+    }
+  }
+
+  // Sleep until the next preference expires, or a new ticket arrives
+  private long idleNanos(long now) {
+    long idle = MAX_IDLE_NANOS;
+    for (ArrayDeque<Ticket<T>> queue : preferenceQueues) {
+      Ticket<T> head = queue.peek();
+      if (head != null) {
+        idle = Math.min(idle, head.enqueuedNanos + preferenceNanos - now);
+      }
+    }
+    return Math.max(1, idle);
+  }
+
+  private void matchAll() {
+    while (true) {
+      Ticket<T> x = live(wantX);
+      Ticket<T> o = live(wantO);
+      Ticket<T> any = live(wantAny);
+      // The oldest player goes first, with the oldest opponent it fits
+      Ticket<T> first = oldest(oldest(x, o), any);
+      if (first == null) {
+        return;
+      }
+      queueFor(first == any ? '\u0000' : first.piece).poll();
+      Ticket<T> partner;
+      if (first == x) {
+        partner = oldest(o, any);
+      } else if (first == o) {
+        partner = oldest(x, any);
+      } else {
+        partner = oldest(oldest(x, o), live(wantAny));
+      }
+      if (partner == null) {
+        // Everyone left wants the same piece as the first player, or nobody is left
+        queueFor(first == any ? '\u0000' : first.piece).addFirst(first);
+        return;
+      }
+      queueFor(partner == x || partner == o ? partner.piece : '\u0000').poll();
+      match(first, first == any ? '\u0000' : first.piece, partner,
+          partner == x || partner == o ? partner.piece : '\u0000');
+    }
+  }
+
+  private void match(Ticket<T> p1, char p1Piece, Ticket<T> p2, char p2Piece) {
+    // A player who cancelled since the pair was chosen stays out, its partner waits on
+    if (!p1.state.compareAndSet(State.QUEUED, State.CLAIMING)) {
+      requeue(p2, p2Piece);
+      return;
+    }
+    if (!p2.state.compareAndSet(State.QUEUED, State.CLAIMED)) {
+      // A cancel of player 1 meanwhile has waited for this and takes it out of the queue again
+      p1.state.set(State.QUEUED);
+      requeue(p1, p1Piece);
+      return;
+    }
+    p1.state.set(State.CLAIMED);
+    waiting.remove(p1.client, p1);
+    waiting.remove(p2.client, p2);
+    char p1Type;
+    if (p1Piece != '\u0000') {
+      p1Type = p1Piece;
+    } else {
+      p1Type = p2Piece == 'X' ? 'O' : 'X';
+    }
+    try {
+      handler.onMatch(p1, p2, p1Type);
+    } catch (RuntimeException e) {
+      LOG.error("Cannot start the game of a match", e);
+    }
+  }
+
+  private void requeue(Ticket<T> ticket, char piece) {
+    queueFor(piece).addFirst(ticket);
+  }
+
+  // Head of a queue after dropping the cancelled tickets
+  private static <T> Ticket<T> live(ArrayDeque<Ticket<T>> queue) {
+    Ticket<T> head = queue.peek();
+    while (head != null && head.state.get() != State.QUEUED) {
+      queue.poll();
+      head = queue.peek();
+    }
+    return head;
+  }
+
+  private static <T> Ticket<T> oldest(Ticket<T> a, Ticket<T> b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    return a.enqueuedNanos - b.enqueuedNanos <= 0 ? a : b;
+  }
+}
@@ -1,444 +1,929 @@
 package controllers;
 
+import ai.AlphaBetaSearch;
+import ai.Difficulty;
+import ai.Position;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import engine.GameEngine;
 import io.javalin.Javalin;
-import java.io.IOException;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.Queue;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.NotFoundResponse;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import metrics.Metrics;
+import models.BoardCodec;
+import models.BoardDelta;
+import models.BoardSnapshot;
 import models.GameBoard;
-import models.GameState;
 import models.Message;
-import models.Move;
 import models.Player;
+import models.TicTacToeTable;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.websocket.api.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import storage.Durability;
+import storage.GameCheckpoint;
+import storage.GameRound;
+import storage.GameStore;
+import storage.MappedLogGameStore;
+import storage.MoveRecord;
+import storage.SqliteGameStore;
+import storage.StorageException;
+import storage.WriteBehindGameStore;
 
 public class PlayGame {
 
+  private static final Logger LOG = LoggerFactory.getLogger(PlayGame.class);
+
   private static final int PORT_NUMBER = 8080;
 
+  // Game id served by the original single-game routes (/startgame, /move/:playerId, ...)
+  static final String DEFAULT_GAME_ID = "default";
+
+  // Default win length of a board larger than 3 x 3, as in Gomoku
+  private static final int GOMOKU_WIN_LENGTH = 5;
+
+  private static final long GAME_IDLE_TTL_SECONDS =
+      Long.getLong("tictactoe.gameIdleTtlSeconds", 3600);
+
+  private static final long GAME_FINISHED_TTL_SECONDS =
+      Long.getLong("tictactoe.gameFinishedTtlSeconds", 300);
+
+  private static final long GAME_EVICTION_PERIOD_SECONDS =
+      Long.getLong("tictactoe.gameEvictionPeriodSeconds", 60);
+
+  // Finished rounds started longer ago than this are deleted from the history, 0 keeps them all
+  private static final long HISTORY_RETENTION_DAYS =
+      Long.getLong("tictactoe.historyRetentionDays", 30);
+
+  private static final long HISTORY_PRUNE_PERIOD_SECONDS =
+      Long.getLong("tictactoe.historyPrunePeriodSeconds", 3600);
+
+  // Rounds returned by /players/:name/games unless ?limit= asks for fewer
+  private static final int MAX_RECENT_GAMES = 100;
+
+  // Most games kept in memory, colder ones are dropped and loaded again when needed
+  private static final int MAX_CACHED_GAMES =
+      Integer.getInteger("tictactoe.maxCachedGames", 10000);
+
   private static Javalin app;
 
-  private static GameBoard gameBoard;
+  private static GameRegistry registry;
+
+  private static final String DB_URL =
+      System.getProperty("tictactoe.dbUrl", "jdbc:sqlite:tictactoe.db");
+
+  // How move writes reach the disk: SYNC, GROUP_COMMIT or ASYNC (see storage.Durability)
+  private static final Durability DURABILITY =
+      Durability.valueOf(System.getProperty("tictactoe.durability", "ASYNC"));
+
+  private static final long FLUSH_INTERVAL_MILLIS =
+      Long.getLong("tictactoe.flushIntervalMillis", 5);
+
+  private static final int FLUSH_BATCH_SIZE = Integer.getInteger("tictactoe.flushBatchSize", 256);
+
+  private static final int WRITE_QUEUE_CAPACITY =
+      Integer.getInteger("tictactoe.writeQueueCapacity", 65536);
+
+  // Messages a WebSocket session may have waiting before the oldest is dropped
+  private static final int WS_QUEUE_CAPACITY = Integer.getInteger("tictactoe.wsQueueCapacity", 64);
+
+  // How long a WebSocket message may wait before its session is disconnected as too slow
+  private static final long WS_MAX_LAG_MILLIS = Long.getLong("tictactoe.wsMaxLagMillis", 5000);
+
+  // Maximum size of the Jetty request thread pool, 0 keeps the Javalin default
+  private static final int JETTY_MAX_THREADS = Integer.getInteger("tictactoe.jettyMaxThreads", 0);
+
+  // Handler threads of the ASYNC thread model on JDKs without virtual threads
+  private static final int HANDLER_THREADS = Integer.getInteger("tictactoe.handlerThreads", 64);
+
+  // A checkpoint of the board is stored every this many moves and when a game ends
+  private static final int CHECKPOINT_INTERVAL =
+      Integer.getInteger("tictactoe.checkpointInterval", 16);
+
+  // Time the server player may think about one move on boards it cannot search to the end
+  private static final long AI_MOVE_MILLIS = Long.getLong("tictactoe.aiMoveMillis", 50);
+
+  // Positions cached by the server player, shared by all its games
+  private static final int AI_CACHE_ENTRIES =
+      Integer.getInteger("tictactoe.aiCacheEntries", 1 << 20);
+
+  private static final AlphaBetaSearch ai = new AlphaBetaSearch(AI_CACHE_ENTRIES, AI_MOVE_MILLIS);
+
+  // Most players waiting for an opponent at once
+  private static final int MATCH_QUEUE_CAPACITY =
+      Integer.getInteger("tictactoe.matchQueueCapacity", 50000);
+
+  // Longest a queued player waits for an opponent who leaves it the piece it asked for
+  private static final long MATCH_PREFERENCE_MILLIS =
+      Long.getLong("tictactoe.matchPreferenceMillis", 5000);
+
+  // Threads creating matched games in the BLOCKING thread model, ASYNC uses the handler executor
+  private static final int MATCH_START_THREADS =
+      Integer.getInteger("tictactoe.matchStartThreads", 4);
+
+  // Matched games are named after the server start, so ids of earlier runs are not reused
+  private static final String MATCH_ID_PREFIX =
+      "m" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+  private static final AtomicLong matchCount = new AtomicLong();
 
   private static final Gson gson = new Gson();
 
-  private static Connection connection;
+  private static GameStore store;
+
+  // Runs the game handlers in the ASYNC thread model, null in the BLOCKING one
+  private static ExecutorService handlerExecutor;
+
+  // Deletes old history rounds, null when the retention is disabled
+  private static ScheduledExecutorService historyPruner;
 
-  private static Statement stmt;
+  private static Matchmaker<Session> matchmaker;
 
-  private static ResultSet res;
+  // Creates the games of matched pairs, so the matcher thread never waits on the store
+  private static ExecutorService matchStarter;
+
+  // Open the storage engine chosen by tictactoe.storage, sqlite or mappedlog, read at startup
+  private static GameStore openStore() {
+    String storage = System.getProperty("tictactoe.storage", "sqlite");
+    if ("mappedlog".equals(storage)) {
+      String logDir = System.getProperty("tictactoe.logDir", "tictactoe-log");
+      LOG.info("Opened move log {}", logDir);
+      return new MappedLogGameStore(Paths.get(logDir),
+          Integer.getInteger("tictactoe.logSegmentBytes", 64 * 1024 * 1024));
+    }
+    if (!"sqlite".equals(storage)) {
+      throw new StorageException("Unknown storage engine " + storage, null);
+    }
+    LOG.info("Opened database {}", DB_URL);
+    return new SqliteGameStore(DB_URL);
+  }
 
   /** Main method of the application.
    *
    * @param args Command line arguments
    */
-  public static void main(final String[] args) throws SQLException {
+  public static void main(final String[] args) {
     try {
-      Class.forName("org.sqlite.JDBC");
-      connection = DriverManager.getConnection("jdbc:sqlite:tictactoe.db");
-      connection.setAutoCommit(false);
-      stmt = connection.createStatement();
-      System.out.println("Opened database successfully");
-
-      // Create game_history Table if not exists
-      String sql = "CREATE TABLE IF NOT EXISTS GAMEHISTORY"
-                    + "(moveId INT PRIMARY KEY NOT NULL,"
-                    + " moveType VARCHAR(1) NOT NULL,"
-                    + " playerId INT NOT NULL,"
-                    + " moveX INT NOT NULL,"
-                    + " moveY INT NOT NULL,"
-                    + " gameStarted INT NOT NULL,"
-                    + " isDraw INT NOT NULL,"
-                    + " winner INT NOT NULL)";
-      stmt.executeUpdate(sql);
-      connection.commit();
-
-      // Check if need to reload game history
-      sql = "SELECT COUNT(*) AS count FROM GAMEHISTORY;";
-      res = stmt.executeQuery(sql);
-      int moveCount = res.getInt("count");
-      if (gameBoard == null && moveCount > 0) {
-        // reload players and all moves history
-        // moveCount >= 1: reboot the whole game with p1 and p2 and all moves
-        sql = "SELECT * FROM GAMEHISTORY;";
-        res = stmt.executeQuery(sql);
-        while (res.next()) {
-          int moveId = res.getInt("moveId");
-          if (moveId == 0) {
-            int p1Id = res.getInt("playerId");
-            char p1Type = res.getString("moveType").charAt(0);
-            int gameStarted = res.getInt("gameStarted");
-            if (gameStarted == 0 && p1Type == 'N' && p1Id == 0) {
-              gameBoard = new GameBoard();
-            } else if (gameStarted == 0) {
-              // reload player1
-              gameBoard = new GameBoard(new Player(p1Type, p1Id));
-              System.out.println("Successfully reload player1.");
-            } else {
-              // reload player1 and player2 and set the game as started
-              int p2Id = p1Id + 1;
-              char p2Type = p1Type == 'X' ? 'O' : 'X';
-              // Set the game as started at the same time
-              gameBoard = new GameBoard(new Player(p1Type, p1Id), new Player(p2Type, p2Id));
-              System.out.println("Successfully restart the game with two players.");
-            }
-          } else {
-            // moveId > 0: reload the move and set turn for the next move
-            char type = res.getString("moveType").charAt(0);
-            int x = res.getInt("moveX");
-            int y = res.getInt("moveY");
-            gameBoard.setBoardState(x, y, type);
-            System.out.println("Successfully reload the moveId = " + moveId);
-            int isDraw = res.getInt("isDraw");
-            int winner = res.getInt("winner");
-            if (isDraw == 1) {
-              gameBoard.setDraw(true);
-              gameBoard.setGameStarted(false);
-            } else if (winner != 0) {
-              gameBoard.setWinner(winner);
-              gameBoard.setGameStarted(false);
-            } else {
-              gameBoard.setTurn(moveId % 2 + 1);
-            }
-          }
-        }
-        System.out.println("Game reload successfully");
+      WriteBehindGameStore journal = new WriteBehindGameStore(openStore(), DURABILITY,
+          FLUSH_INTERVAL_MILLIS, FLUSH_BATCH_SIZE, WRITE_QUEUE_CAPACITY);
+      journal.setFailureListener(PlayGame::discardLater);
+      store = journal;
+    } catch (StorageException e) {
+      LOG.error("Cannot open the game history", e);
+      if (store != null) {
+        store.close();
       }
-    } catch (RuntimeException e) {
-      throw e;
-    } catch (Exception e) {
-      System.err.println(e.getClass().getName() + ": " + e.getMessage());
-      res.close();
-      stmt.close();
-      connection.close();
       System.exit(0);
-    } finally {
-      res.close();
-      stmt.close();
-      connection.close();
     }
+    // Solve the classic board once, before the first move needs it
+    LOG.info("Solved {} tic-tac-toe states", TicTacToeTable.get().getStateCount());
+
+    // Games are loaded from the store when first used, not at startup
+    registry = new GameRegistry(GAME_IDLE_TTL_SECONDS * 1000, GAME_FINISHED_TTL_SECONDS * 1000,
+        MAX_CACHED_GAMES, PlayGame::loadGame);
+    registry.start(GAME_EVICTION_PERIOD_SECONDS * 1000);
+    startHistoryPruner();
+
+    // BLOCKING or ASYNC, see ThreadModel, read at startup so both can be compared on one build
+    ThreadModel threadModel =
+        ThreadModel.valueOf(System.getProperty("tictactoe.threadModel", "BLOCKING"));
+    handlerExecutor = threadModel == ThreadModel.ASYNC
+        ? ThreadModel.newHandlerExecutor(HANDLER_THREADS) : null;
 
     app = Javalin.create(config -> {
       config.addStaticFiles("/public");
+      config.requestLogger(PlayGame::recordRequest);
+      if (JETTY_MAX_THREADS > 0) {
+        config.server(() -> new Server(new QueuedThreadPool(JETTY_MAX_THREADS,
+            Math.min(8, JETTY_MAX_THREADS))));
+      }
     }).start(PORT_NUMBER);
 
+    // A failed DB write fails the request but keeps the server and the other games running
+    app.exception(StorageException.class, (e, ctx) -> {
+      LOG.error("Storage failure on {} {}", ctx.method(), ctx.path(), e);
+      ctx.status(500).result("Internal Server Error: " + e.getMessage());
+    });
+
+    // Metrics in the Prometheus text format
+    registerGauges();
+    app.get("/metrics", ctx -> {
+      ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+      ctx.result(Metrics.REGISTRY.render());
+    });
+
     // Test Echo Server
     app.post("/echo", ctx -> {
       ctx.result(ctx.body());
     });
 
-    // Get a new game
-    app.get("/newgame", ctx -> {
-      try {
-        // Connect to DB
-        Class.forName("org.sqlite.JDBC");
-        connection = DriverManager.getConnection("jdbc:sqlite:tictactoe.db");
-        System.out.println("Opened database successfully");
-        connection.setAutoCommit(false);
-        stmt = connection.createStatement();
-        // Clean table for the new game
-        String sql = "DELETE FROM GAMEHISTORY;";
-        stmt.executeUpdate(sql);
-        System.out.println("Old game history deleted successfully.");
-        // Insert the initial row for the new game
-        insertGameHistory(stmt, 0, 'N', 0, -1, -1, 0, 0, 0);
-        System.out.println("New game is ready but waiting for player1 to start.");
-        // response
-        ctx.redirect("tictactoe.html");
-        connection.commit();
-      } catch (RuntimeException e) {
-        throw e;
-      } catch (Exception e) {
-        System.err.println(e.getClass().getName() + ": " + e.getMessage());
-        stmt.close();
-        connection.close();
-        System.exit(0);
-      } finally {
-        stmt.close();
-        connection.close();
+    // Single-game routes, kept for the bundled UI, all act on the default game
+    app.get("/newgame", route(PlayGame::newGame, DEFAULT_GAME_ID));
+    app.post("/startgame", route(PlayGame::startGame, DEFAULT_GAME_ID));
+    app.get("/joingame", route(PlayGame::joinGame, DEFAULT_GAME_ID));
+    app.post("/move/:playerId", route(PlayGame::move, DEFAULT_GAME_ID));
+    app.get("/gameboard", route(PlayGame::getGameBoard, DEFAULT_GAME_ID));
+
+    // Multi-game routes
+    app.before("/game/:gameId/*", ctx -> {
+      if (!GameRegistry.isValidGameId(ctx.pathParam("gameId"))) {
+        throw new BadRequestResponse("Invalid game id");
       }
     });
+    app.get("/game/:gameId/newgame", route(PlayGame::newGame, null));
+    app.post("/game/:gameId/startgame", route(PlayGame::startGame, null));
+    app.get("/game/:gameId/joingame", route(PlayGame::joinGame, null));
+    app.post("/game/:gameId/move/:playerId", route(PlayGame::move, null));
+    app.get("/game/:gameId/gameboard", route(PlayGame::getGameBoard, null));
 
-    // Start a new game
-    app.post("/startgame", ctx -> {
-      try {
-        // Connect to DB
-        Class.forName("org.sqlite.JDBC");
-        connection = DriverManager.getConnection("jdbc:sqlite:tictactoe.db");
-        System.out.println("Opened database successfully");
-
-        // Clean the old game history
-        connection.setAutoCommit(false);
-        stmt = connection.createStatement();
-        String sql = "DELETE from GAMEHISTORY;";
-        stmt.executeUpdate(sql);
-        //connection.commit();
-        System.out.println("Old game history deleted successfully.");
-
-        // No need for check the option since frontend had already checked
-        // Initialize Player 1
-        char p1Type = ctx.formParam("type").charAt(0);
-        int p1Id = 1;
-        Player p1 = new Player(p1Type, p1Id);
-        // Set a new Game board
-        gameBoard = new GameBoard(p1);
-
-        // Insert the initial row for the new game to store player1's info
-        insertGameHistory(stmt, 0, p1Type, p1Id, -1, -1, 0, 0, 0);
-        System.out.println("Stored player1's info in DB.");
-
-        // Return the game board in JSON
-        String gameBoardJson = gson.toJson(gameBoard);
-        ctx.result(gameBoardJson);
-        // commit all transactions and close
-        connection.commit();
-      } catch (Exception e) {
-        System.err.println(e.getClass().getName() + ": " + e.getMessage());
-        stmt.close();
-        connection.close();
-        System.exit(0);
-      } finally {
-        stmt.close();
-        connection.close();
-      }
-    });
+    // History queries
+    app.get("/game/:gameId/history", route(PlayGame::gameHistory, null));
+    app.get("/players/:name/games", route(PlayGame::playerGames, null));
 
-    // Join a game
-    app.get("/joingame", ctx -> {
-      try {
-        if (gameBoard.getP2() != null) {
-          ctx.result("Don't join the same game again.");
-          return;
+    // Web sockets - DO NOT DELETE or CHANGE
+    app.ws("/gameboard", new UiWebSocket());
+    UiWebSocket.setSnapshotLookup(PlayGame::getSnapshot);
+    UiWebSocket.setBroadcaster(new WsBroadcaster(WS_QUEUE_CAPACITY, WS_MAX_LAG_MILLIS));
+
+    // Players queued over the web socket are paired into new games
+    matchStarter = handlerExecutor != null ? handlerExecutor
+        : Executors.newFixedThreadPool(MATCH_START_THREADS, r -> {
+          Thread t = new Thread(r, "match-starter");
+          t.setDaemon(true);
+          return t;
+        });
+    matchmaker = new Matchmaker<>(MATCH_QUEUE_CAPACITY, MATCH_PREFERENCE_MILLIS,
+        (p1, p2, p1Type) -> matchStarter.execute(() -> {
+          try {
+            startMatchedGame(p1, p2, p1Type);
+          } catch (RuntimeException e) {
+            LOG.error("Cannot start the game of a match", e);
+          }
+        }));
+    matchmaker.start();
+    UiWebSocket.setMatchmaker(matchmaker);
+  }
+
+  // Record the latency of a request under its route pattern, so game ids do not become labels
+  private static void recordRequest(Context ctx, Float executionTimeMs) {
+    String route;
+    try {
+      route = ctx.endpointHandlerPath();
+    } catch (IllegalStateException e) {
+      // Static files and requests stopped by a before handler never reach an endpoint
+      route = "other";
+    }
+    Metrics.HTTP_REQUEST_SECONDS.labels(ctx.method(), route, String.valueOf(ctx.status()))
+        .observeNanos((long) (executionTimeMs * 1_000_000));
+  }
+
+  private static void registerGauges() {
+    Metrics.REGISTRY.gauge("tictactoe_active_games", "Games hosted in memory", registry::size);
+    Metrics.REGISTRY.gauge("tictactoe_websocket_sessions", "Open WebSocket sessions",
+        () -> UiWebSocket.getSessions().size());
+    Metrics.REGISTRY.gauge("tictactoe_websocket_queue_depth",
+        "WebSocket messages waiting to be sent",
+        () -> UiWebSocket.getBroadcaster().getQueueDepth());
+    Metrics.REGISTRY.counter("tictactoe_websocket_sent_total", "WebSocket messages sent",
+        () -> UiWebSocket.getBroadcaster().getSentCount());
+    Metrics.REGISTRY.counter("tictactoe_websocket_coalesced_total",
+        "WebSocket messages replaced by a newer board before being sent",
+        () -> UiWebSocket.getBroadcaster().getCoalescedCount());
+    Metrics.REGISTRY.counter("tictactoe_websocket_dropped_total",
+        "WebSocket messages dropped from a full queue or a failed session",
+        () -> UiWebSocket.getBroadcaster().getDroppedCount());
+    Metrics.REGISTRY.counter("tictactoe_websocket_evicted_total",
+        "WebSocket sessions closed for falling behind",
+        () -> UiWebSocket.getBroadcaster().getEvictedCount());
+    Metrics.REGISTRY.gauge("tictactoe_matchmaking_waiting", "Players waiting for an opponent",
+        () -> matchmaker == null ? 0 : matchmaker.getWaitingCount());
+    if (store instanceof WriteBehindGameStore) {
+      WriteBehindGameStore journal = (WriteBehindGameStore) store;
+      Metrics.REGISTRY.gauge("tictactoe_db_write_queue_depth", "Writes waiting for the database",
+          journal::getQueueDepth);
+    }
+  }
+
+  /** Adapt a game handler to a Javalin handler of the selected thread model.
+   *
+   * <p>In the ASYNC model the handler runs on the handler executor and the request completes
+   * through the returned future, so the Jetty thread is free while the handler waits on locks or
+   * on the database.
+   *
+   * @param handler GameHandler: Handler of the route
+   * @param gameId String: Fixed game id, or null to take it from the :gameId path parameter, if
+   *     the route has one
+   * @return Handler: Javalin handler
+   */
+  private static Handler route(GameHandler handler, String gameId) {
+    return ctx -> {
+      String id = gameId != null ? gameId : ctx.pathParamMap().get("gameId");
+      if (handlerExecutor == null) {
+        InputStream body = handler.handle(ctx, id);
+        if (body != null) {
+          ctx.result(body);
+        }
+        return;
+      }
+      ctx.result(CompletableFuture.supplyAsync(() -> {
+        try {
+          return handler.handle(ctx, id);
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new CompletionException(e);
         }
-        Class.forName("org.sqlite.JDBC");
-        connection = DriverManager.getConnection("jdbc:sqlite:tictactoe.db");
-        System.out.println("Opened database successfully");
-        connection.setAutoCommit(false);
-
-        // Check if there is a existing game
-        Player p1 = gameBoard.getP1();
-        char p1Type = p1.getType();
-        // Initialize Player 2
+      }, handlerExecutor));
+    };
+  }
+
+  private static InputStream body(String text) {
+    return body(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static InputStream body(byte[] bytes) {
+    return new ByteArrayInputStream(bytes);
+  }
+
+  /** Load a game from its checkpoint and the history rows after it.
+   *
+   * @param gameId String: Game id
+   * @return GameBoard: The board, or null if the game was never stored
+   */
+  private static GameBoard loadGame(String gameId) {
+    long start = System.nanoTime();
+    GameBoard[] gameBoard = new GameBoard[1];
+    store.loadGame(gameId,
+        checkpoint -> gameBoard[0] = gson.fromJson(checkpoint.getBoard(), GameBoard.class),
+        row -> gameBoard[0] = reloadRow(gameBoard[0], row));
+    Metrics.GAME_LOAD_SECONDS.observeNanos(System.nanoTime() - start);
+    return gameBoard[0];
+  }
+
+  // Apply one GAMEHISTORY row to the board rebuilt so far, row 0 starts a new board
+  private static GameBoard reloadRow(GameBoard loaded, MoveRecord row) {
+    if (row.getMoveId() == 0) {
+      int p1Id = row.getPlayerId();
+      char p1Type = row.getMoveType();
+      GameBoard gameBoard = new GameBoard(row.getBoardSize(), row.getWinLength());
+      if (row.isGameStarted()) {
+        // reload player1 and player2 and set the game as started
+        int p2Id = p1Id + 1;
         char p2Type = p1Type == 'X' ? 'O' : 'X';
-        int p2Id = p1.getId() + 1; // =2
-        Player p2 = new Player(p2Type, p2Id);
-        gameBoard.setP2(p2);
-        // Set game start
+        gameBoard.setP1(new Player(p1Type, p1Id));
+        gameBoard.setP2(new Player(p2Type, p2Id));
         gameBoard.setGameStarted(true);
-        // Update the game history that game started
-        String sql = "UPDATE GAMEHISTORY set gameStarted = 1 where moveId = 0;";
-        stmt = connection.createStatement();
-        stmt.executeUpdate(sql);
-
-        ctx.redirect("/tictactoe.html?p=2");
-        // commit and close the db connection
-        connection.commit();
-      } catch (NullPointerException e1) {
-        ctx.result("Please start a game first!");
-      } catch (Exception e2) {
-        System.err.println(e2.getClass().getName() + ": " + e2.getMessage());
-        stmt.close();
-        connection.close();
-        System.exit(0);
-      } finally {
-        stmt.close();
-        connection.close();
+        gameBoard.setAi(row.getAi());
+      } else if (p1Type != 'N' || p1Id != 0) {
+        // reload player1
+        gameBoard.setP1(new Player(p1Type, p1Id));
       }
+      return gameBoard;
+    }
+    GameBoard gameBoard = loaded;
+    if (gameBoard == null) {
+      return null;
+    }
+    // moveId > 0: reload the move and set turn for the next move
+    gameBoard.setBoardState(row.getMoveX(), row.getMoveY(), row.getMoveType());
+    gameBoard.setMoveCount(row.getMoveId());
+    if (row.isDraw()) {
+      gameBoard.setDraw(true);
+      gameBoard.setGameStarted(false);
+    } else if (row.getWinner() != 0) {
+      gameBoard.setWinner(row.getWinner());
+      gameBoard.setGameStarted(false);
+    } else {
+      gameBoard.setTurn(row.getMoveId() % 2 + 1);
+    }
+    return gameBoard;
+  }
 
-      // Send the game board JSON to all players
-      sendGameBoardToAllPlayers(gson.toJson(gameBoard));
-    });
+  // Whether the client asked for the BoardCodec encoding instead of JSON
+  private static boolean wantsBinary(Context ctx) {
+    String accept = ctx.header("Accept");
+    return accept != null && accept.contains(BoardCodec.CONTENT_TYPE);
+  }
+
+  // Optional player name given when starting or joining, same characters as a game id
+  private static String playerName(String name) {
+    if (name == null || name.isEmpty()) {
+      return null;
+    }
+    if (!GameRegistry.isValidGameId(name)) {
+      throw new BadRequestResponse("Invalid player name");
+    }
+    return name;
+  }
+
+  // Get the rows of one round of a game, the current one unless ?round= is given
+  private static InputStream gameHistory(Context ctx, String gameId) {
+    int round;
+    try {
+      String param = ctx.queryParam("round");
+      round = param != null ? Integer.parseInt(param) : store.currentRound(gameId);
+    } catch (NumberFormatException e) {
+      throw new BadRequestResponse("Bad Request: round must be a number");
+    }
+    List<MoveRecord> moves = store.listMoves(gameId, round);
+    if (moves.isEmpty()) {
+      throw new NotFoundResponse("No history for game " + gameId);
+    }
+    JsonObject history = new JsonObject();
+    history.addProperty("gameId", gameId);
+    history.addProperty("round", round);
+    history.add("moves", gson.toJsonTree(moves));
+    ctx.contentType("application/json");
+    return body(history.toString());
+  }
 
-    // Take a move
-    app.post("/move/:playerId", ctx -> {
+  // Get the rounds a player took part in, most recent first
+  private static InputStream playerGames(Context ctx, String gameId) {
+    String name = ctx.pathParam("name");
+    if (!GameRegistry.isValidGameId(name)) {
+      throw new BadRequestResponse("Invalid player name");
+    }
+    int limit;
+    try {
+      limit = Integer.parseInt(ctx.queryParam("limit", "20"));
+    } catch (NumberFormatException e) {
+      throw new BadRequestResponse("Bad Request: limit must be a number");
+    }
+    List<GameRound> games =
+        store.recentGames(name, Math.max(1, Math.min(limit, MAX_RECENT_GAMES)));
+    ctx.contentType("application/json");
+    return body(gson.toJson(games));
+  }
+
+  // Delete old history rounds in the background so starting a game never deletes anything
+  private static void startHistoryPruner() {
+    if (HISTORY_RETENTION_DAYS <= 0) {
+      return;
+    }
+    historyPruner = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "game-history-pruner");
+      t.setDaemon(true);
+      return t;
+    });
+    historyPruner.scheduleAtFixedRate(() -> {
       try {
-        Class.forName("org.sqlite.JDBC");
-        connection = DriverManager.getConnection("jdbc:sqlite:tictactoe.db");
-        System.out.println("Opened database successfully");
-        stmt = connection.createStatement();
-        connection.setAutoCommit(false);
-
-        String sql = "SELECT COUNT(*) AS count FROM GAMEHISTORY;";
-        res = stmt.executeQuery(sql);
-        int moveCount = res.getInt("count");
-
-        // After reloading, Deal with the current move
-        int playerId = Integer.parseInt(ctx.pathParam("playerId"));
-        int x = Integer.parseInt(ctx.formParam("x"));
-        int y = Integer.parseInt(ctx.formParam("y"));
-        // Validate the move
-        Move move = null;
-        if (playerId % 2 != 0) {
-          move = new Move(gameBoard.getP1(), x, y);
-        } else {
-          move = new Move(gameBoard.getP2(), x, y);
-        }
-        Message msg = new Message();
-        if (!isValid(move, msg)) {
-          ctx.result(gson.toJson(msg));
-          res.close();
-          stmt.close();
-          connection.close();
-          return;
-        }
-        // If is valid, update the game board
-        char type = playerId % 2 != 0 ? gameBoard.getP1().getType() : gameBoard.getP2().getType();
-        gameBoard.setBoardState(x, y, type);
-        // Check and set game result
-        GameState gameState = checkGameResult(gameBoard.getBoardState());
-        if (gameState == GameState.CONTINUE) {
-          gameBoard.setTurn(gameBoard.getTurn() == 1 ? 2 : 1);
-          insertGameHistory(stmt, moveCount, type, playerId, x, y, 1, 0, 0);
-        } else if (gameState == GameState.PLAYER1WIN) {
-          gameBoard.setWinner(1);
-          gameBoard.setGameStarted(false);
-          insertGameHistory(stmt, moveCount, type, playerId, x, y, 0, 0, 1);
-        } else if (gameState == GameState.PLAYER2WIN) {
-          gameBoard.setWinner(2);
-          gameBoard.setGameStarted(false);
-          insertGameHistory(stmt, moveCount, type, playerId, x, y, 0, 0, 2);
-        } else if (gameState == GameState.DRAW) {
-          gameBoard.setDraw(true);
-          gameBoard.setGameStarted(false);
-          insertGameHistory(stmt, moveCount, type, playerId, x, y, 0, 1, 0);
+        int pruned = store.pruneHistory(
+            System.currentTimeMillis() - TimeUnit.DAYS.toMillis(HISTORY_RETENTION_DAYS));
+        if (pruned > 0) {
+          LOG.info("Deleted {} old rounds from the game history", pruned);
         }
+      } catch (StorageException e) {
+        LOG.error("Cannot delete old game history", e);
+      }
+    }, HISTORY_PRUNE_PERIOD_SECONDS, HISTORY_PRUNE_PERIOD_SECONDS, TimeUnit.SECONDS);
+  }
+
+  // Get a new game
+  private static InputStream newGame(Context ctx, String gameId) {
+    Lock lock = registry.lockFor(gameId);
+    lock.lock();
+    try {
+      // Start a new round of the game with its initial row
+      store.resetGame(new MoveRecord(gameId, 0, 'N', 0, -1, -1, false, false, 0,
+          GameBoard.DEFAULT_SIZE, GameBoard.DEFAULT_SIZE), null);
+      registry.put(gameId, new GameBoard());
+    } finally {
+      lock.unlock();
+    }
+    // response
+    ctx.redirect(DEFAULT_GAME_ID.equals(gameId)
+        ? "tictactoe.html" : "/tictactoe.html?g=" + gameId);
+    return null;
+  }
+
+  // Start a new game
+  private static InputStream startGame(Context ctx, String gameId) {
+    // No need for check the option since frontend had already checked
+    // Initialize Player 1
+    char p1Type = ctx.formParam("type").charAt(0);
+    String p1Name = playerName(ctx.formParam("name"));
+    // Set a new Game board with Player 1, 3 x 3 unless a size and a win length are given
+    GameBoard gameBoard;
+    try {
+      int size = Integer.parseInt(
+          ctx.formParam("size", String.valueOf(GameBoard.DEFAULT_SIZE)));
+      int winLength = Integer.parseInt(
+          ctx.formParam("winLength", String.valueOf(Math.min(size, GOMOKU_WIN_LENGTH))));
+      gameBoard = GameEngine.createGame(p1Type, size, winLength);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestResponse("Bad Request: " + e.getMessage());
+    }
+    int p1Id = gameBoard.getP1().getId();
+
+    byte[] snapshot;
+    byte[] binarySnapshot;
+    Lock lock = registry.lockFor(gameId);
+    lock.lock();
+    try {
+      // Start a new round and store player1's info in the initial row
+      store.resetGame(new MoveRecord(gameId, 0, p1Type, p1Id, -1, -1, false, false, 0,
+          gameBoard.getSize(), gameBoard.getWinLength()), p1Name);
+      registry.put(gameId, gameBoard);
+      snapshot = gameBoard.getSnapshot().getBytes();
+      binarySnapshot = gameBoard.getSnapshot().getBinary();
+    } finally {
+      lock.unlock();
+    }
 
-        // Return msg and update game board view
-        ctx.result(gson.toJson(msg));
-        sendGameBoardToAllPlayers(gson.toJson(gameBoard));
-        // Commit and Close the db connection
-        connection.commit();
-      } catch (Exception e) {
-        System.err.println(e.getClass().getName() + ": " + e.getMessage());
-        res.close();
-        stmt.close();
-        connection.close();
-        System.exit(0);
-      } finally {
-        res.close();
-        stmt.close();
-        connection.close();
+    // Return the game board in JSON, or binary if asked for
+    if (wantsBinary(ctx)) {
+      ctx.contentType(BoardCodec.CONTENT_TYPE);
+      return body(binarySnapshot);
+    }
+    return body(snapshot);
+  }
+
+  // Join a game, as a second person or with ?ai= as the server player
+  private static InputStream joinGame(Context ctx, String gameId) {
+    String p2Name = playerName(ctx.queryParam("name"));
+    String level = ctx.queryParam("ai");
+    Difficulty difficulty = null;
+    if (level != null) {
+      difficulty = Difficulty.fromName(level);
+      if (difficulty == null) {
+        throw new BadRequestResponse("Bad Request: ai must be easy, medium or hard");
       }
-    });
+      p2Name = "ai-" + difficulty.name().toLowerCase();
+    }
+    byte[] snapshot;
+    Lock lock = registry.lockFor(gameId);
+    lock.lock();
+    try {
+      GameBoard gameBoard = registry.getBoard(gameId);
+      if (gameBoard == null) {
+        return body("Please start a game first!");
+      }
+      // Initialize Player 2 and start the game
+      Message joined = GameEngine.joinGame(gameBoard);
+      if (!joined.getMoveValidity()) {
+        return body(joined.getMessage());
+      }
+      if (difficulty != null) {
+        gameBoard.setAi(difficulty.name());
+      }
+      try {
+        // Update the game history that game started, and whether the server plays p2
+        store.markGameStarted(gameId, p2Name, gameBoard.getAi());
+      } catch (StorageException e) {
+        discard(gameId);
+        throw e;
+      }
+      snapshot = gameBoard.getSnapshot().getBytes();
 
-    // Get Game Board
-    app.get("/gameboard", ctx -> {
-      // Return the game board in JSON
-      String gameBoardJson = gson.toJson(gameBoard);
-      ctx.result(gameBoardJson);
-    });
+      // Send the game board JSON to the players of this game, queued in the order of the changes
+      sendGameBoardToSubscribers(gameId, gameBoard);
+    } finally {
+      lock.unlock();
+    }
 
-    // Web sockets - DO NOT DELETE or CHANGE
-    app.ws("/gameboard", new UiWebSocket());
+    if (difficulty != null) {
+      // Player 1 stays on its page, which is already subscribed to the game
+      return body(snapshot);
+    }
+    ctx.redirect(DEFAULT_GAME_ID.equals(gameId)
+        ? "/tictactoe.html?p=2" : "/tictactoe.html?p=2&g=" + gameId);
+    return null;
   }
 
-  // Insert a history row in GAMEHISTORY
-  private static void insertGameHistory(Statement stmt,
-                                        int moveId, char type, int playerId, int x, int y,
-                                        int gameStarted, int isDraw, int winner)
-                                        throws SQLException {
-    String sql = "INSERT INTO GAMEHISTORY "
-        + "(moveId, moveType, playerId, moveX, moveY, gameStarted, isDraw, winner) "
-        + String.format("VALUES (%d, '%s', %d, %d, %d, %d, %d, %d);",
-                        moveId, type, playerId, x, y, gameStarted, isDraw, winner);
-    stmt.executeUpdate(sql);
-    //connection.commit();
+  /** Start a classic game for two matched players and move both sessions to it.
+   *
+   * @param p1 Ticket: Player 1, who moves first
+   * @param p2 Ticket: Player 2
+   * @param p1Type char: Piece of player 1
+   */
+  private static void startMatchedGame(Matchmaker.Ticket<Session> p1,
+      Matchmaker.Ticket<Session> p2, char p1Type) {
+    String gameId = MATCH_ID_PREFIX + Long.toString(matchCount.incrementAndGet(), 36);
+    GameBoard gameBoard =
+        GameEngine.createGame(p1Type, GameBoard.DEFAULT_SIZE, GameBoard.DEFAULT_SIZE);
+    GameEngine.joinGame(gameBoard);
+    Lock lock = registry.lockFor(gameId);
+    lock.lock();
+    try {
+      store.resetGame(new MoveRecord(gameId, 0, p1Type, 1, -1, -1, false, false, 0,
+          gameBoard.getSize(), gameBoard.getWinLength()), p1.getName());
+      store.markGameStarted(gameId, p2.getName());
+      registry.put(gameId, gameBoard);
+      notifyMatched(p1.getClient(), gameId, gameBoard.getP1());
+      notifyMatched(p2.getClient(), gameId, gameBoard.getP2());
+      sendGameBoardToSubscribers(gameId, gameBoard);
+    } finally {
+      lock.unlock();
+    }
   }
 
-  private static GameState checkGameResult(char[][] boardState) {
-    // Check all rows
-    for (int row = 0; row < boardState.length; row++) {
-      if (boardState[row][0] == boardState[row][1] && boardState[row][1] == boardState[row][2]) {
-        if (boardState[row][0] != '\u0000') {
-          return getWinner(boardState[row][0]);
-        }
-      }
+  // Tell a matched player its game and move its session there
+  private static void notifyMatched(Session session, String gameId, Player player) {
+    if (!session.isOpen()) {
+      // Left while being matched, there is nobody to move to the game
+      return;
     }
-    // Check all columns
-    for (int col = 0; col < boardState[0].length; col++) {
-      if (boardState[0][col] == boardState[1][col] && boardState[1][col] == boardState[2][col]) {
-        if (boardState[0][col] != '\u0000') {
-          return getWinner(boardState[0][col]);
-        }
+    UiWebSocket.subscribe(session, gameId);
+    JsonObject matched = new JsonObject();
+    matched.addProperty("type", "matched");
+    matched.addProperty("gameId", gameId);
+    matched.addProperty("playerId", player.getId());
+    matched.addProperty("piece", String.valueOf(player.getType()));
+    // Not under the game id, or the board which follows would supersede it while still queued
+    send(session, WsBroadcaster.CONTROL, matched.toString(), false);
+  }
+
+  // Take a move
+  private static InputStream move(Context ctx, String gameId) {
+    int playerId = Integer.parseInt(ctx.pathParam("playerId"));
+    int x;
+    int y;
+    String contentType = ctx.contentType();
+    if (contentType != null && contentType.startsWith(BoardCodec.CONTENT_TYPE)) {
+      // Binary clients send the two coordinates as bytes
+      int[] position;
+      try {
+        position = BoardCodec.decodeMove(ctx.bodyAsBytes());
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestResponse("Bad Request: " + e.getMessage());
       }
+      x = position[0];
+      y = position[1];
+    } else {
+      x = Integer.parseInt(ctx.formParam("x"));
+      y = Integer.parseInt(ctx.formParam("y"));
+    }
+    Message msg;
+    // Moves of one game are validated and applied one at a time, other games go on in parallel
+    Lock lock = registry.lockFor(gameId);
+    lock.lock();
+    try {
+      msg = applyMove(gameId, playerId, x, y);
+    } finally {
+      lock.unlock();
     }
-    // Check all diagonals
-    if (boardState[0][0] == boardState[1][1] && boardState[1][1] == boardState[2][2]) {
-      if (boardState[0][0] != '\u0000') {
-        return getWinner(boardState[0][0]);
+    if (msg.getMoveValidity()) {
+      playAiMove(gameId);
+    }
+    if (wantsBinary(ctx)) {
+      ctx.contentType(BoardCodec.CONTENT_TYPE);
+      return body(BoardCodec.encodeMessage(msg));
+    }
+    return body(gson.toJson(msg));
+  }
+
+  /** Let the server player answer, if it plays this game and it is its turn.
+   *
+   * <p>The search runs outside the game lock, so the board can be read meanwhile. Its move is
+   * dropped if the board changed in between, as after a new game.
+   *
+   * @param gameId String: Game id
+   */
+  private static void playAiMove(String gameId) {
+    Position position;
+    Difficulty difficulty;
+    GameBoard searched;
+    int moveCount;
+    Lock lock = registry.lockFor(gameId);
+    lock.lock();
+    try {
+      searched = registry.getBoard(gameId);
+      if (searched == null || searched.getAi() == null || !searched.isGameStarted()
+          || searched.getTurn() != 2) {
+        return;
       }
+      position = Position.of(searched);
+      difficulty = Difficulty.valueOf(searched.getAi());
+      moveCount = searched.getMoveCount();
+    } finally {
+      lock.unlock();
+    }
+    long start = System.nanoTime();
+    int cell = ai.chooseMove(position, difficulty);
+    LOG.debug("AI move of game {} took {} us", gameId, (System.nanoTime() - start) / 1000);
+    if (cell < 0) {
+      return;
     }
-    if (boardState[0][2] == boardState[1][1] && boardState[1][1] == boardState[2][0]) {
-      if (boardState[0][2] != '\u0000') {
-        return getWinner(boardState[0][2]);
+    lock.lock();
+    try {
+      if (registry.getBoard(gameId) == searched && searched.getMoveCount() == moveCount) {
+        applyMove(gameId, 2, cell / position.getSize(), cell % position.getSize());
       }
+    } finally {
+      lock.unlock();
     }
-    // Check isDraw
-    for (int i = 0; i < boardState.length; i++) {
-      for (int j = 0; j < boardState[0].length; j++) {
-        if (boardState[i][j] == '\u0000') {
-          return GameState.CONTINUE;
-        }
+  }
+
+  // Validate and apply a move, the caller holds the lock of the game
+  private static Message applyMove(String gameId, int playerId, int x, int y) {
+    GameBoard gameBoard = registry.getBoard(gameId);
+    if (gameBoard == null) {
+      Message msg = new Message();
+      msg.setFullMessage(false, 400, "Bad Request: The game hasn't started yet!");
+      return msg;
+    }
+    // Validate and apply the move
+    Message msg = GameEngine.applyMove(gameBoard, playerId, x, y);
+    if (!msg.getMoveValidity()) {
+      return msg;
+    }
+    char type = gameBoard.getCell(x, y);
+    int moveId = gameBoard.getMoveCount();
+    try {
+      store.appendMove(new MoveRecord(gameId, moveId, type, playerId, x, y,
+          gameBoard.isGameStarted(), gameBoard.isDraw(), gameBoard.getWinner(),
+          gameBoard.getSize(), gameBoard.getWinLength()));
+      if (moveId % CHECKPOINT_INTERVAL == 0 || !gameBoard.isGameStarted()) {
+        // The snapshot JSON is built for the broadcasts anyway
+        store.saveCheckpoint(
+            new GameCheckpoint(gameId, moveId, gameBoard.getSnapshot().getJson()));
       }
+    } catch (StorageException e) {
+      discard(gameId);
+      throw e;
     }
-    return GameState.DRAW;
+
+    // Update game board view and return msg
+    sendMoveToSubscribers(gameId, gameBoard, x, y);
+    return msg;
   }
 
-  private static GameState getWinner(char type) {
-    if (type == gameBoard.getP1().getType()) {
-      return GameState.PLAYER1WIN;
-    } else {
-      return GameState.PLAYER2WIN;
+  /** Drop a game whose change was applied in memory but could not be stored.
+   *
+   * <p>The next request loads the game again as it is stored, which takes the change back before
+   * anyone saw it. The caller holds the lock of the game.
+   *
+   * @param gameId String: Game id
+   */
+  private static void discard(String gameId) {
+    LOG.warn("Reloading game {} after a failed write", gameId);
+    registry.remove(gameId);
+  }
+
+  // A queued write was lost after its request returned, the writer must not wait for the game lock
+  private static void discardLater(String gameId) {
+    GameRegistry games = registry;
+    if (games != null) {
+      LOG.warn("Reloading game {} after a lost write", gameId);
+      games.removeLater(gameId);
     }
   }
 
-  // Check move's validity and set message
-  private static boolean isValid(Move move, Message msg) {
-    // case 1: game not started yet or already ended
-    if (!gameBoard.isGameStarted()) {
-      if (gameBoard.getWinner() != 0 || gameBoard.isDraw()) {
-        msg.setFullMessage(false, 400, "Bad Request: The game has already ended!");
-        return false;
+  // Get Game Board
+  private static InputStream getGameBoard(Context ctx, String gameId) {
+    BoardSnapshot snapshot = getSnapshot(gameId);
+    if (snapshot == null) {
+      throw new NotFoundResponse("Game " + gameId + " not found");
+    }
+    // Return the game board in JSON or binary, or 304 if the client already has this version
+    ctx.header("Vary", "Accept");
+    if (wantsBinary(ctx)) {
+      ctx.header("ETag", snapshot.getBinaryEtag());
+      if (snapshot.matchesBinary(ctx.header("If-None-Match"))) {
+        ctx.status(304);
+        return null;
       }
-      msg.setFullMessage(false, 400, "Bad Request: The game hasn't started yet!");
-      return false;
+      ctx.contentType(BoardCodec.CONTENT_TYPE);
+      return body(snapshot.getBinary());
     }
-    // case 2: not your turn
-    if (move.getPlayer().getId() % 2 != gameBoard.getTurn() % 2) {
-      msg.setFullMessage(false, 400, "Bad Request: It's not your turn now!");
-      return false;
+    ctx.header("ETag", snapshot.getEtag());
+    if (snapshot.matches(ctx.header("If-None-Match"))) {
+      ctx.status(304);
+      return null;
     }
-    // case 3: position is already token
-    char state = gameBoard.getBoardState()[move.getMoveX()][move.getMoveY()];
-    if (state == 'X' || state == 'Y') {
-      msg.setFullMessage(false, 400, "Bad Request: This position had been token already!");
-      return false;
+    return body(snapshot.getBytes());
+  }
+
+  /** Get the current snapshot of a game board.
+   *
+   * <p>A stale snapshot is rebuilt under the game lock, so it is never built from a board which a
+   * move is changing.
+   *
+   * @param gameId String: Game id
+   * @return BoardSnapshot: The snapshot, or null if the game is not hosted here
+   */
+  private static BoardSnapshot getSnapshot(String gameId) {
+    Lock lock = registry.lockFor(gameId);
+    lock.lock();
+    try {
+      GameBoard gameBoard = registry.getBoard(gameId);
+      return gameBoard == null ? null : gameBoard.getSnapshot();
+    } finally {
+      lock.unlock();
     }
-    msg.setFullMessage(true, 200, "");
-    return true;
   }
 
-  /** Send message to all players.
+  /** Send the whole game board to the players and spectators of a game.
    *
-   * @param gameBoardJson Gameboard JSON
-   * @throws IOException Websocket message send IO Exception
+   * @param gameId String: Game id
+   * @param gameBoard GameBoard: Board to send
    */
-  private static void sendGameBoardToAllPlayers(final String gameBoardJson) {
-    Queue<Session> sessions = UiWebSocket.getSessions();
-    for (Session sessionPlayer : sessions) {
-      try {
-        sessionPlayer.getRemote().sendString(gameBoardJson);
-      } catch (IOException e) {
-        // Add logger here
+  private static void sendGameBoardToSubscribers(String gameId, GameBoard gameBoard) {
+    long start = System.nanoTime();
+    BoardSnapshot snapshot = gameBoard.getSnapshot();
+    String snapshotMessage = null;
+    for (Session sessionPlayer : UiWebSocket.getSubscribers(gameId)) {
+      if (UiWebSocket.wantsBinary(sessionPlayer)) {
+        send(sessionPlayer, gameId, snapshot.getBinary(), true);
+      } else if (UiWebSocket.wantsDeltas(sessionPlayer)) {
+        if (snapshotMessage == null) {
+          snapshotMessage = snapshot.toSnapshotMessage(gameId);
+        }
+        send(sessionPlayer, gameId, snapshotMessage, true);
+      } else {
+        send(sessionPlayer, gameId, snapshot.getJson(), true);
       }
     }
+    Metrics.BROADCAST_SECONDS.labels("board").observeNanos(System.nanoTime() - start);
+  }
+
+  /** Send a move to the players and spectators of a game, as a delta to the delta clients.
+   *
+   * @param gameId String: Game id
+   * @param gameBoard GameBoard: Board after the move
+   * @param x int: Row of the move
+   * @param y int: Column of the move
+   */
+  private static void sendMoveToSubscribers(String gameId, GameBoard gameBoard, int x, int y) {
+    long start = System.nanoTime();
+    BoardDelta delta = null;
+    String deltaJson = null;
+    byte[] deltaBinary = null;
+    String gameBoardJson = null;
+    for (Session sessionPlayer : UiWebSocket.getSubscribers(gameId)) {
+      if (UiWebSocket.wantsDeltas(sessionPlayer)) {
+        if (delta == null) {
+          delta = new BoardDelta(gameId, gameBoard, x, y);
+        }
+        // Each encoding is built once and shared by every session which wants it
+        if (UiWebSocket.wantsBinary(sessionPlayer)) {
+          if (deltaBinary == null) {
+            deltaBinary = BoardCodec.encodeDelta(delta);
+          }
+          send(sessionPlayer, gameId, deltaBinary, false);
+          continue;
+        }
+        if (deltaJson == null) {
+          deltaJson = gson.toJson(delta);
+        }
+        send(sessionPlayer, gameId, deltaJson, false);
+      } else {
+        if (gameBoardJson == null) {
+          gameBoardJson = gameBoard.getSnapshot().getJson();
+        }
+        send(sessionPlayer, gameId, gameBoardJson, true);
+      }
+    }
+    Metrics.BROADCAST_SECONDS.labels("move").observeNanos(System.nanoTime() - start);
+  }
+
+  // Queue a message without waiting for slow browsers, see WsBroadcaster
+  private static void send(Session sessionPlayer, String gameId, String message,
+      boolean fullState) {
+    UiWebSocket.getBroadcaster().send(sessionPlayer, gameId, message, fullState);
+  }
+
+  private static void send(Session sessionPlayer, String gameId, byte[] message,
+      boolean fullState) {
+    UiWebSocket.getBroadcaster().send(sessionPlayer, gameId, message, fullState);
   }
 
   public static void stop() {
     app.stop();
+    if (matchmaker != null) {
+      matchmaker.stop();
+      matchmaker = null;
+    }
+    if (matchStarter != null && matchStarter != handlerExecutor) {
+      matchStarter.shutdown();
+    }
+    matchStarter = null;
+    if (historyPruner != null) {
+      historyPruner.shutdownNow();
+      historyPruner = null;
+    }
+    if (handlerExecutor != null) {
+      handlerExecutor.shutdown();
+      handlerExecutor = null;
+    }
+    registry.stop();
+    store.close();
   }
 }
@@ -0,0 +1,40 @@
+package controllers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public enum ThreadModel {
+  // Game handlers run on the Jetty thread of the request, as they always did
+  BLOCKING,
+  // Game handlers run on a separate executor and the Jetty thread is released at once
+  ASYNC;
+
+  /** Create the executor running the game handlers in ASYNC mode.
+   *
+   * <p>On JDK 21 and later every handler gets its own virtual thread. Older JDKs have no virtual
+   * threads, so the handlers share a fixed pool of daemon platform threads instead.
+   *
+   * @param platformThreads int: Size of the pool used when there are no virtual threads
+   * @return ExecutorService: The executor
+   */
+  public static ExecutorService newHandlerExecutor(int platformThreads) {
+    try {
+      // Looked up by reflection since the code is compiled for an older release
+      Method factory = java.util.concurrent.Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      AtomicInteger count = new AtomicInteger();
+      return new ThreadPoolExecutor(platformThreads, platformThreads, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "game-handler-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          });
+    }
+  }
+}
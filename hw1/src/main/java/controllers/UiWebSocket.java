@@ -1,16 +1,46 @@
 package controllers;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import io.javalin.websocket.WsCloseContext;
 import io.javalin.websocket.WsCloseHandler;
 import io.javalin.websocket.WsConnectContext;
 import io.javalin.websocket.WsConnectHandler;
 import io.javalin.websocket.WsHandler;
+import io.javalin.websocket.WsMessageContext;
+import io.javalin.websocket.WsMessageHandler;
+import java.util.Collections;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import models.BoardSnapshot;
 import org.eclipse.jetty.websocket.api.Session;
 
-/** Web socket class: DO NOT MODIFY.
+/** Web socket class.
+ *
+ * <p>Every session follows one game, given by ?gameId=... when connecting (the default game
+ * otherwise) and changed by sending {"type":"subscribe","gameId":...}. Only the subscribers of a
+ * game receive its updates.
+ *
+ * <p>By default every message is the full game board JSON, which is what the bundled UI expects.
+ * A client connecting with ?protocol=delta instead receives a {@link models.BoardDelta} per move
+ * and {"type":"snapshot",...} messages for any other change. Whenever it sees a gap in the delta
+ * seq it sends {"type":"resync","gameId":...} and gets a snapshot back.
+ *
+ * <p>A client connecting with ?format=binary follows the boards the same way, but receives binary
+ * {@link models.BoardCodec} frames: a BOARD frame instead of a snapshot and a DELTA frame per
+ * move. Its requests are still JSON text.
+ *
+ * <p>Any session can ask for an opponent with {"type":"enqueue","piece":"X","name":...}, piece
+ * and name being optional, and is answered {"type":"queued"}, or "alreadyQueued", "queueFull" or
+ * "invalidName" when it is not queued.
+ * Once paired by the {@link Matchmaker} it is moved to the new game and receives
+ * {"type":"matched","gameId":...,"playerId":...,"piece":...} then the board. It can leave the
+ * queue with {"type":"dequeue"}, answered "dequeued" or "notQueued", or by closing.
  *
  * @author Shirish Singh
  *
@@ -20,6 +50,25 @@ public class UiWebSocket implements Consumer<WsHandler>  {
   // Store sessions to broadcast a message to all users
   private static final Queue<Session> SESSIONS = new ConcurrentLinkedQueue<>();
 
+  // Sessions which follow the boards by deltas
+  private static final Set<Session> DELTA_SESSIONS = ConcurrentHashMap.newKeySet();
+
+  // Delta sessions which receive binary frames instead of JSON
+  private static final Set<Session> BINARY_SESSIONS = ConcurrentHashMap.newKeySet();
+
+  // Subscribers of each game, and the game each session follows
+  private static final ConcurrentHashMap<String, Set<Session>> SUBSCRIBERS =
+      new ConcurrentHashMap<>();
+
+  private static final ConcurrentHashMap<Session, String> SUBSCRIPTIONS =
+      new ConcurrentHashMap<>();
+
+  private static volatile Function<String, BoardSnapshot> snapshotLookup = gameId -> null;
+
+  private static volatile WsBroadcaster broadcaster = new WsBroadcaster(64, 5000);
+
+  private static volatile Matchmaker<Session> matchmaker;
+
   @Override
   public void accept(final WsHandler t) {
 
@@ -28,24 +77,184 @@ public class UiWebSocket implements Consumer<WsHandler>  {
 
       @Override
       public void handleConnect(final WsConnectContext ctx) throws Exception {
-        // TODO Auto-generated method stub
+        if ("binary".equals(ctx.queryParam("format"))) {
+          BINARY_SESSIONS.add(ctx.session);
+          DELTA_SESSIONS.add(ctx.session);
+        } else if ("delta".equals(ctx.queryParam("protocol"))) {
+          DELTA_SESSIONS.add(ctx.session);
+        }
+        String gameId = ctx.queryParam("gameId", PlayGame.DEFAULT_GAME_ID);
+        if (!GameRegistry.isValidGameId(gameId)) {
+          ctx.session.close(1008, "Invalid game id");
+          return;
+        }
         SESSIONS.add(ctx.session);
+        subscribe(ctx.session, gameId);
       }
 
     });
 
+    // On Message
+    t.onMessage(new WsMessageHandler() {
+
+      @Override
+      public void handleMessage(final WsMessageContext ctx) throws Exception {
+        JsonObject request = parseRequest(ctx.message());
+        if (request == null) {
+          return;
+        }
+        String type = request.has("type") ? request.get("type").getAsString() : "";
+        if ("enqueue".equals(type) || "dequeue".equals(type)) {
+          handleMatchmaking(ctx.session, type, request);
+          return;
+        }
+        String gameId = request.has("gameId")
+            ? request.get("gameId").getAsString() : SUBSCRIPTIONS.get(ctx.session);
+        if (gameId == null || !GameRegistry.isValidGameId(gameId)) {
+          return;
+        }
+        if ("subscribe".equals(type)) {
+          subscribe(ctx.session, gameId);
+        } else if (!"resync".equals(type)) {
+          return;
+        }
+        // Both requests are answered with the current board of the game
+        BoardSnapshot snapshot = snapshotLookup.apply(gameId);
+        if (snapshot != null) {
+          // Go through the outbound queue so the reply keeps its place after earlier updates
+          if (wantsBinary(ctx.session)) {
+            broadcaster.send(ctx.session, gameId, snapshot.getBinary(), true);
+          } else {
+            broadcaster.send(ctx.session, gameId, wantsDeltas(ctx.session)
+                ? snapshot.toSnapshotMessage(gameId) : snapshot.getJson(), true);
+          }
+        }
+      }
+    });
+
     // On Close
     t.onClose(new WsCloseHandler() {
 
       @Override
       public void handleClose(final WsCloseContext ctx) throws Exception {
         SESSIONS.remove(ctx.session);
+        DELTA_SESSIONS.remove(ctx.session);
+        BINARY_SESSIONS.remove(ctx.session);
+        broadcaster.remove(ctx.session);
+        Matchmaker<Session> queue = matchmaker;
+        if (queue != null) {
+          queue.cancel(ctx.session);
+        }
+        String gameId = SUBSCRIPTIONS.remove(ctx.session);
+        if (gameId != null) {
+          unsubscribe(ctx.session, gameId);
+        }
       }
     });
   }
 
+  // Parse a request sent by a client, or return null if it is not a JSON object
+  private static JsonObject parseRequest(String message) {
+    try {
+      return new JsonParser().parse(message).getAsJsonObject();
+    } catch (JsonParseException | IllegalStateException e) {
+      return null;
+    }
+  }
+
+  // Enter or leave the matchmaking queue and tell the client how it went
+  private static void handleMatchmaking(Session session, String type, JsonObject request) {
+    Matchmaker<Session> queue = matchmaker;
+    if (queue == null) {
+      return;
+    }
+    if ("dequeue".equals(type)) {
+      sendQueueReply(session, queue.cancel(session) ? "dequeued" : "notQueued");
+      return;
+    }
+    String piece = request.has("piece") ? request.get("piece").getAsString() : "";
+    String name = request.has("name") ? request.get("name").getAsString() : null;
+    if (name != null && !GameRegistry.isValidGameId(name)) {
+      sendQueueReply(session, "invalidName");
+      return;
+    }
+    // The reply is queued before the ticket, so it always comes before the match
+    Matchmaker.Admission admission = queue.enqueue(session,
+        piece.isEmpty() ? '\u0000' : piece.charAt(0), name,
+        () -> sendQueueReply(session, "queued"));
+    if (admission != Matchmaker.Admission.QUEUED) {
+      sendQueueReply(session,
+          admission == Matchmaker.Admission.FULL ? "queueFull" : "alreadyQueued");
+    }
+  }
+
+  private static void sendQueueReply(Session session, String type) {
+    JsonObject message = new JsonObject();
+    message.addProperty("type", type);
+    broadcaster.send(session, WsBroadcaster.CONTROL, message.toString(), false);
+  }
+
+  // Package-private so a matched session can be moved to its new game
+  static void subscribe(Session session, String gameId) {
+    String previous = SUBSCRIPTIONS.put(session, gameId);
+    if (previous != null && !previous.equals(gameId)) {
+      unsubscribe(session, previous);
+    }
+    SUBSCRIBERS.compute(gameId, (id, subscribers) -> {
+      Set<Session> set = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+      set.add(session);
+      return set;
+    });
+    if (!session.isOpen()) {
+      // Closed meanwhile, its close handler may have run before these entries were added
+      SUBSCRIPTIONS.remove(session, gameId);
+      unsubscribe(session, gameId);
+    }
+  }
+
+  private static void unsubscribe(Session session, String gameId) {
+    // Drop the set of a game once its last subscriber leaves so the index does not grow forever
+    SUBSCRIBERS.computeIfPresent(gameId, (id, subscribers) -> {
+      subscribers.remove(session);
+      return subscribers.isEmpty() ? null : subscribers;
+    });
+  }
+
   public static Queue<Session> getSessions() {
     return SESSIONS;
   }
 
+  /** Get the sessions following a game.
+   *
+   * @param gameId String: Game id
+   * @return Set: Live view of the subscribers, empty if there are none
+   */
+  public static Set<Session> getSubscribers(String gameId) {
+    return SUBSCRIBERS.getOrDefault(gameId, Collections.emptySet());
+  }
+
+  public static boolean wantsDeltas(Session session) {
+    return DELTA_SESSIONS.contains(session);
+  }
+
+  public static boolean wantsBinary(Session session) {
+    return BINARY_SESSIONS.contains(session);
+  }
+
+  public static void setSnapshotLookup(Function<String, BoardSnapshot> lookup) {
+    snapshotLookup = lookup;
+  }
+
+  public static void setMatchmaker(Matchmaker<Session> queue) {
+    matchmaker = queue;
+  }
+
+  public static WsBroadcaster getBroadcaster() {
+    return broadcaster;
+  }
+
+  public static void setBroadcaster(WsBroadcaster wsBroadcaster) {
+    broadcaster = wsBroadcaster;
+  }
+
 }
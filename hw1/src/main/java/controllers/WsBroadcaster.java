@@ -0,0 +1,234 @@
+package controllers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+/** Sends WebSocket messages without blocking the caller.
+ *
+ * <p>Every session has a bounded outbound queue drained by asynchronous writes, one at a time, so
+ * a slow browser only delays its own messages. A message carrying the whole state of a game
+ * supersedes the messages of that game still waiting in the queue. When the queue is full the
+ * oldest message is dropped, which delta clients notice as a gap in the seq and resync. A session
+ * whose oldest message has waited longer than the lag limit is disconnected.
+ *
+ */
+public class WsBroadcaster {
+
+  /** Game id of the messages about no board, such as matchmaking replies, never superseded. */
+  public static final String CONTROL = "";
+
+  // WebSocket close code used for consumers which cannot keep up
+  private static final int POLICY_VIOLATION = 1008;
+
+  private final int queueCapacity;
+
+  private final long maxLagMillis;
+
+  private final ConcurrentHashMap<Session, Outbox> outboxes = new ConcurrentHashMap<>();
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+
+  private final LongAdder sent = new LongAdder();
+
+  private final LongAdder coalesced = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final LongAdder evicted = new LongAdder();
+
+  /** Create a broadcaster.
+   *
+   * @param queueCapacity int: Messages a session may have waiting before the oldest is dropped
+   * @param maxLagMillis long: How long a message may wait before its session is disconnected
+   */
+  public WsBroadcaster(int queueCapacity, long maxLagMillis) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+    }
+    this.queueCapacity = queueCapacity;
+    this.maxLagMillis = maxLagMillis;
+  }
+
+  /** Queue a message for a session and return at once.
+   *
+   * @param session Session: Recipient
+   * @param gameId String: Game the message is about
+   * @param message String: Message text
+   * @param fullState boolean: Whether the message holds the whole board, so older ones can go
+   */
+  public void send(Session session, String gameId, String message, boolean fullState) {
+    enqueue(session, gameId, message, null, fullState);
+  }
+
+  /** Queue a binary message for a session and return at once.
+   *
+   * @param session Session: Recipient
+   * @param gameId String: Game the message is about
+   * @param message byte[]: Message bytes, not modified afterwards
+   * @param fullState boolean: Whether the message holds the whole board, so older ones can go
+   */
+  public void send(Session session, String gameId, byte[] message, boolean fullState) {
+    enqueue(session, gameId, null, message, fullState);
+  }
+
+  private void enqueue(Session session, String gameId, String text, byte[] binary,
+      boolean fullState) {
+    if (!session.isOpen()) {
+      remove(session);
+      return;
+    }
+    Outbox outbox = outboxes.computeIfAbsent(session, Outbox::new);
+    long now = System.currentTimeMillis();
+    synchronized (outbox) {
+      if (outbox.isLagging(now)) {
+        evict(outbox);
+        return;
+      }
+      if (fullState) {
+        outbox.removeGame(gameId);
+      }
+      if (outbox.pending.size() >= queueCapacity) {
+        outbox.pending.pollFirst();
+        queueDepth.decrementAndGet();
+        dropped.increment();
+      }
+      outbox.pending.addLast(new Outbound(gameId, text, binary, now));
+      queueDepth.incrementAndGet();
+    }
+    outbox.writeNext();
+  }
+
+  /** Forget a session, dropping whatever it still had to receive.
+   *
+   * @param session Session: Closed session
+   */
+  public void remove(Session session) {
+    Outbox outbox = outboxes.remove(session);
+    if (outbox != null) {
+      synchronized (outbox) {
+        queueDepth.addAndGet(-outbox.pending.size());
+        outbox.pending.clear();
+      }
+    }
+  }
+
+  private void evict(Outbox outbox) {
+    evicted.increment();
+    remove(outbox.session);
+    outbox.session.close(POLICY_VIOLATION, "Too slow to receive game updates");
+  }
+
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  public int getSessionCount() {
+    return outboxes.size();
+  }
+
+  public long getSentCount() {
+    return sent.sum();
+  }
+
+  public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  public long getEvictedCount() {
+    return evicted.sum();
+  }
+
+  // A message waiting in an outbox, either text or binary
+  private static final class Outbound {
+    private final String gameId;
+    private final String text;
+    private final byte[] binary;
+    private final long enqueuedMillis;
+
+    private Outbound(String gameId, String text, byte[] binary, long enqueuedMillis) {
+      this.gameId = gameId;
+      this.text = text;
+      this.binary = binary;
+      this.enqueuedMillis = enqueuedMillis;
+    }
+  }
+
+  // Outbound queue of one session, guarded by its own monitor
+  private final class Outbox implements WriteCallback {
+    private final Session session;
+    private final Deque<Outbound> pending = new ArrayDeque<>();
+    private Outbound inFlight;
+
+    private Outbox(Session session) {
+      this.session = session;
+    }
+
+    private boolean isLagging(long now) {
+      Outbound oldest = inFlight != null ? inFlight : pending.peekFirst();
+      return oldest != null && now - oldest.enqueuedMillis > maxLagMillis;
+    }
+
+    // Drop the messages of a game which a newer full board makes useless
+    private void removeGame(String gameId) {
+      Iterator<Outbound> it = pending.iterator();
+      while (it.hasNext()) {
+        if (it.next().gameId.equals(gameId)) {
+          it.remove();
+          queueDepth.decrementAndGet();
+          coalesced.increment();
+        }
+      }
+    }
+
+    private void writeNext() {
+      Outbound next;
+      synchronized (this) {
+        if (inFlight != null || pending.isEmpty()) {
+          return;
+        }
+        next = pending.pollFirst();
+        queueDepth.decrementAndGet();
+        inFlight = next;
+      }
+      try {
+        if (next.binary != null) {
+          session.getRemote().sendBytes(ByteBuffer.wrap(next.binary), this);
+        } else {
+          session.getRemote().sendString(next.text, this);
+        }
+      } catch (RuntimeException e) {
+        writeFailed(e);
+      }
+    }
+
+    @Override
+    public void writeSuccess() {
+      synchronized (this) {
+        inFlight = null;
+      }
+      sent.increment();
+      writeNext();
+    }
+
+    @Override
+    public void writeFailed(Throwable x) {
+      synchronized (this) {
+        inFlight = null;
+      }
+      // The connection is gone, onClose of the session cleans up as well
+      dropped.increment();
+      remove(session);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package engine;
+
+import models.GameBoard;
+import models.GameState;
+import models.Message;
+import models.Move;
+import models.Player;
+import models.TicTacToeTable;
+
+/** Rules of the game, usable in-process without the web server or the storage.
+ *
+ * <p>A game is a {@link GameBoard}: create it with its first player, let the second player join,
+ * then apply moves and read the status. The engine keeps no state of its own and takes no locks,
+ * a caller sharing a board between threads serializes the calls on it, as the controllers do with
+ * the game lock. Failed joins and moves leave the board untouched and explain why in the returned
+ * {@link Message}, with the codes the HTTP routes send.
+ */
+public final class GameEngine {
+
+  private static final TicTacToeTable TABLE = TicTacToeTable.get();
+
+  private GameEngine() {
+  }
+
+  /** Create a game with its first player, who moves first.
+   *
+   * @param p1Type char: Piece of player 1, 'X' or 'O'
+   * @param size int: Number of rows and columns
+   * @param winLength int: Pieces in a row needed to win
+   * @return GameBoard: The game, waiting for player 2
+   * @throws IllegalArgumentException if the piece, size or win length is not allowed
+   */
+  public static GameBoard createGame(char p1Type, int size, int winLength) {
+    if (p1Type != 'X' && p1Type != 'O') {
+      throw new IllegalArgumentException("Piece must be X or O");
+    }
+    GameBoard board = new GameBoard(size, winLength);
+    board.setP1(new Player(p1Type, 1));
+    return board;
+  }
+
+  /** Add the second player, with the other piece, and start the game.
+   *
+   * @param board GameBoard: Game created by {@link #createGame(char, int, int)}
+   * @return Message: Valid if the player joined
+   */
+  public static Message joinGame(GameBoard board) {
+    Message msg = new Message();
+    if (board.getP1() == null) {
+      msg.setFullMessage(false, 400, "Please start a game first!");
+      return msg;
+    }
+    if (board.getP2() != null) {
+      msg.setFullMessage(false, 400, "Don't join the same game again.");
+      return msg;
+    }
+    Player p1 = board.getP1();
+    board.setP2(new Player(p1.getType() == 'X' ? 'O' : 'X', p1.getId() + 1));
+    board.setGameStarted(true);
+    msg.setFullMessage(true, 200, "");
+    return msg;
+  }
+
+  /** Validate a move and, if valid, apply it and settle the result.
+   *
+   * @param board GameBoard: Started game
+   * @param playerId int: 1 or 2, odd ids are player 1
+   * @param x int: Row
+   * @param y int: Column
+   * @return Message: Valid if the move was applied, else why not
+   */
+  public static Message applyMove(GameBoard board, int playerId, int x, int y) {
+    Message msg = new Message();
+    Move move = new Move(playerId % 2 != 0 ? board.getP1() : board.getP2(), x, y);
+    if (!isValid(board, move, msg)) {
+      return msg;
+    }
+    board.setBoardState(x, y, move.getPlayer().getType());
+    board.setMoveCount(board.getMoveCount() + 1);
+    // Check and set game result
+    GameState gameState = board.checkGameResult(x, y);
+    if (gameState == GameState.CONTINUE) {
+      board.setTurn(board.getTurn() == 1 ? 2 : 1);
+    } else if (gameState == GameState.PLAYER1WIN) {
+      board.setWinner(1);
+      board.setGameStarted(false);
+    } else if (gameState == GameState.PLAYER2WIN) {
+      board.setWinner(2);
+      board.setGameStarted(false);
+    } else {
+      board.setDraw(true);
+      board.setGameStarted(false);
+    }
+    return msg;
+  }
+
+  /** Get the result of a game as it stands.
+   *
+   * @param board GameBoard: Game
+   * @return GameState: CONTINUE until a player won or the board is full
+   */
+  public static GameState getStatus(GameBoard board) {
+    if (board.getWinner() == 1) {
+      return GameState.PLAYER1WIN;
+    }
+    if (board.getWinner() == 2) {
+      return GameState.PLAYER2WIN;
+    }
+    return board.isDraw() ? GameState.DRAW : GameState.CONTINUE;
+  }
+
+  /** Check a move's validity and set the message.
+   *
+   * @param gameBoard GameBoard: Game
+   * @param move Move: Move to check
+   * @param msg Message: Set to the result of the check
+   * @return boolean: Whether the move may be applied
+   */
+  public static boolean isValid(GameBoard gameBoard, Move move, Message msg) {
+    // case 1: game not started yet or already ended
+    if (!gameBoard.isGameStarted()) {
+      if (gameBoard.getWinner() != 0 || gameBoard.isDraw()) {
+        msg.setFullMessage(false, 400, "Bad Request: The game has already ended!");
+        return false;
+      }
+      msg.setFullMessage(false, 400, "Bad Request: The game hasn't started yet!");
+      return false;
+    }
+    // case 2: not your turn
+    if (move.getPlayer().getId() % 2 != gameBoard.getTurn() % 2) {
+      msg.setFullMessage(false, 400, "Bad Request: It's not your turn now!");
+      return false;
+    }
+    // case 3: position is outside the board
+    if (!gameBoard.isOnBoard(move.getMoveX(), move.getMoveY())) {
+      msg.setFullMessage(false, 400, "Bad Request: This position is outside the board!");
+      return false;
+    }
+    // case 4: position is already token, a classic board has no successor state for the cell
+    int state = gameBoard.getTableState();
+    if (state >= 0
+        ? TABLE.next(state, move.getMoveX() * GameBoard.DEFAULT_SIZE + move.getMoveY()) < 0
+        : gameBoard.isOccupied(move.getMoveX(), move.getMoveY())) {
+      msg.setFullMessage(false, 400, "Bad Request: This position had been token already!");
+      return false;
+    }
+    msg.setFullMessage(true, 200, "");
+    return true;
+  }
+}
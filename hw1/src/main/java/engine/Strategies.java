@@ -0,0 +1,104 @@
+package engine;
+
+import ai.AlphaBetaSearch;
+import ai.Difficulty;
+import ai.Position;
+import java.util.concurrent.ThreadLocalRandom;
+import models.GameBoard;
+import models.GameState;
+
+/** Built-in strategies of the simulations.
+ *
+ */
+public final class Strategies {
+
+  /** Any free cell, uniformly. */
+  public static final Strategy RANDOM = Strategies::randomMove;
+
+  /** Win at once if possible, else block the opponent's win, else a random free cell. */
+  public static final Strategy GREEDY = Strategies::greedyMove;
+
+  private Strategies() {
+  }
+
+  /** Best moves of a search, which may be shared by any number of strategies and threads.
+   *
+   * @param search AlphaBetaSearch: Search, with its cache and time budget
+   * @param difficulty Difficulty: How well to play
+   * @return Strategy: Strategy calling the search
+   */
+  public static Strategy minimax(AlphaBetaSearch search, Difficulty difficulty) {
+    return board -> search.chooseMove(Position.of(board), difficulty);
+  }
+
+  /** Get a strategy by name.
+   *
+   * @param name String: random, greedy or minimax, which plays HARD with a 50 ms budget per move
+   * @return Strategy: The strategy
+   * @throws IllegalArgumentException if the name is unknown
+   */
+  public static Strategy byName(String name) {
+    switch (name) {
+      case "random":
+        return RANDOM;
+      case "greedy":
+        return GREEDY;
+      case "minimax":
+        return minimax(SearchHolder.SEARCH, Difficulty.HARD);
+      default:
+        throw new IllegalArgumentException("Unknown strategy " + name);
+    }
+  }
+
+  private static int randomMove(GameBoard board) {
+    int size = board.getSize();
+    int free = size * size - board.getMoveCount();
+    int skip = ThreadLocalRandom.current().nextInt(Math.max(1, free));
+    int last = -1;
+    for (int cell = 0; cell < size * size; cell++) {
+      if (!board.isOccupied(cell / size, cell % size)) {
+        last = cell;
+        if (skip-- == 0) {
+          return cell;
+        }
+      }
+    }
+    // Fewer free cells than moves suggest, on a board not built by the engine
+    return last;
+  }
+
+  private static int greedyMove(GameBoard board) {
+    char mine = board.getTurn() == 1 ? board.getP1().getType() : board.getP2().getType();
+    char theirs = mine == 'X' ? 'O' : 'X';
+    int win = completingMove(board, mine);
+    if (win >= 0) {
+      return win;
+    }
+    int block = completingMove(board, theirs);
+    return block >= 0 ? block : randomMove(board);
+  }
+
+  // First free cell on which the piece wins, -1 if none
+  private static int completingMove(GameBoard board, char piece) {
+    int size = board.getSize();
+    for (int cell = 0; cell < size * size; cell++) {
+      int x = cell / size;
+      int y = cell % size;
+      if (board.isOccupied(x, y)) {
+        continue;
+      }
+      board.setBoardState(x, y, piece);
+      GameState result = board.checkGameResult(x, y);
+      board.setBoardState(x, y, '\u0000');
+      if (result == GameState.PLAYER1WIN || result == GameState.PLAYER2WIN) {
+        return cell;
+      }
+    }
+    return -1;
+  }
+
+  // Created on first use, so the other strategies do not allocate its cache
+  private static final class SearchHolder {
+    private static final AlphaBetaSearch SEARCH = new AlphaBetaSearch(1 << 20, 50);
+  }
+}
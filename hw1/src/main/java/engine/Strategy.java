@@ -0,0 +1,18 @@
+package engine;
+
+import models.GameBoard;
+
+/** A player of simulated games, see {@link Strategies} for the built-in ones.
+ *
+ * <p>Tournaments call one strategy from many threads at once, each on its own board, so a
+ * strategy keeps no state per game.
+ */
+public interface Strategy {
+
+  /** Choose a move for the player whose turn it is.
+   *
+   * @param board GameBoard: Started game, left as it was
+   * @return int: Free cell x * size + y
+   */
+  int chooseMove(GameBoard board);
+}
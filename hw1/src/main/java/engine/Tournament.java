@@ -0,0 +1,170 @@
+package engine;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import models.GameBoard;
+import models.GameState;
+import models.Message;
+
+/** Plays simulated games between strategies on a fork-join pool, without server or storage.
+ *
+ * <p>A series of games is split in halves down to batches of {@link #BATCH_GAMES}, each batch
+ * plays its games on fresh boards through {@link GameEngine} and counts them in its own
+ * {@link TournamentResult}, and the results are merged on the way back up. The batches share
+ * nothing but the strategies, so the run scales with the cores of the pool.
+ *
+ * <p>Run from the command line, for example:
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=engine.Tournament
+ *     -Dexec.args="--strategies=random,greedy,minimax --games=1000000"
+ * </pre>
+ * Options: --strategies (random,greedy), --games per pairing (100000), --size (3), --winLength
+ * (the size, at most 5), --threads (all cores).
+ */
+public class Tournament {
+
+  // Games played by one fork-join leaf
+  static final int BATCH_GAMES = 256;
+
+  private final ForkJoinPool pool;
+
+  private final int size;
+
+  private final int winLength;
+
+  /** Create a runner.
+   *
+   * @param pool ForkJoinPool: Pool playing the games
+   * @param size int: Board size of every game
+   * @param winLength int: Win length of every game
+   */
+  public Tournament(ForkJoinPool pool, int size, int winLength) {
+    // Fail here rather than in every game
+    new GameBoard(size, winLength);
+    this.pool = pool;
+    this.size = size;
+    this.winLength = winLength;
+  }
+
+  /** Play a series of games, player 1 always moving first.
+   *
+   * @param p1 Strategy: Player 1
+   * @param p2 Strategy: Player 2
+   * @param games int: Number of games
+   * @return TournamentResult: Counts of the series
+   */
+  public TournamentResult play(Strategy p1, Strategy p2, int games) {
+    return pool.invoke(new Series(p1, p2, 0, games));
+  }
+
+  /** Play every strategy against every strategy, itself included, in both orders.
+   *
+   * @param strategies Map: Strategies by name
+   * @param games int: Games per ordered pairing
+   * @return Map: Results keyed "player1 vs player2", in the order played
+   */
+  public Map<String, TournamentResult> roundRobin(Map<String, Strategy> strategies, int games) {
+    Map<String, TournamentResult> results = new LinkedHashMap<>();
+    for (Map.Entry<String, Strategy> p1 : strategies.entrySet()) {
+      for (Map.Entry<String, Strategy> p2 : strategies.entrySet()) {
+        results.put(p1.getKey() + " vs " + p2.getKey(), play(p1.getValue(), p2.getValue(), games));
+      }
+    }
+    return results;
+  }
+
+  /** Play one game to its end.
+   *
+   * @param p1 Strategy: Player 1, moving first
+   * @param p2 Strategy: Player 2
+   * @param result TournamentResult: Counts the game
+   */
+  void playGame(Strategy p1, Strategy p2, TournamentResult result) {
+    GameBoard board = GameEngine.createGame('X', size, winLength);
+    GameEngine.joinGame(board);
+    GameState state = GameState.CONTINUE;
+    while (state == GameState.CONTINUE) {
+      int playerId = board.getTurn();
+      int cell = (playerId == 1 ? p1 : p2).chooseMove(board);
+      Message msg = GameEngine.applyMove(board, playerId, cell / size, cell % size);
+      if (!msg.getMoveValidity()) {
+        throw new IllegalStateException("Strategy of player " + playerId + " played cell " + cell
+            + ": " + msg.getMessage());
+      }
+      state = GameEngine.getStatus(board);
+    }
+    result.record(state, board.getMoveCount());
+  }
+
+  // Games [from, to) of a series
+  private final class Series extends RecursiveTask<TournamentResult> {
+    private static final long serialVersionUID = 1L;
+
+    private final Strategy p1;
+    private final Strategy p2;
+    private final int from;
+    private final int to;
+
+    private Series(Strategy p1, Strategy p2, int from, int to) {
+      this.p1 = p1;
+      this.p2 = p2;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected TournamentResult compute() {
+      if (to - from <= BATCH_GAMES) {
+        TournamentResult result = new TournamentResult();
+        for (int game = from; game < to; game++) {
+          playGame(p1, p2, result);
+        }
+        return result;
+      }
+      int middle = (from + to) >>> 1;
+      Series left = new Series(p1, p2, from, middle);
+      left.fork();
+      TournamentResult right = new Series(p1, p2, middle, to).compute();
+      return left.join().merge(right);
+    }
+  }
+
+  /** Main method of the tournament runner.
+   *
+   * @param args Options in the form --name=value
+   */
+  public static void main(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (!arg.startsWith("--") || eq < 0) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      options.put(arg.substring(2, eq), arg.substring(eq + 1));
+    }
+    int size = Integer.parseInt(options.getOrDefault("size", "3"));
+    int winLength = Integer.parseInt(
+        options.getOrDefault("winLength", String.valueOf(Math.min(size, 5))));
+    int games = Integer.parseInt(options.getOrDefault("games", "100000"));
+    int threads = Integer.parseInt(options.getOrDefault("threads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    Map<String, Strategy> strategies = new LinkedHashMap<>();
+    for (String name : options.getOrDefault("strategies", "random,greedy").split(",")) {
+      strategies.put(name, Strategies.byName(name));
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    Tournament tournament = new Tournament(pool, size, winLength);
+    long start = System.nanoTime();
+    Map<String, TournamentResult> results = tournament.roundRobin(strategies, games);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    pool.shutdown();
+    results.forEach((pairing, result) -> System.out.println(pairing + ": " + result));
+    long total = (long) games * strategies.size() * strategies.size();
+    System.out.printf("%d games on %d threads in %.1f s, %.0f games per minute%n",
+        total, threads, seconds, total / seconds * 60);
+  }
+}
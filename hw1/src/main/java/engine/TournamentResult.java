@@ -0,0 +1,66 @@
+package engine;
+
+import models.GameState;
+
+/** Win, loss and draw counts of a series of games between two strategies.
+ *
+ * <p>Each fork-join leaf fills its own result and the leaves are merged, so no counter is shared
+ * between threads.
+ */
+public class TournamentResult {
+
+  private long player1Wins;
+
+  private long player2Wins;
+
+  private long draws;
+
+  private long moves;
+
+  void record(GameState result, int moveCount) {
+    if (result == GameState.PLAYER1WIN) {
+      player1Wins++;
+    } else if (result == GameState.PLAYER2WIN) {
+      player2Wins++;
+    } else {
+      draws++;
+    }
+    moves += moveCount;
+  }
+
+  TournamentResult merge(TournamentResult other) {
+    player1Wins += other.player1Wins;
+    player2Wins += other.player2Wins;
+    draws += other.draws;
+    moves += other.moves;
+    return this;
+  }
+
+  public long getGames() {
+    return player1Wins + player2Wins + draws;
+  }
+
+  public long getPlayer1Wins() {
+    return player1Wins;
+  }
+
+  public long getPlayer2Wins() {
+    return player2Wins;
+  }
+
+  public long getDraws() {
+    return draws;
+  }
+
+  public long getMoves() {
+    return moves;
+  }
+
+  @Override
+  public String toString() {
+    long games = Math.max(1, getGames());
+    return String.format("%d games: player 1 %.1f%%, player 2 %.1f%%, draws %.1f%%, %.1f moves",
+        getGames(), 100.0 * player1Wins / games, 100.0 * player2Wins / games,
+        100.0 * draws / games, (double) moves / games);
+  }
+}
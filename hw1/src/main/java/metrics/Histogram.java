@@ -0,0 +1,133 @@
+package metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Latency histogram with fixed buckets, rendered as a Prometheus histogram in seconds.
+ *
+ * <p>Recording is lock free: it finds the bucket of the value and bumps a few LongAdders, so it is
+ * cheap enough for every request. One child is kept per combination of label values.
+ *
+ */
+public class Histogram {
+
+  // Upper bounds of the buckets, from 50 microseconds to 10 seconds
+  private static final double[] BOUNDS_SECONDS = {
+      0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5,
+      1, 2.5, 5, 10};
+
+  private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+
+  static {
+    for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+      BOUNDS_NANOS[i] = (long) (BOUNDS_SECONDS[i] * 1e9);
+    }
+  }
+
+  private final String name;
+
+  private final String help;
+
+  private final String[] labelNames;
+
+  private final Map<List<String>, Child> children = new ConcurrentHashMap<>();
+
+  Histogram(String name, String help, String... labelNames) {
+    this.name = name;
+    this.help = help;
+    this.labelNames = labelNames;
+  }
+
+  /** Get the child recording the given label values.
+   *
+   * @param labelValues String: One value per label name, in order
+   * @return Child: The child, created on first use
+   */
+  public Child labels(String... labelValues) {
+    if (labelValues.length != labelNames.length) {
+      throw new IllegalArgumentException(name + " expects labels " + Arrays.toString(labelNames));
+    }
+    return children.computeIfAbsent(Arrays.asList(labelValues), values -> new Child());
+  }
+
+  /** Record a duration in the histogram without labels.
+   *
+   * @param nanos long: Duration in nanoseconds
+   */
+  public void observeNanos(long nanos) {
+    labels().observeNanos(nanos);
+  }
+
+  void render(StringBuilder out) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(" histogram\n");
+    for (Map.Entry<List<String>, Child> entry : children.entrySet()) {
+      String labels = formatLabels(entry.getKey());
+      Child child = entry.getValue();
+      long cumulative = 0;
+      for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+        cumulative += child.buckets[i].sum();
+        appendBucket(out, labels, Double.toString(BOUNDS_SECONDS[i]), cumulative);
+      }
+      // Observations landing while the buckets are read can make the count lag behind them,
+      // +Inf and _count never go below the last bucket
+      long count = Math.max(child.count.sum(),
+          cumulative + child.buckets[BOUNDS_SECONDS.length].sum());
+      appendBucket(out, labels, "+Inf", count);
+      String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+      out.append(name).append("_sum").append(braces).append(' ')
+          .append(child.sumNanos.sum() / 1e9).append('\n');
+      out.append(name).append("_count").append(braces).append(' ').append(count).append('\n');
+    }
+  }
+
+  private void appendBucket(StringBuilder out, String labels, String le, long value) {
+    out.append(name).append("_bucket{");
+    if (!labels.isEmpty()) {
+      out.append(labels).append(',');
+    }
+    out.append("le=\"").append(le).append("\"} ").append(value).append('\n');
+  }
+
+  private String formatLabels(List<String> values) {
+    StringBuilder labels = new StringBuilder();
+    for (int i = 0; i < labelNames.length; i++) {
+      if (i > 0) {
+        labels.append(',');
+      }
+      labels.append(labelNames[i]).append("=\"")
+          .append(MetricsRegistry.escape(values.get(i))).append('"');
+    }
+    return labels.toString();
+  }
+
+  /** Histogram of one combination of label values.
+   *
+   */
+  public static final class Child {
+    // Counts per bucket, the last one holds the values above every bound
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    private Child() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    /** Record a duration.
+     *
+     * @param nanos long: Duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+      int index = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+      buckets[index >= 0 ? index : -index - 1].increment();
+      count.increment();
+      sumNanos.add(nanos);
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package metrics;
+
+/** Metrics of the server, shared by every package.
+ *
+ */
+public final class Metrics {
+
+  public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+  public static final Histogram HTTP_REQUEST_SECONDS = REGISTRY.histogram(
+      "tictactoe_http_request_duration_seconds", "Time to handle an HTTP request",
+      "method", "route", "status");
+
+  public static final Histogram DB_COMMIT_SECONDS = REGISTRY.histogram(
+      "tictactoe_db_commit_duration_seconds", "Time to commit a write or a batch of writes");
+
+  public static final Histogram BROADCAST_SECONDS = REGISTRY.histogram(
+      "tictactoe_broadcast_duration_seconds",
+      "Time to queue a board update for every subscriber of a game", "kind");
+
+  public static final Histogram GAME_LOAD_SECONDS = REGISTRY.histogram(
+      "tictactoe_game_load_duration_seconds", "Time to load a game missing from memory");
+
+  private Metrics() {
+  }
+}
@@ -0,0 +1,92 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/** Set of metrics rendered together in the Prometheus text format.
+ *
+ * <p>Histograms are recorded as events happen. Gauges and counters kept elsewhere, such as queue
+ * depths or the number of games, are read from a supplier only when the metrics are scraped.
+ *
+ */
+public class MetricsRegistry {
+
+  // Metrics by name, sorted so the output is stable
+  private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+  /** Create a histogram, or get the one already registered under this name.
+   *
+   * @param name String: Metric name
+   * @param help String: Description
+   * @param labelNames String: Names of the labels
+   * @return Histogram: The histogram
+   */
+  public Histogram histogram(String name, String help, String... labelNames) {
+    return (Histogram) metrics.computeIfAbsent(name, n -> new Histogram(n, help, labelNames));
+  }
+
+  /** Register a gauge whose value is read when the metrics are scraped.
+   *
+   * <p>Registering a name again replaces the previous supplier, which happens when the server is
+   * restarted in the same JVM.
+   *
+   * @param name String: Metric name
+   * @param help String: Description
+   * @param value Supplier: Current value
+   */
+  public void gauge(String name, String help, Supplier<? extends Number> value) {
+    metrics.put(name, new Sampled(name, help, "gauge", value));
+  }
+
+  /** Register a counter kept elsewhere, read when the metrics are scraped.
+   *
+   * @param name String: Metric name, ending in _total
+   * @param help String: Description
+   * @param value Supplier: Current count
+   */
+  public void counter(String name, String help, Supplier<? extends Number> value) {
+    metrics.put(name, new Sampled(name, help, "counter", value));
+  }
+
+  /** Render every metric in the Prometheus text exposition format.
+   *
+   * @return String: Metrics text
+   */
+  public String render() {
+    StringBuilder out = new StringBuilder();
+    for (Object metric : metrics.values()) {
+      if (metric instanceof Histogram) {
+        ((Histogram) metric).render(out);
+      } else {
+        ((Sampled) metric).render(out);
+      }
+    }
+    return out.toString();
+  }
+
+  static String escape(String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  // Gauge or counter read from a supplier
+  private static final class Sampled {
+    private final String name;
+    private final String help;
+    private final String type;
+    private final Supplier<? extends Number> value;
+
+    private Sampled(String name, String help, String type, Supplier<? extends Number> value) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+      this.value = value;
+    }
+
+    private void render(StringBuilder out) {
+      out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+      out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+      out.append(name).append(' ').append(value.get()).append('\n');
+    }
+  }
+}
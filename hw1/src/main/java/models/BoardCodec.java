@@ -0,0 +1,186 @@
+package models;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Compact binary encoding of boards, deltas, move results and move requests.
+ *
+ * <p>Clients ask for it with Accept: application/octet-stream on the REST routes or ?format=binary
+ * on the WebSocket, JSON stays the default. Every frame starts with its type byte, numbers wider
+ * than a byte are big-endian.
+ *
+ * <pre>
+ * BOARD   type, flags, p1 type, p2 type, turn, winner, size, winLength, moveCount (2),
+ *         cells packed four per byte, two bits each from the low bits: 0 empty, 1 X, 2 O
+ * DELTA   type, flags, x, y, piece, turn, winner, seq (2), gameId length, gameId
+ * MESSAGE type, moveValidity, code (2), message in UTF-8
+ * move    x, y (request body of a move)
+ * </pre>
+ *
+ * <p>flags holds gameStarted in bit 0 and isDraw in bit 1. A missing player has type 0, player
+ * ids are always 1 and 2.
+ */
+public final class BoardCodec {
+
+  public static final String CONTENT_TYPE = "application/octet-stream";
+
+  public static final byte BOARD = 1;
+
+  public static final byte DELTA = 2;
+
+  public static final byte MESSAGE = 3;
+
+  private static final int BOARD_HEADER = 10;
+
+  private static final int FLAG_STARTED = 1;
+
+  private static final int FLAG_DRAW = 2;
+
+  private BoardCodec() {
+  }
+
+  /** Encode a board.
+   *
+   * @param board GameBoard: Board to encode
+   * @return byte[]: BOARD frame
+   */
+  public static byte[] encodeBoard(GameBoard board) {
+    return capture(board).encode();
+  }
+
+  /** Copy what a BOARD frame of a board holds, to encode it later whatever the board does.
+   *
+   * @param board GameBoard: Board to copy
+   * @return BoardState: Copy of the board
+   */
+  static BoardState capture(GameBoard board) {
+    byte[] header = new byte[BOARD_HEADER];
+    header[0] = BOARD;
+    header[1] = flags(board.isGameStarted(), board.isDraw());
+    header[2] = playerType(board.getP1());
+    header[3] = playerType(board.getP2());
+    header[4] = (byte) board.getTurn();
+    header[5] = (byte) board.getWinner();
+    header[6] = (byte) board.getSize();
+    header[7] = (byte) board.getWinLength();
+    header[8] = (byte) (board.getMoveCount() >>> 8);
+    header[9] = (byte) board.getMoveCount();
+    return new BoardState(header, board.copyBits('X'), board.copyBits('O'));
+  }
+
+  /** Decode a BOARD frame.
+   *
+   * @param frame byte[]: Frame made by {@link #encodeBoard(GameBoard)}
+   * @return GameBoard: The board
+   */
+  public static GameBoard decodeBoard(byte[] frame) {
+    if (frame.length < BOARD_HEADER || frame[0] != BOARD) {
+      throw new IllegalArgumentException("Not a board frame");
+    }
+    int size = frame[6];
+    if (frame.length != BOARD_HEADER + (size * size + 3) / 4) {
+      throw new IllegalArgumentException("Board frame of " + frame.length + " bytes");
+    }
+    GameBoard board = new GameBoard(size, frame[7]);
+    if (frame[2] != 0) {
+      board.setP1(new Player((char) frame[2], 1));
+    }
+    if (frame[3] != 0) {
+      board.setP2(new Player((char) frame[3], 2));
+    }
+    for (int cell = 0; cell < size * size; cell++) {
+      int code = frame[BOARD_HEADER + cell / 4] >>> (cell % 4 * 2) & 3;
+      if (code != 0) {
+        board.setBoardState(cell / size, cell % size, code == 1 ? 'X' : 'O');
+      }
+    }
+    board.setGameStarted((frame[1] & FLAG_STARTED) != 0);
+    board.setDraw((frame[1] & FLAG_DRAW) != 0);
+    board.setTurn(frame[4]);
+    board.setWinner(frame[5]);
+    board.setMoveCount((frame[8] & 0xff) << 8 | frame[9] & 0xff);
+    return board;
+  }
+
+  /** Encode a delta.
+   *
+   * @param delta BoardDelta: Delta to encode
+   * @return byte[]: DELTA frame
+   */
+  public static byte[] encodeDelta(BoardDelta delta) {
+    byte[] gameId = delta.getGameId().getBytes(StandardCharsets.US_ASCII);
+    return ByteBuffer.allocate(10 + gameId.length)
+        .put(DELTA)
+        .put(flags(delta.isGameStarted(), delta.isDraw()))
+        .put((byte) delta.getX())
+        .put((byte) delta.getY())
+        .put((byte) delta.getPiece())
+        .put((byte) delta.getTurn())
+        .put((byte) delta.getWinner())
+        .putShort((short) delta.getSeq())
+        .put((byte) gameId.length)
+        .put(gameId)
+        .array();
+  }
+
+  /** Encode the result of a move.
+   *
+   * @param msg Message: Result to encode
+   * @return byte[]: MESSAGE frame
+   */
+  public static byte[] encodeMessage(Message msg) {
+    byte[] text = msg.getMessage() == null
+        ? new byte[0] : msg.getMessage().getBytes(StandardCharsets.UTF_8);
+    return ByteBuffer.allocate(4 + text.length)
+        .put(MESSAGE)
+        .put((byte) (msg.getMoveValidity() ? 1 : 0))
+        .putShort((short) msg.getCode())
+        .put(text)
+        .array();
+  }
+
+  /** Decode the body of a binary move request.
+   *
+   * @param body byte[]: Two bytes, the row then the column
+   * @return int[]: {x, y}
+   */
+  public static int[] decodeMove(byte[] body) {
+    if (body.length != 2) {
+      throw new IllegalArgumentException("A move is 2 bytes, got " + body.length);
+    }
+    return new int[] {body[0] & 0xff, body[1] & 0xff};
+  }
+
+  private static byte flags(boolean gameStarted, boolean isDraw) {
+    return (byte) ((gameStarted ? FLAG_STARTED : 0) | (isDraw ? FLAG_DRAW : 0));
+  }
+
+  private static byte playerType(Player player) {
+    return player == null ? 0 : (byte) player.getType();
+  }
+
+  // The fields of a BOARD frame and the cells of the board, one bit per cell x * size + y
+  static final class BoardState {
+    private final byte[] header;
+    private final long[] xBits;
+    private final long[] oBits;
+
+    private BoardState(byte[] header, long[] xBits, long[] oBits) {
+      this.header = header;
+      this.xBits = xBits;
+      this.oBits = oBits;
+    }
+
+    byte[] encode() {
+      int cells = header[6] * header[6];
+      byte[] frame = Arrays.copyOf(header, BOARD_HEADER + (cells + 3) / 4);
+      for (int cell = 0; cell < cells; cell++) {
+        long bit = 1L << cell;
+        int code = (xBits[cell >>> 6] & bit) != 0 ? 1 : (oBits[cell >>> 6] & bit) != 0 ? 2 : 0;
+        frame[BOARD_HEADER + cell / 4] |= (byte) (code << (cell % 4 * 2));
+      }
+      return frame;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package models;
+
+/** One move sent to clients which follow a board by deltas.
+ *
+ * <p>seq is the move count after the move. A client holding the board at move seq - 1 applies the
+ * piece to (x, y) and takes the status fields as the new status. Any other seq means updates were
+ * missed and the client should ask for a snapshot.
+ */
+public class BoardDelta {
+
+  private final String type = "delta";
+
+  private final String gameId;
+
+  private final int seq;
+
+  private final int x;
+
+  private final int y;
+
+  private final char piece;
+
+  private final int turn;
+
+  private final boolean gameStarted;
+
+  private final int winner;
+
+  private final boolean isDraw;
+
+  /** Construct the delta of the last move applied to a board.
+   *
+   * @param gameId String: Game id
+   * @param board GameBoard: Board after the move
+   * @param x int: Row of the move
+   * @param y int: Column of the move
+   */
+  public BoardDelta(String gameId, GameBoard board, int x, int y) {
+    this.gameId = gameId;
+    this.seq = board.getMoveCount();
+    this.x = x;
+    this.y = y;
+    this.piece = board.getCell(x, y);
+    this.turn = board.getTurn();
+    this.gameStarted = board.isGameStarted();
+    this.winner = board.getWinner();
+    this.isDraw = board.isDraw();
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getGameId() {
+    return gameId;
+  }
+
+  public int getSeq() {
+    return seq;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public char getPiece() {
+    return piece;
+  }
+
+  public int getTurn() {
+    return turn;
+  }
+
+  public boolean isGameStarted() {
+    return gameStarted;
+  }
+
+  public int getWinner() {
+    return winner;
+  }
+
+  public boolean isDraw() {
+    return isDraw;
+  }
+}
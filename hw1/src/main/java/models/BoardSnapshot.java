@@ -0,0 +1,131 @@
+package models;
+
+import java.nio.charset.StandardCharsets;
+
+/** Immutable serialized form of one version of a GameBoard.
+ *
+ * <p>The JSON is built once per board change and shared by every HTTP response and WebSocket
+ * message until the board changes again. The ETag names the board instance and its version, which
+ * every change bumps, so two different boards never share it, and the start of the server, so
+ * tags given out before a restart never match. The {@link BoardCodec} encoding of the board is
+ * only built when a binary client first asks for it, from a copy of the board's fields and cells
+ * taken with the JSON since the board may have changed by then, and is kept next to the JSON with
+ * its own ETag.
+ */
+public class BoardSnapshot {
+
+  private static final GameBoardAdapter ADAPTER = new GameBoardAdapter();
+
+  private static final String BOOT_ID = Long.toString(System.currentTimeMillis(), 36);
+
+  private final int version;
+
+  private final String json;
+
+  private final byte[] bytes;
+
+  private final String etag;
+
+  // What the binary encoding is built from
+  private final BoardCodec.BoardState state;
+
+  // Built on first use, racing threads build the same bytes
+  private volatile byte[] binary;
+
+  private final String binaryEtag;
+
+  private BoardSnapshot(long instanceId, int version, String json, BoardCodec.BoardState state) {
+    this.version = version;
+    this.json = json;
+    this.state = state;
+    this.bytes = json.getBytes(StandardCharsets.UTF_8);
+    String tag = BOOT_ID + "-" + Long.toString(instanceId, 36) + "-" + version;
+    this.etag = "\"" + tag + "\"";
+    this.binaryEtag = "\"" + tag + "b\"";
+  }
+
+  static BoardSnapshot of(GameBoard board, int version) {
+    return new BoardSnapshot(board.getInstanceId(), version, ADAPTER.toJson(board),
+        BoardCodec.capture(board));
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public String getJson() {
+    return json;
+  }
+
+  /** Get the UTF-8 bytes of the JSON. Callers must not modify the array.
+   *
+   * @return byte[]: Shared serialized bytes
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /** Wrap the board for clients which follow it by deltas, so they can tell it from a delta.
+   *
+   * @param gameId String: Game id of the board
+   * @return String: {"type":"snapshot","gameId":...,"board":{...}}
+   */
+  public String toSnapshotMessage(String gameId) {
+    return "{\"type\":\"snapshot\",\"gameId\":\"" + gameId + "\",\"board\":" + json + "}";
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  /** Get the BOARD frame of the board. Callers must not modify the array.
+   *
+   * @return byte[]: Shared binary encoding
+   */
+  public byte[] getBinary() {
+    byte[] encoded = binary;
+    if (encoded == null) {
+      encoded = state.encode();
+      binary = encoded;
+    }
+    return encoded;
+  }
+
+  public String getBinaryEtag() {
+    return binaryEtag;
+  }
+
+  /** Check an If-None-Match request header against this snapshot.
+   *
+   * @param ifNoneMatch String: Header value, may be null
+   * @return Boolean: true if the client already holds this snapshot
+   */
+  public boolean matches(String ifNoneMatch) {
+    return matches(ifNoneMatch, etag);
+  }
+
+  /** Check an If-None-Match request header against the binary encoding of this snapshot.
+   *
+   * @param ifNoneMatch String: Header value, may be null
+   * @return Boolean: true if the client already holds this snapshot
+   */
+  public boolean matchesBinary(String ifNoneMatch) {
+    return matches(ifNoneMatch, binaryEtag);
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      String trimmed = tag.trim();
+      if (trimmed.startsWith("W/")) {
+        trimmed = trimmed.substring(2);
+      }
+      if (trimmed.equals("*") || trimmed.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -1,9 +1,40 @@
 package models;
 
-import java.util.Arrays;
+import com.google.gson.annotations.JsonAdapter;
+import java.util.concurrent.atomic.AtomicLong;
 
+/** Board of one game.
+ *
+ * <p>The board is size x size cells and a player wins with winLength pieces in a row. Cells are
+ * kept as two bit sets, one per piece type, with bit (x * size + y) set when the piece sits on
+ * row x, column y. Winning is checked only along the four lines through the last placed piece,
+ * so a move costs O(winLength) whatever the board size. The classic 3 x 3 board also keeps its
+ * base 3 code, and takes its result and its state from the precomputed {@link TicTacToeTable}
+ * instead. {@link GameBoardAdapter} serializes the cells as a char[size][size] boardState.
+ */
+@JsonAdapter(GameBoardAdapter.class)
 public class GameBoard {
 
+  public static final int DEFAULT_SIZE = 3;
+
+  public static final int MIN_SIZE = 3;
+
+  public static final int MAX_SIZE = 25;
+
+  private static final TicTacToeTable TABLE = TicTacToeTable.get();
+
+  // Row and column steps of the four line directions: row, column, diagonal, anti-diagonal
+  private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+  private static final AtomicLong INSTANCES = new AtomicLong();
+
+  // Tells boards apart whose versions coincide, as a game started again under the same id
+  private final long instanceId = INSTANCES.incrementAndGet();
+
+  private final int size;
+
+  private final int winLength;
+
   private Player p1;
 
   private Player p2;
@@ -12,19 +43,56 @@ public class GameBoard {
 
   private int turn;
 
-  private char[][] boardState;
+  private final long[] xBits;
+
+  private final long[] oBits;
+
+  private int pieceCount;
+
+  // Base 3 code of a classic board, see TicTacToeTable
+  private int classicCode;
 
   private int winner;
 
   private boolean isDraw;
 
+  private int moveCount;
+
+  // Difficulty of the server playing p2, null when p2 is a person
+  private String ai;
+
+  // Bumped on every change, so a snapshot knows whether it is still current
+  private int version;
+
+  private volatile BoardSnapshot snapshot;
+
   /** Construct and initialize the GameBoard without Player.
    *
    */
   public GameBoard() {
+    this(DEFAULT_SIZE, DEFAULT_SIZE);
+  }
+
+  /** Construct and initialize an empty GameBoard of any size without Player.
+   *
+   * @param size int: Number of rows and columns, between MIN_SIZE and MAX_SIZE
+   * @param winLength int: Pieces in a row needed to win, between 3 and size
+   */
+  public GameBoard(int size, int winLength) {
+    if (size < MIN_SIZE || size > MAX_SIZE) {
+      throw new IllegalArgumentException("Board size must be between " + MIN_SIZE
+          + " and " + MAX_SIZE);
+    }
+    if (winLength < MIN_SIZE || winLength > size) {
+      throw new IllegalArgumentException("Win length must be between " + MIN_SIZE
+          + " and the board size");
+    }
+    this.size = size;
+    this.winLength = winLength;
+    this.xBits = new long[(size * size + 63) / 64];
+    this.oBits = new long[xBits.length];
     this.gameStarted = false;
     this.turn = 1;
-    this.boardState = new char[3][3];
     this.winner = 0;
     this.isDraw = false;
   }
@@ -34,12 +102,8 @@ public class GameBoard {
    * @param p1 Player
    */
   public GameBoard(Player p1) {
+    this();
     this.p1 = p1;
-    this.gameStarted = false;
-    this.turn = 1;
-    this.boardState = new char[3][3];
-    this.winner = 0;
-    this.isDraw = false;
   }
 
   /** Construct and initialize the GameBoard with Player1 and Player2 and set game as started.
@@ -48,13 +112,10 @@ public class GameBoard {
    * @param p2 Player2
    */
   public GameBoard(Player p1, Player p2) {
+    this();
     this.p1 = p1;
     this.p2 = p2;
     this.gameStarted = true;
-    this.turn = 1;
-    this.boardState = new char[3][3];
-    this.winner = 0;
-    this.isDraw = false;
   }
 
   public Player getP1() {
@@ -63,6 +124,7 @@ public class GameBoard {
 
   public void setP1(Player p1) {
     this.p1 = p1;
+    version++;
   }
 
   public Player getP2() {
@@ -71,6 +133,7 @@ public class GameBoard {
 
   public void setP2(Player p2) {
     this.p2 = p2;
+    version++;
   }
 
   public boolean isGameStarted() {
@@ -79,6 +142,7 @@ public class GameBoard {
 
   public void setGameStarted(boolean gameStarted) {
     this.gameStarted = gameStarted;
+    version++;
   }
 
   public int getTurn() {
@@ -87,14 +151,189 @@ public class GameBoard {
 
   public void setTurn(int turn) {
     this.turn = turn;
+    version++;
+  }
+
+  public int getSize() {
+    return size;
   }
 
+  public int getWinLength() {
+    return winLength;
+  }
+
+  /** Build the board as rows of cells, '\u0000' marks an empty cell.
+   *
+   * @return char[][]: A fresh copy of the board
+   */
   public char[][] getBoardState() {
-    return boardState.clone();
+    char[][] boardState = new char[size][size];
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        boardState[x][y] = getCell(x, y);
+      }
+    }
+    return boardState;
   }
 
+  /** Put a piece on a cell, '\u0000' clears the cell.
+   *
+   * @param x int: Row position
+   * @param y int: Column position
+   * @param state char: 'X', 'O' or '\u0000'
+   */
   public void setBoardState(int x, int y, char state) {
-    this.boardState[x][y] = state;
+    version++;
+    int cell = x * size + y;
+    if (isSet(xBits, cell) || isSet(oBits, cell)) {
+      pieceCount--;
+    }
+    if (isClassic()) {
+      classicCode += (TicTacToeTable.pieceDigit(state) - TicTacToeTable.pieceDigit(getCell(x, y)))
+          * TicTacToeTable.cellWeight(cell);
+    }
+    long bit = 1L << cell;
+    xBits[cell >>> 6] &= ~bit;
+    oBits[cell >>> 6] &= ~bit;
+    if (state == 'X') {
+      xBits[cell >>> 6] |= bit;
+      pieceCount++;
+    } else if (state == 'O') {
+      oBits[cell >>> 6] |= bit;
+      pieceCount++;
+    }
+  }
+
+  /** Get the piece on a cell.
+   *
+   * @param x int: Row position
+   * @param y int: Column position
+   * @return char: 'X', 'O' or '\u0000' for an empty cell
+   */
+  public char getCell(int x, int y) {
+    int cell = x * size + y;
+    if (isSet(xBits, cell)) {
+      return 'X';
+    }
+    return isSet(oBits, cell) ? 'O' : '\u0000';
+  }
+
+  public boolean isOnBoard(int x, int y) {
+    return x >= 0 && x < size && y >= 0 && y < size;
+  }
+
+  public boolean isOccupied(int x, int y) {
+    int cell = x * size + y;
+    return isSet(xBits, cell) || isSet(oBits, cell);
+  }
+
+  // Copy of the cells holding a piece, one bit per cell x * size + y
+  long[] copyBits(char piece) {
+    return (piece == 'X' ? xBits : oBits).clone();
+  }
+
+  private static boolean isSet(long[] bits, int cell) {
+    return (bits[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  private boolean isClassic() {
+    return size == DEFAULT_SIZE && winLength == DEFAULT_SIZE;
+  }
+
+  /** Get the state of a classic board in the {@link TicTacToeTable}.
+   *
+   * @return int: State id, -1 for a larger board, a board without both players or an unreachable
+   *     position
+   */
+  public int getTableState() {
+    if (!isClassic() || p1 == null || p2 == null) {
+      return -1;
+    }
+    return TABLE.stateOf(classicCode, turn == 1 ? p1.getType() : p2.getType());
+  }
+
+  // Result of a classic board, one lookup
+  private GameState classicResult() {
+    switch (TABLE.resultOf(classicCode)) {
+      case TicTacToeTable.X_WINS:
+        return winnerOf('X');
+      case TicTacToeTable.O_WINS:
+        return winnerOf('O');
+      case TicTacToeTable.DRAW:
+        return GameState.DRAW;
+      default:
+        return GameState.CONTINUE;
+    }
+  }
+
+  /** Check the result after a piece was placed on (x, y), only looking at lines through it.
+   *
+   * @param x int: Row of the last placed piece
+   * @param y int: Column of the last placed piece
+   * @return GameState: Result of the game as it stands
+   */
+  public GameState checkGameResult(int x, int y) {
+    if (isClassic()) {
+      return classicResult();
+    }
+    char type = getCell(x, y);
+    if (type != '\u0000' && hasLineThrough(type == 'X' ? xBits : oBits, x, y)) {
+      return winnerOf(type);
+    }
+    return pieceCount == size * size ? GameState.DRAW : GameState.CONTINUE;
+  }
+
+  /** Check the result of the whole board, for boards not built move by move.
+   *
+   * @return GameState: Result of the game as it stands
+   */
+  public GameState checkGameResult() {
+    if (isClassic()) {
+      return classicResult();
+    }
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        char type = getCell(x, y);
+        if (type != '\u0000' && hasLineThrough(type == 'X' ? xBits : oBits, x, y)) {
+          return winnerOf(type);
+        }
+      }
+    }
+    return pieceCount == size * size ? GameState.DRAW : GameState.CONTINUE;
+  }
+
+  private boolean hasLineThrough(long[] bits, int x, int y) {
+    for (int[] direction : DIRECTIONS) {
+      int dx = direction[0];
+      int dy = direction[1];
+      int count = 1 + countFrom(bits, x, y, dx, dy) + countFrom(bits, x, y, -dx, -dy);
+      if (count >= winLength) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Count the pieces in bits next to (x, y) going one way, up to winLength - 1 of them
+  private int countFrom(long[] bits, int x, int y, int dx, int dy) {
+    int count = 0;
+    for (int i = 1; i < winLength; i++) {
+      int nx = x + i * dx;
+      int ny = y + i * dy;
+      if (!isOnBoard(nx, ny) || !isSet(bits, nx * size + ny)) {
+        break;
+      }
+      count++;
+    }
+    return count;
+  }
+
+  private GameState winnerOf(char type) {
+    if (p1 != null && type == p1.getType()) {
+      return GameState.PLAYER1WIN;
+    } else {
+      return GameState.PLAYER2WIN;
+    }
   }
 
   public int getWinner() {
@@ -103,6 +342,7 @@ public class GameBoard {
 
   public void setWinner(int winner) {
     this.winner = winner;
+    version++;
   }
 
   public boolean isDraw() {
@@ -111,5 +351,54 @@ public class GameBoard {
 
   public void setDraw(boolean draw) {
     isDraw = draw;
+    version++;
+  }
+
+  public String getAi() {
+    return ai;
+  }
+
+  public void setAi(String ai) {
+    this.ai = ai;
+    version++;
+  }
+
+  /** Version of the board, increased by every change.
+   *
+   * @return int: Version
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  long getInstanceId() {
+    return instanceId;
+  }
+
+  /** Get the serialized board, built at most once per version.
+   *
+   * @return BoardSnapshot: Snapshot of the current version
+   */
+  public BoardSnapshot getSnapshot() {
+    BoardSnapshot current = snapshot;
+    int currentVersion = version;
+    if (current == null || current.getVersion() != currentVersion) {
+      current = BoardSnapshot.of(this, currentVersion);
+      snapshot = current;
+    }
+    return current;
+  }
+
+  /** Number of moves taken so far, which is also the moveId of the last stored move.
+   *
+   * @return int: Move count
+   */
+  public int getMoveCount() {
+    return moveCount;
+  }
+
+  public void setMoveCount(int moveCount) {
+    this.moveCount = moveCount;
+    version++;
   }
 }
@@ -0,0 +1,171 @@
+package models;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Gson adapter which keeps the GameBoard JSON shape independent of its internal layout.
+ *
+ */
+public class GameBoardAdapter extends TypeAdapter<GameBoard> {
+
+  @Override
+  public void write(JsonWriter out, GameBoard board) throws IOException {
+    if (board == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    writePlayer(out, "p1", board.getP1());
+    writePlayer(out, "p2", board.getP2());
+    out.name("gameStarted").value(board.isGameStarted());
+    out.name("turn").value(board.getTurn());
+    out.name("size").value(board.getSize());
+    out.name("winLength").value(board.getWinLength());
+    out.name("boardState").beginArray();
+    for (int x = 0; x < board.getSize(); x++) {
+      out.beginArray();
+      for (int y = 0; y < board.getSize(); y++) {
+        out.value(String.valueOf(board.getCell(x, y)));
+      }
+      out.endArray();
+    }
+    out.endArray();
+    out.name("winner").value(board.getWinner());
+    out.name("isDraw").value(board.isDraw());
+    out.name("moveCount").value(board.getMoveCount());
+    if (board.getAi() != null) {
+      out.name("ai").value(board.getAi());
+    }
+    out.endObject();
+  }
+
+  private static void writePlayer(JsonWriter out, String name, Player player) throws IOException {
+    if (player == null) {
+      return;
+    }
+    out.name(name).beginObject();
+    out.name("type").value(String.valueOf(player.getType()));
+    out.name("id").value(player.getId());
+    out.endObject();
+  }
+
+  @Override
+  public GameBoard read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    // The board can only be built once its size is known, so collect every field first
+    Player p1 = null;
+    Player p2 = null;
+    boolean gameStarted = false;
+    int turn = 1;
+    int size = GameBoard.DEFAULT_SIZE;
+    int winLength = GameBoard.DEFAULT_SIZE;
+    List<String> cells = new ArrayList<>();
+    int winner = 0;
+    boolean isDraw = false;
+    int moveCount = 0;
+    String ai = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "p1":
+          p1 = readPlayer(in);
+          break;
+        case "p2":
+          p2 = readPlayer(in);
+          break;
+        case "gameStarted":
+          gameStarted = in.nextBoolean();
+          break;
+        case "turn":
+          turn = in.nextInt();
+          break;
+        case "size":
+          size = in.nextInt();
+          break;
+        case "winLength":
+          winLength = in.nextInt();
+          break;
+        case "boardState":
+          readBoardState(in, cells);
+          break;
+        case "winner":
+          winner = in.nextInt();
+          break;
+        case "isDraw":
+          isDraw = in.nextBoolean();
+          break;
+        case "moveCount":
+          moveCount = in.nextInt();
+          break;
+        case "ai":
+          ai = in.nextString();
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+
+    GameBoard board = new GameBoard(size, winLength);
+    board.setP1(p1);
+    board.setP2(p2);
+    board.setGameStarted(gameStarted);
+    board.setTurn(turn);
+    for (int i = 0; i < cells.size() && i < size * size; i++) {
+      String value = cells.get(i);
+      if (!value.isEmpty()) {
+        board.setBoardState(i / size, i % size, value.charAt(0));
+      }
+    }
+    board.setWinner(winner);
+    board.setDraw(isDraw);
+    board.setMoveCount(moveCount);
+    board.setAi(ai);
+    return board;
+  }
+
+  private static Player readPlayer(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    char type = '\u0000';
+    int id = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if ("type".equals(name)) {
+        String value = in.nextString();
+        type = value.isEmpty() ? '\u0000' : value.charAt(0);
+      } else if ("id".equals(name)) {
+        id = in.nextInt();
+      } else {
+        in.skipValue();
+      }
+    }
+    in.endObject();
+    return new Player(type, id);
+  }
+
+  // Flatten the rows of boardState into cells, row by row
+  private static void readBoardState(JsonReader in, List<String> cells) throws IOException {
+    in.beginArray();
+    while (in.hasNext()) {
+      in.beginArray();
+      while (in.hasNext()) {
+        cells.add(in.nextString());
+      }
+      in.endArray();
+    }
+    in.endArray();
+  }
+}
@@ -0,0 +1,274 @@
+package models;
+
+import java.util.Arrays;
+
+/** Every reachable position of the classic 3 x 3 game, solved once.
+ *
+ * <p>A board is coded in base 3, cell (x * 3 + y) being digit 0 for empty, 1 for X and 2 for O,
+ * which {@link GameBoard} keeps up to date move by move. Since either piece may move first, a
+ * state is a board together with the piece to move. The states reachable from the empty board are
+ * numbered densely, and for each of them the table holds the successor per cell, the result as it
+ * stands and its value under perfect play, so applying or judging a move is an array lookup.
+ */
+public final class TicTacToeTable {
+
+  public static final int CELLS = 9;
+
+  // Results of a board, by piece rather than by player
+  public static final byte CONTINUE = 0;
+
+  public static final byte X_WINS = 1;
+
+  public static final byte O_WINS = 2;
+
+  public static final byte DRAW = 3;
+
+  // Score of a won position for the piece to move, less one per ply needed to win
+  private static final int WIN_SCORE = 10;
+
+  private static final int CODES = 19683;
+
+  private static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561};
+
+  private static final int[] LINES = {
+      0b000000111, 0b000111000, 0b111000000, // rows
+      0b001001001, 0b010010010, 0b100100100, // columns
+      0b100010001, 0b001010100 // diagonals
+  };
+
+  private static final TicTacToeTable INSTANCE = new TicTacToeTable();
+
+  // Result of every code, reachable or not
+  private final byte[] resultOfCode = new byte[CODES];
+
+  // State id of (code, piece to move), -1 if unreachable; index code * 2 + (O to move ? 1 : 0)
+  private final int[] stateOf = new int[CODES * 2];
+
+  private int stateCount;
+
+  // Sized for every (code, piece) pair while numbering, trimmed afterwards
+  private int[] codes = new int[CODES * 2];
+
+  private byte[] toMove = new byte[CODES * 2];
+
+  private short[] next;
+
+  private byte[] scores;
+
+  private byte[] bestMoves;
+
+  private TicTacToeTable() {
+    for (int code = 0; code < CODES; code++) {
+      resultOfCode[code] = computeResult(code);
+    }
+    Arrays.fill(stateOf, -1);
+    // Number the reachable states breadth first, the empty board with either piece to move first
+    addState(0, 'X');
+    addState(0, 'O');
+    next = new short[CODES * 2 * CELLS];
+    for (int id = 0; id < stateCount; id++) {
+      int code = codes[id];
+      char piece = (char) toMove[id];
+      for (int cell = 0; cell < CELLS; cell++) {
+        int successor = -1;
+        if (resultOfCode[code] == CONTINUE && digit(code, cell) == 0) {
+          successor = addState(code + pieceDigit(piece) * POW3[cell], other(piece));
+        }
+        next[id * CELLS + cell] = (short) successor;
+      }
+    }
+    codes = Arrays.copyOf(codes, stateCount);
+    toMove = Arrays.copyOf(toMove, stateCount);
+    next = Arrays.copyOf(next, stateCount * CELLS);
+    solve();
+  }
+
+  public static TicTacToeTable get() {
+    return INSTANCE;
+  }
+
+  private int addState(int code, char piece) {
+    int key = code * 2 + (piece == 'O' ? 1 : 0);
+    if (stateOf[key] < 0) {
+      codes[stateCount] = code;
+      toMove[stateCount] = (byte) piece;
+      stateOf[key] = stateCount++;
+    }
+    return stateOf[key];
+  }
+
+  // Negamax over the whole graph. States are numbered level by level, so every child has a higher
+  // id than its parents and a backward sweep sees children first
+  private void solve() {
+    scores = new byte[stateCount];
+    bestMoves = new byte[stateCount];
+    for (int id = stateCount - 1; id >= 0; id--) {
+      bestMoves[id] = -1;
+      byte result = resultOfCode[codes[id]];
+      if (result != CONTINUE) {
+        // The piece to move did not make the last move, so a won board is lost for it
+        scores[id] = (byte) (result == DRAW ? 0 : -WIN_SCORE);
+        continue;
+      }
+      int best = Integer.MIN_VALUE;
+      for (int cell = 0; cell < CELLS; cell++) {
+        int child = next[id * CELLS + cell];
+        if (child < 0) {
+          continue;
+        }
+        int score = -scores[child];
+        // A win further away is worth less, a loss further away is worth more
+        score += score > 0 ? -1 : score < 0 ? 1 : 0;
+        if (score > best) {
+          best = score;
+          bestMoves[id] = (byte) cell;
+        }
+      }
+      scores[id] = (byte) best;
+    }
+  }
+
+  public int getStateCount() {
+    return stateCount;
+  }
+
+  /** Get the state of a board.
+   *
+   * @param code int: Base 3 code of the board
+   * @param piece char: Piece to move, 'X' or 'O'
+   * @return int: State id, -1 if the board cannot be reached with this piece to move
+   */
+  public int stateOf(int code, char piece) {
+    if (code < 0 || code >= CODES || (piece != 'X' && piece != 'O')) {
+      return -1;
+    }
+    return stateOf[code * 2 + (piece == 'O' ? 1 : 0)];
+  }
+
+  /** Get the state after the piece to move is put on a cell.
+   *
+   * @param state int: State id
+   * @param cell int: x * 3 + y
+   * @return int: Successor state, -1 if the cell is taken or the game is over
+   */
+  public int next(int state, int cell) {
+    return next[state * CELLS + cell];
+  }
+
+  /** Get the cells the piece to move may take.
+   *
+   * @param state int: State id
+   * @return int: Bit (x * 3 + y) set for every legal cell
+   */
+  public int legalMoves(int state) {
+    int mask = 0;
+    for (int cell = 0; cell < CELLS; cell++) {
+      if (next[state * CELLS + cell] >= 0) {
+        mask |= 1 << cell;
+      }
+    }
+    return mask;
+  }
+
+  public int codeOf(int state) {
+    return codes[state];
+  }
+
+  public char toMove(int state) {
+    return (char) toMove[state];
+  }
+
+  /** Get the result of a board as it stands.
+   *
+   * @param code int: Base 3 code of any board, reachable or not
+   * @return byte: CONTINUE, X_WINS, O_WINS or DRAW, X first if both have a line
+   */
+  public byte resultOf(int code) {
+    return resultOfCode[code];
+  }
+
+  /** Get the value of a state for the piece to move under perfect play.
+   *
+   * @param state int: State id
+   * @return int: Positive if it wins, 0 for a draw, negative if it loses, larger the sooner
+   */
+  public int score(int state) {
+    return scores[state];
+  }
+
+  /** Get the result of a state if both sides play perfectly from there.
+   *
+   * @param state int: State id
+   * @return byte: X_WINS, O_WINS or DRAW
+   */
+  public byte outcome(int state) {
+    int score = scores[state];
+    if (score == 0) {
+      return DRAW;
+    }
+    boolean xToMove = toMove[state] == 'X';
+    return score > 0 == xToMove ? X_WINS : O_WINS;
+  }
+
+  /** Get the best cell for the piece to move, the quickest win or the slowest loss.
+   *
+   * @param state int: State id
+   * @return int: x * 3 + y, -1 if the game is over
+   */
+  public int bestMove(int state) {
+    return bestMoves[state];
+  }
+
+  /** Get the digit of a piece in a board code.
+   *
+   * @param piece char: 'X', 'O' or '\u0000'
+   * @return int: 1, 2 or 0
+   */
+  public static int pieceDigit(char piece) {
+    if (piece == 'X') {
+      return 1;
+    }
+    return piece == 'O' ? 2 : 0;
+  }
+
+  public static int cellWeight(int cell) {
+    return POW3[cell];
+  }
+
+  private static int digit(int code, int cell) {
+    return code / POW3[cell] % 3;
+  }
+
+  private static char other(char piece) {
+    return piece == 'X' ? 'O' : 'X';
+  }
+
+  private static byte computeResult(int code) {
+    int xMask = 0;
+    int oMask = 0;
+    for (int cell = 0; cell < CELLS; cell++) {
+      int digit = digit(code, cell);
+      if (digit == 1) {
+        xMask |= 1 << cell;
+      } else if (digit == 2) {
+        oMask |= 1 << cell;
+      }
+    }
+    if (hasLine(xMask)) {
+      return X_WINS;
+    }
+    if (hasLine(oMask)) {
+      return O_WINS;
+    }
+    return (xMask | oMask) == (1 << CELLS) - 1 ? DRAW : CONTINUE;
+  }
+
+  private static boolean hasLine(int mask) {
+    for (int line : LINES) {
+      if ((mask & line) == line) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
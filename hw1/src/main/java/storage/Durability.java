@@ -0,0 +1,10 @@
+package storage;
+
+public enum Durability {
+  // Every write is committed before the request returns
+  SYNC,
+  // Writes are committed in batches, the request waits for the batch holding its write
+  GROUP_COMMIT,
+  // Writes are committed in batches in the background, the request does not wait
+  ASYNC
+}
@@ -0,0 +1,34 @@
+package storage;
+
+public class GameCheckpoint {
+
+  private final String gameId;
+
+  private final int moveId;
+
+  private final String board;
+
+  /** Construct the checkpoint of a game, the whole board as it stood after one move.
+   *
+   * @param gameId String: Game id
+   * @param moveId int: Last move included in the board
+   * @param board String: Serialized board, opaque to the store
+   */
+  public GameCheckpoint(String gameId, int moveId, String board) {
+    this.gameId = gameId;
+    this.moveId = moveId;
+    this.board = board;
+  }
+
+  public String getGameId() {
+    return gameId;
+  }
+
+  public int getMoveId() {
+    return moveId;
+  }
+
+  public String getBoard() {
+    return board;
+  }
+}
@@ -0,0 +1,59 @@
+package storage;
+
+public class GameRound {
+
+  private final String gameId;
+
+  private final int round;
+
+  private final long startedAt;
+
+  private final String player1Name;
+
+  private final String player2Name;
+
+  private final int moveCount;
+
+  /** Construct the summary of one round of a game.
+   *
+   * @param gameId String: Game id
+   * @param round int: Round of the game, 0 for the first one
+   * @param startedAt long: Epoch millis when player1 started the round
+   * @param player1Name String: Name of player1, or null
+   * @param player2Name String: Name of player2, or null
+   * @param moveCount int: Moves played in the round
+   */
+  public GameRound(String gameId, int round, long startedAt, String player1Name,
+                   String player2Name, int moveCount) {
+    this.gameId = gameId;
+    this.round = round;
+    this.startedAt = startedAt;
+    this.player1Name = player1Name;
+    this.player2Name = player2Name;
+    this.moveCount = moveCount;
+  }
+
+  public String getGameId() {
+    return gameId;
+  }
+
+  public int getRound() {
+    return round;
+  }
+
+  public long getStartedAt() {
+    return startedAt;
+  }
+
+  public String getPlayer1Name() {
+    return player1Name;
+  }
+
+  public String getPlayer2Name() {
+    return player2Name;
+  }
+
+  public int getMoveCount() {
+    return moveCount;
+  }
+}
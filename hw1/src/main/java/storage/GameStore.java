@@ -0,0 +1,115 @@
+package storage;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface GameStore extends AutoCloseable {
+
+  /** Start a new round of a game with its initial row. Earlier rounds stay in the history.
+   *
+   * @param initialRow MoveRecord: Row 0 of the game
+   * @param playerName String: Name of player1, or null if not given
+   */
+  void resetGame(MoveRecord initialRow, String playerName);
+
+  /** Mark the current round of a game as started once a person has joined as player2.
+   *
+   * @param gameId String: Game id
+   * @param playerName String: Name of player2, or null if not given
+   */
+  default void markGameStarted(String gameId, String playerName) {
+    markGameStarted(gameId, playerName, null);
+  }
+
+  /** Mark the current round of a game as started once player2 has joined.
+   *
+   * <p>The difficulty is kept with row 0, so a reloaded game knows the server still plays it.
+   *
+   * @param gameId String: Game id
+   * @param playerName String: Name of player2, or null if not given
+   * @param ai String: Difficulty of the server playing player2, null for a person
+   */
+  void markGameStarted(String gameId, String playerName, String ai);
+
+  /** Store one move of a game.
+   *
+   * @param move MoveRecord: The move row
+   */
+  void appendMove(MoveRecord move);
+
+  /** Store the board of a game after a move, replacing its previous checkpoint.
+   *
+   * @param checkpoint GameCheckpoint: The checkpoint
+   */
+  void saveCheckpoint(GameCheckpoint checkpoint);
+
+  /** Feed the latest checkpoint of every game, then the rows which come after the checkpoints.
+   *
+   * <p>The rows of a game without a checkpoint are all fed. Rows are ordered by game id then move
+   * id, so replaying them on top of the checkpoints rebuilds every game.
+   *
+   * @param checkpoints Consumer: Receives the checkpoints
+   * @param rows Consumer: Receives the rows after the checkpoints
+   */
+  void replay(Consumer<GameCheckpoint> checkpoints, Consumer<MoveRecord> rows);
+
+  /** Feed the latest checkpoint of one game, if any, then its rows after the checkpoint.
+   *
+   * @param gameId String: Game id
+   * @param checkpoint Consumer: Receives the checkpoint
+   * @param rows Consumer: Receives the rows after the checkpoint, ordered by move id
+   * @return Boolean: false if nothing is stored for this game
+   */
+  boolean loadGame(String gameId, Consumer<GameCheckpoint> checkpoint, Consumer<MoveRecord> rows);
+
+  /** Get the round of a game which is being played.
+   *
+   * @param gameId String: Game id
+   * @return int: Current round, -1 if nothing is stored for this game
+   */
+  int currentRound(String gameId);
+
+  /** Get every row of one round of a game.
+   *
+   * @param gameId String: Game id
+   * @param round int: Round of the game
+   * @return List: Rows ordered by move id, empty if the round is not stored
+   */
+  List<MoveRecord> listMoves(String gameId, int round);
+
+  /** Get the latest rounds a player took part in.
+   *
+   * @param playerName String: Name given by the player when starting or joining
+   * @param limit int: Most rounds returned
+   * @return List: Rounds, the most recently started first
+   */
+  List<GameRound> recentGames(String playerName, int limit);
+
+  /** Delete the finished rounds started before a time. The current round of a game is kept.
+   *
+   * @param startedBeforeMillis long: Epoch millis before which rounds are deleted
+   * @return int: Number of rounds deleted
+   */
+  default int pruneHistory(long startedBeforeMillis) {
+    return 0;
+  }
+
+  /** Apply several writes in order. Stores that can should commit them as one transaction.
+   *
+   * @param ops List: Writes to apply
+   */
+  default void applyBatch(List<WriteOp> ops) {
+    for (WriteOp op : ops) {
+      op.applyTo(this);
+    }
+  }
+
+  /** Block until every write accepted so far is stored.
+   *
+   */
+  default void flush() {
+  }
+
+  @Override
+  void close();
+}
@@ -0,0 +1,757 @@
+package storage;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** GAMEHISTORY stored as fixed-size binary records in memory-mapped, append-only segments.
+ *
+ * <p>Every write is one 64 byte record copied into the mapped segment, so it survives a crash of
+ * the process at once, and reaches the disk when the records written since the last force are
+ * forced: after every single write and once per batch. A full segment is forced and the next one
+ * is created. Each record carries a CRC32, and opening the log stops at the first record which is
+ * empty or does not match its CRC, which drops a write torn by a crash. Anything after that record
+ * is erased.
+ *
+ * <p>The first record slot of every segment is a header holding the segment size and the number
+ * of the first segment of the log. Positions are computed from the segment size, so a log is
+ * always opened with the size it was written with, whatever is configured.
+ *
+ * <p>An in-memory index keeps the positions of the live records of every game, so loading a game
+ * reads only its own records. Records of reset games stay in the segments until
+ * {@link #pruneHistory} compacts the log, and checkpoints are not stored since a game is rebuilt
+ * from its few records.
+ *
+ * <p>Only the current round of a game can be read back, and player names are not recorded, so
+ * {@link #recentGames} finds nothing.
+ */
+public class MappedLogGameStore implements GameStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MappedLogGameStore.class);
+
+  static final int RECORD_SIZE = 64;
+
+  // Longest game id in bytes, as accepted by GameRegistry
+  private static final int MAX_GAME_ID_LENGTH = 32;
+
+  // "TTTL", starts the header of every segment
+  private static final int MAGIC = 0x5454544c;
+
+  private static final Pattern SEGMENT_NAME = Pattern.compile("moves-(\\d{6})\\.log");
+
+  // Record kinds, 0 marks the unused end of a segment
+  private static final byte EMPTY = 0;
+  private static final byte RESET_GAME = 1;
+  private static final byte MARK_STARTED = 2;
+  private static final byte APPEND_MOVE = 3;
+
+  // Byte offsets in a record, the CRC covers everything after it
+  private static final int CRC = 0;
+  private static final int KIND = 4;
+  private static final int GAME_ID_LENGTH = 5;
+  private static final int GAME_ID = 6;
+  // The round on RESET_GAME records, which are always row 0
+  private static final int MOVE_ID = GAME_ID + MAX_GAME_ID_LENGTH;
+  private static final int MOVE_TYPE = MOVE_ID + 4;
+  private static final int FLAGS = MOVE_TYPE + 1;
+  private static final int PLAYER_ID = FLAGS + 1;
+  private static final int MOVE_X = PLAYER_ID + 4;
+  private static final int MOVE_Y = MOVE_X + 2;
+  private static final int WINNER = MOVE_Y + 2;
+  private static final int BOARD_SIZE = WINNER + 1;
+  private static final int WIN_LENGTH = BOARD_SIZE + 1;
+  // Difficulty of the server player, on MARK_STARTED records only
+  private static final int AI_LENGTH = WIN_LENGTH + 1;
+  private static final int AI = AI_LENGTH + 1;
+  private static final int MAX_AI_LENGTH = RECORD_SIZE - AI;
+
+  private static final int FLAG_STARTED = 1;
+  private static final int FLAG_DRAW = 2;
+
+  // Byte offsets in a segment header, after the same CRC as a record
+  private static final int HEADER_MAGIC = 4;
+  private static final int HEADER_SEGMENT_BYTES = 8;
+  private static final int HEADER_FIRST_SEGMENT = 12;
+
+  // MappedByteBuffer.force(int, int) from JDK 13 on, null before, when whole segments are forced
+  private static final MethodHandle FORCE_RANGE = findForceRange();
+
+  // Serializes every call, not a monitor so a blocked virtual thread releases its carrier
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Path directory;
+
+  private int segmentBytes;
+
+  // Number of the first segment, earlier ones were compacted
+  private int firstSegment;
+
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+  private final List<FileChannel> channels = new ArrayList<>();
+
+  // Positions of the live records of every game, in the order they were written
+  private final Map<String, Positions> index = new HashMap<>();
+
+  private final byte[] record = new byte[RECORD_SIZE];
+
+  private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+  private final CRC32 crc = new CRC32();
+
+  // Next free offset in the last segment
+  private int writeOffset;
+
+  // Offset in the last segment up to which it was forced
+  private int forcedOffset;
+
+  // Records and rounds of the log which are no longer read, what compacting would reclaim
+  private int deadRecords;
+
+  private int deadRounds;
+
+  /** Open the log in a directory, creating it if needed, and index the records found there.
+   *
+   * @param directory Path: Directory of the segment files
+   * @param segmentBytes int: Size of the segments of a new log, rounded down to whole records
+   */
+  public MappedLogGameStore(Path directory, int segmentBytes) {
+    this.directory = directory;
+    this.segmentBytes = Math.max(2 * RECORD_SIZE, segmentBytes - segmentBytes % RECORD_SIZE);
+    try {
+      Files.createDirectories(directory);
+      TreeMap<Integer, Path> files = new TreeMap<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "moves-*.log")) {
+        for (Path file : stream) {
+          Matcher m = SEGMENT_NAME.matcher(file.getFileName().toString());
+          if (m.matches()) {
+            files.put(Integer.parseInt(m.group(1)), file);
+          }
+        }
+      }
+      openSegments(files);
+    } catch (IOException e) {
+      throw new StorageException("Cannot open move log " + directory, e);
+    }
+  }
+
+  // Find the segments of the log from their headers, then map and index them
+  private void openSegments(TreeMap<Integer, Path> files) throws IOException {
+    Map<Integer, ByteBuffer> headers = new HashMap<>();
+    for (Map.Entry<Integer, Path> file : files.entrySet()) {
+      ByteBuffer header = readHeader(file.getValue());
+      if (header == null) {
+        // Created but never started, by a rotation or a compaction cut short by a crash
+        deleteSegments(files.tailMap(file.getKey(), true));
+        break;
+      }
+      headers.put(file.getKey(), header);
+      firstSegment = Math.max(firstSegment, header.getInt(HEADER_FIRST_SEGMENT));
+    }
+    // Left over by a compaction which finished but could not delete them
+    deleteSegments(files.headMap(firstSegment, false));
+    if (!files.isEmpty()) {
+      int stored = headers.get(files.firstKey()).getInt(HEADER_SEGMENT_BYTES);
+      if (stored != segmentBytes) {
+        LOG.warn("Move log {} keeps its {} byte segments rather than {}", directory, stored,
+            segmentBytes);
+        segmentBytes = stored;
+      }
+    }
+    for (int number : files.keySet()) {
+      if (number != firstSegment + segments.size()) {
+        throw new StorageException("Missing segment " + (firstSegment + segments.size())
+            + " in " + directory, null);
+      }
+      if (headers.get(number).getInt(HEADER_SEGMENT_BYTES) != segmentBytes) {
+        throw new StorageException("Segment " + number + " in " + directory
+            + " has another size than the log", null);
+      }
+      segments.add(mapSegment(number, channels));
+      if (!indexSegment(segments.get(segments.size() - 1), number)) {
+        // A torn or damaged record ends the log, whatever follows it cannot be trusted
+        truncate(files.tailMap(number, false).values());
+        break;
+      }
+    }
+    if (segments.isEmpty()) {
+      segments.add(mapSegment(firstSegment, channels));
+      writeHeader(segments.get(0), firstSegment);
+      writeOffset = RECORD_SIZE;
+    }
+    forcedOffset = writeOffset;
+  }
+
+  private Path segmentFile(int number) {
+    return directory.resolve(String.format("moves-%06d.log", number));
+  }
+
+  private MappedByteBuffer mapSegment(int number, List<FileChannel> openChannels)
+      throws IOException {
+    FileChannel channel = FileChannel.open(segmentFile(number), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    openChannels.add(channel);
+    return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+  }
+
+  private void deleteSegments(Map<Integer, Path> files) throws IOException {
+    for (Path file : files.values()) {
+      Files.delete(file);
+    }
+    if (!files.isEmpty()) {
+      LOG.warn("Deleted {} segments outside the move log {}", files.size(), directory);
+      files.clear();
+    }
+  }
+
+  /** Read the header of a segment file.
+   *
+   * @param file Path: Segment file
+   * @return ByteBuffer: The header, null if it was never written
+   * @throws IOException If the file cannot be read
+   */
+  private static ByteBuffer readHeader(Path file) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // Keep reading, a short file leaves the rest of the header empty
+      }
+    }
+    boolean empty = true;
+    for (byte b : header.array()) {
+      empty &= b == 0;
+    }
+    if (empty) {
+      return null;
+    }
+    CRC32 headerCrc = new CRC32();
+    headerCrc.update(header.array(), HEADER_MAGIC, RECORD_SIZE - HEADER_MAGIC);
+    if (header.getInt(HEADER_MAGIC) != MAGIC || header.getInt(CRC) != (int) headerCrc.getValue()) {
+      throw new StorageException("Not a move log segment: " + file, null);
+    }
+    return header;
+  }
+
+  // Write the header of a segment and force it, the segment is part of the log from then on
+  private void writeHeader(MappedByteBuffer segment, int first) {
+    ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+    header.putInt(HEADER_MAGIC, MAGIC);
+    header.putInt(HEADER_SEGMENT_BYTES, segmentBytes);
+    header.putInt(HEADER_FIRST_SEGMENT, first);
+    CRC32 headerCrc = new CRC32();
+    headerCrc.update(header.array(), HEADER_MAGIC, RECORD_SIZE - HEADER_MAGIC);
+    header.putInt(CRC, (int) headerCrc.getValue());
+    ByteBuffer target = segment.duplicate();
+    target.position(0);
+    target.put(header.array());
+    forceRange(segment, 0, RECORD_SIZE);
+  }
+
+  // Index the records of a segment, return false if it ends before the segment is full
+  private boolean indexSegment(MappedByteBuffer segment, int number) {
+    for (int offset = RECORD_SIZE; offset < segmentBytes; offset += RECORD_SIZE) {
+      if (!readRecord(segment, offset)) {
+        writeOffset = offset;
+        return false;
+      }
+      indexRecord(recordGameId(), (long) number * segmentBytes + offset);
+    }
+    writeOffset = segmentBytes;
+    return true;
+  }
+
+  /** Drop everything after the end of the log found by indexing.
+   *
+   * <p>Records past a damaged one are cleared and later segments deleted, otherwise they would
+   * be read back as part of the log after new writes fill the gap and the log is opened again.
+   *
+   * @param laterSegments Collection: Files of the segments after the last one indexed
+   * @throws IOException If a segment cannot be deleted
+   */
+  private void truncate(Collection<Path> laterSegments) throws IOException {
+    MappedByteBuffer segment = segments.get(segments.size() - 1);
+    boolean cleared = false;
+    for (int offset = writeOffset; offset < segmentBytes; offset++) {
+      if (segment.get(offset) != 0) {
+        segment.put(offset, (byte) 0);
+        cleared = true;
+      }
+    }
+    if (cleared) {
+      segment.force();
+    }
+    for (Path file : laterSegments) {
+      Files.delete(file);
+    }
+    if (cleared || !laterSegments.isEmpty()) {
+      LOG.warn("Move log truncated in segment {} at offset {}, {} later segments deleted",
+          firstSegment + segments.size() - 1, writeOffset, laterSegments.size());
+    }
+  }
+
+  @Override
+  public void resetGame(MoveRecord initialRow, String playerName) {
+    lock.lock();
+    try {
+      append(RESET_GAME, initialRow.getGameId(), initialRow);
+      force();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void markGameStarted(String gameId, String playerName, String ai) {
+    lock.lock();
+    try {
+      append(MARK_STARTED, gameId, startedRow(gameId, ai));
+      force();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void appendMove(MoveRecord move) {
+    lock.lock();
+    try {
+      append(APPEND_MOVE, move.getGameId(), move);
+      force();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Checkpoints are not kept, a game is rebuilt from its records.
+   *
+   * @param checkpoint GameCheckpoint: Ignored
+   */
+  @Override
+  public void saveCheckpoint(GameCheckpoint checkpoint) {
+  }
+
+  @Override
+  public void applyBatch(List<WriteOp> ops) {
+    lock.lock();
+    try {
+      for (WriteOp op : ops) {
+        switch (op.getKind()) {
+          case RESET_GAME:
+            append(RESET_GAME, op.getGameId(), op.getRecord());
+            break;
+          case MARK_STARTED:
+            append(MARK_STARTED, op.getGameId(), startedRow(op.getGameId(), op.getAi()));
+            break;
+          case APPEND_MOVE:
+            append(APPEND_MOVE, op.getGameId(), op.getRecord());
+            break;
+          default:
+            break;
+        }
+      }
+      // One force for the whole batch
+      force();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void replay(Consumer<GameCheckpoint> checkpoints,
+      Consumer<MoveRecord> rows) {
+    lock.lock();
+    try {
+      for (String gameId : new TreeMap<>(index).keySet()) {
+        loadGame(gameId, checkpoints, rows);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean loadGame(String gameId, Consumer<GameCheckpoint> checkpoint,
+      Consumer<MoveRecord> rows) {
+    lock.lock();
+    try {
+      Positions positions = index.get(gameId);
+      if (positions == null) {
+        return false;
+      }
+      // Row 0 is only complete once the MARK_STARTED record after it is seen
+      MoveRecord initialRow = null;
+      List<MoveRecord> moves = new ArrayList<>();
+      for (int i = 0; i < positions.size; i++) {
+        long position = positions.values[i];
+        readRecord(segmentAt(position), (int) (position % segmentBytes));
+        byte kind = record[KIND];
+        if (kind == RESET_GAME) {
+          initialRow = decodeRow(gameId);
+        } else if (kind == MARK_STARTED && initialRow != null) {
+          initialRow = new MoveRecord(gameId, 0, initialRow.getMoveType(),
+              initialRow.getPlayerId(), initialRow.getMoveX(), initialRow.getMoveY(), true,
+              initialRow.isDraw(), initialRow.getWinner(), initialRow.getBoardSize(),
+              initialRow.getWinLength(), decodeAi());
+        } else if (kind == APPEND_MOVE) {
+          moves.add(decodeRow(gameId));
+        }
+      }
+      if (initialRow != null) {
+        rows.accept(initialRow);
+      }
+      moves.forEach(rows);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int currentRound(String gameId) {
+    lock.lock();
+    try {
+      Positions positions = index.get(gameId);
+      return positions == null ? -1 : positions.round;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<MoveRecord> listMoves(String gameId, int round) {
+    lock.lock();
+    try {
+      List<MoveRecord> moves = new ArrayList<>();
+      if (round == currentRound(gameId)) {
+        loadGame(gameId, checkpoint -> { }, moves::add);
+      }
+      return moves;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<GameRound> recentGames(String playerName, int limit) {
+    return new ArrayList<>();
+  }
+
+  /** Compact the log once at least a segment and half of it are records no longer read.
+   *
+   * <p>Rounds are not timed here and only the current round of a game can be read back, so every
+   * earlier round goes, however recent. The live records are copied into new segments after the
+   * last one, which become the log when the header of the first of them is written. A crash before
+   * leaves the old segments as they were, one after has them deleted on the next open. Writes wait
+   * for the copy, which is as large as the live records.
+   *
+   * @param startedBeforeMillis long: Ignored
+   * @return int: Number of rounds deleted
+   */
+  @Override
+  public int pruneHistory(long startedBeforeMillis) {
+    lock.lock();
+    try {
+      int live = 0;
+      for (Positions positions : index.values()) {
+        live += positions.size;
+      }
+      if (deadRecords < Math.max(segmentBytes / RECORD_SIZE, live)) {
+        return 0;
+      }
+      return compact(live);
+    } catch (IOException e) {
+      throw new StorageException("Cannot compact move log " + directory, e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int compact(int live) throws IOException {
+    force();
+    int perSegment = segmentBytes / RECORD_SIZE - 1;
+    int first = firstSegment + segments.size();
+    int count = Math.max(1, (live + perSegment - 1) / perSegment);
+    List<MappedByteBuffer> copies = new ArrayList<>();
+    List<FileChannel> copyChannels = new ArrayList<>();
+    Map<String, Positions> copyIndex = new HashMap<>();
+    int number = first;
+    int offset = RECORD_SIZE;
+    try {
+      for (int i = 0; i < count; i++) {
+        copies.add(mapSegment(first + i, copyChannels));
+        if (i > 0) {
+          writeHeader(copies.get(i), first);
+        }
+      }
+      for (Map.Entry<String, Positions> game : index.entrySet()) {
+        Positions positions = game.getValue();
+        Positions copied = new Positions();
+        copied.round = positions.round;
+        for (int i = 0; i < positions.size; i++) {
+          if (offset == segmentBytes) {
+            number++;
+            offset = RECORD_SIZE;
+          }
+          readRecord(segmentAt(positions.values[i]), (int) (positions.values[i] % segmentBytes));
+          ByteBuffer target = copies.get(number - first).duplicate();
+          target.position(offset);
+          target.put(record);
+          copied.add((long) number * segmentBytes + offset);
+          offset += RECORD_SIZE;
+        }
+        copyIndex.put(game.getKey(), copied);
+      }
+      for (MappedByteBuffer copy : copies) {
+        copy.force();
+      }
+      // The copies take over from here
+      writeHeader(copies.get(0), first);
+    } catch (IOException | RuntimeException e) {
+      for (FileChannel channel : copyChannels) {
+        channel.close();
+      }
+      for (int i = 0; i < copyChannels.size(); i++) {
+        Files.deleteIfExists(segmentFile(first + i));
+      }
+      throw e;
+    }
+    for (FileChannel channel : channels) {
+      channel.close();
+    }
+    for (int i = 0; i < segments.size(); i++) {
+      Files.delete(segmentFile(firstSegment + i));
+    }
+    LOG.info("Compacted move log {} from {} to {} segments", directory, segments.size(), count);
+    segments.clear();
+    segments.addAll(copies);
+    channels.clear();
+    channels.addAll(copyChannels);
+    index.clear();
+    index.putAll(copyIndex);
+    firstSegment = first;
+    writeOffset = offset;
+    forcedOffset = offset;
+    int rounds = deadRounds;
+    deadRecords = 0;
+    deadRounds = 0;
+    return rounds;
+  }
+
+  @Override
+  public void flush() {
+    lock.lock();
+    try {
+      force();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      force();
+      try {
+        for (FileChannel channel : channels) {
+          channel.close();
+        }
+      } catch (IOException e) {
+        throw new StorageException("Cannot close move log " + directory, e);
+      }
+      segments.clear();
+      channels.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void append(byte kind, String gameId, MoveRecord row) {
+    byte[] id = gameId.getBytes(StandardCharsets.UTF_8);
+    if (id.length > MAX_GAME_ID_LENGTH) {
+      throw new StorageException("Game id too long for the move log: " + gameId, null);
+    }
+    Arrays.fill(record, (byte) 0);
+    record[KIND] = kind;
+    record[GAME_ID_LENGTH] = (byte) id.length;
+    System.arraycopy(id, 0, record, GAME_ID, id.length);
+    if (row != null) {
+      Positions previous = index.get(gameId);
+      recordBuffer.putInt(MOVE_ID, kind != RESET_GAME ? row.getMoveId()
+          : previous == null ? 0 : previous.round + 1);
+      record[MOVE_TYPE] = (byte) row.getMoveType();
+      record[FLAGS] = (byte) ((row.isGameStarted() ? FLAG_STARTED : 0)
+          | (row.isDraw() ? FLAG_DRAW : 0));
+      recordBuffer.putInt(PLAYER_ID, row.getPlayerId());
+      recordBuffer.putShort(MOVE_X, (short) row.getMoveX());
+      recordBuffer.putShort(MOVE_Y, (short) row.getMoveY());
+      record[WINNER] = (byte) row.getWinner();
+      record[BOARD_SIZE] = (byte) row.getBoardSize();
+      record[WIN_LENGTH] = (byte) row.getWinLength();
+      if (row.getAi() != null) {
+        byte[] ai = row.getAi().getBytes(StandardCharsets.UTF_8);
+        if (ai.length > MAX_AI_LENGTH) {
+          throw new StorageException("Difficulty too long for the move log: " + row.getAi(), null);
+        }
+        record[AI_LENGTH] = (byte) ai.length;
+        System.arraycopy(ai, 0, record, AI, ai.length);
+      }
+    }
+    crc.reset();
+    crc.update(record, KIND, RECORD_SIZE - KIND);
+    recordBuffer.putInt(CRC, (int) crc.getValue());
+
+    if (writeOffset == segmentBytes) {
+      rotate();
+    }
+    int number = segments.size() - 1;
+    ByteBuffer target = segments.get(number).duplicate();
+    target.position(writeOffset);
+    target.put(record);
+    indexRecord(gameId, (long) number * segmentBytes + writeOffset);
+    writeOffset += RECORD_SIZE;
+  }
+
+  // Force the full segment to disk and start the next one
+  private void rotate() {
+    force();
+    try {
+      MappedByteBuffer segment = mapSegment(firstSegment + segments.size(), channels);
+      writeHeader(segment, firstSegment);
+      segments.add(segment);
+    } catch (IOException e) {
+      throw new StorageException("Cannot create a move log segment in " + directory, e);
+    }
+    writeOffset = RECORD_SIZE;
+    forcedOffset = RECORD_SIZE;
+  }
+
+  // Write the records added to the last segment since its last force, timed like a commit
+  private void force() {
+    if (!segments.isEmpty() && writeOffset > forcedOffset) {
+      long start = System.nanoTime();
+      forceRange(segments.get(segments.size() - 1), forcedOffset, writeOffset);
+      forcedOffset = writeOffset;
+      Metrics.DB_COMMIT_SECONDS.observeNanos(System.nanoTime() - start);
+    }
+  }
+
+  private static void forceRange(MappedByteBuffer segment, int from, int to) {
+    if (FORCE_RANGE == null) {
+      segment.force();
+      return;
+    }
+    try {
+      FORCE_RANGE.invoke(segment, from, to - from);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new StorageException("Cannot force the move log", e);
+    }
+  }
+
+  private static MethodHandle findForceRange() {
+    try {
+      return MethodHandles.publicLookup().findVirtual(MappedByteBuffer.class, "force",
+          MethodType.methodType(MappedByteBuffer.class, int.class, int.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private MappedByteBuffer segmentAt(long position) {
+    return segments.get((int) (position / segmentBytes) - firstSegment);
+  }
+
+  private void indexRecord(String gameId, long position) {
+    if (record[KIND] == RESET_GAME) {
+      // Earlier records of the game no longer count
+      Positions previous = index.put(gameId, new Positions());
+      if (previous != null) {
+        deadRecords += previous.size;
+        deadRounds++;
+      }
+      index.get(gameId).round = recordBuffer.getInt(MOVE_ID);
+    }
+    Positions positions = index.get(gameId);
+    if (positions != null) {
+      positions.add(position);
+    } else {
+      deadRecords++;
+    }
+  }
+
+  // Copy a record into the scratch buffer, return false if it is empty or fails its CRC
+  private boolean readRecord(MappedByteBuffer segment, int offset) {
+    ByteBuffer source = segment.duplicate();
+    source.position(offset);
+    source.get(record);
+    if (record[KIND] == EMPTY) {
+      return false;
+    }
+    crc.reset();
+    crc.update(record, KIND, RECORD_SIZE - KIND);
+    return recordBuffer.getInt(CRC) == (int) crc.getValue();
+  }
+
+  private String recordGameId() {
+    return new String(record, GAME_ID, record[GAME_ID_LENGTH], StandardCharsets.UTF_8);
+  }
+
+  // A MARK_STARTED record only carries the difficulty, the other fields are not read back
+  private static MoveRecord startedRow(String gameId, String ai) {
+    return new MoveRecord(gameId, 0, 'N', 0, -1, -1, true, false, 0, 0, 0, ai);
+  }
+
+  private String decodeAi() {
+    return record[AI_LENGTH] == 0
+        ? null : new String(record, AI, record[AI_LENGTH], StandardCharsets.UTF_8);
+  }
+
+  private MoveRecord decodeRow(String gameId) {
+    int flags = record[FLAGS];
+    int moveId = record[KIND] == RESET_GAME ? 0 : recordBuffer.getInt(MOVE_ID);
+    return new MoveRecord(gameId, moveId, (char) record[MOVE_TYPE],
+        recordBuffer.getInt(PLAYER_ID), recordBuffer.getShort(MOVE_X),
+        recordBuffer.getShort(MOVE_Y), (flags & FLAG_STARTED) != 0, (flags & FLAG_DRAW) != 0,
+        record[WINNER], record[BOARD_SIZE], record[WIN_LENGTH]);
+  }
+
+  // Growable list of record positions, and the round they belong to
+  private static final class Positions {
+    private long[] values = new long[8];
+    private int size;
+    private int round;
+
+    private void add(long position) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = position;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package storage;
+
+public class MoveRecord {
+
+  private final String gameId;
+
+  private final int moveId;
+
+  private final char moveType;
+
+  private final int playerId;
+
+  private final int moveX;
+
+  private final int moveY;
+
+  private final boolean gameStarted;
+
+  private final boolean isDraw;
+
+  private final int winner;
+
+  private final int boardSize;
+
+  private final int winLength;
+
+  private final String ai;
+
+  /** Construct one GAMEHISTORY row. Row 0 of a game stores player1, the others store moves.
+   *
+   * @param gameId String: Game id
+   * @param moveId int: 0 for the initial row, then 1, 2, ... for every move
+   * @param moveType char: Piece type of the player ('N' for a game without player yet)
+   * @param playerId int: Player id
+   * @param moveX int: Row position, -1 for the initial row
+   * @param moveY int: Column position, -1 for the initial row
+   * @param gameStarted boolean: Whether the game is still running after this row
+   * @param isDraw boolean: Whether the game ended in a draw with this row
+   * @param winner int: Winner's id after this row, 0 if none
+   * @param boardSize int: Number of rows and columns of the board
+   * @param winLength int: Pieces in a row needed to win
+   */
+  public MoveRecord(String gameId, int moveId, char moveType, int playerId, int moveX, int moveY,
+                    boolean gameStarted, boolean isDraw, int winner, int boardSize,
+                    int winLength) {
+    this(gameId, moveId, moveType, playerId, moveX, moveY, gameStarted, isDraw, winner, boardSize,
+        winLength, null);
+  }
+
+  /** Construct one GAMEHISTORY row, with the difficulty of the server if it plays player2.
+   *
+   * @param gameId String: Game id
+   * @param moveId int: 0 for the initial row, then 1, 2, ... for every move
+   * @param moveType char: Piece type of the player ('N' for a game without player yet)
+   * @param playerId int: Player id
+   * @param moveX int: Row position, -1 for the initial row
+   * @param moveY int: Column position, -1 for the initial row
+   * @param gameStarted boolean: Whether the game is still running after this row
+   * @param isDraw boolean: Whether the game ended in a draw with this row
+   * @param winner int: Winner's id after this row, 0 if none
+   * @param boardSize int: Number of rows and columns of the board
+   * @param winLength int: Pieces in a row needed to win
+   * @param ai String: Difficulty of the server player, only on row 0, null if two people play
+   */
+  public MoveRecord(String gameId, int moveId, char moveType, int playerId, int moveX, int moveY,
+                    boolean gameStarted, boolean isDraw, int winner, int boardSize,
+                    int winLength, String ai) {
+    this.gameId = gameId;
+    this.moveId = moveId;
+    this.moveType = moveType;
+    this.playerId = playerId;
+    this.moveX = moveX;
+    this.moveY = moveY;
+    this.gameStarted = gameStarted;
+    this.isDraw = isDraw;
+    this.winner = winner;
+    this.boardSize = boardSize;
+    this.winLength = winLength;
+    this.ai = ai;
+  }
+
+  public String getGameId() {
+    return gameId;
+  }
+
+  public int getMoveId() {
+    return moveId;
+  }
+
+  public char getMoveType() {
+    return moveType;
+  }
+
+  public int getPlayerId() {
+    return playerId;
+  }
+
+  public int getMoveX() {
+    return moveX;
+  }
+
+  public int getMoveY() {
+    return moveY;
+  }
+
+  public boolean isGameStarted() {
+    return gameStarted;
+  }
+
+  public boolean isDraw() {
+    return isDraw;
+  }
+
+  public int getWinner() {
+    return winner;
+  }
+
+  public int getBoardSize() {
+    return boardSize;
+  }
+
+  public int getWinLength() {
+    return winLength;
+  }
+
+  public String getAi() {
+    return ai;
+  }
+}
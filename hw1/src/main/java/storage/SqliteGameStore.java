@@ -0,0 +1,589 @@
+package storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** GAMEHISTORY stored in SQLite.
+ *
+ * <p>SQLite only allows one writer at a time, so the store owns a single long-lived connection
+ * and serializes access to it. All statements are prepared once when the store is opened.
+ *
+ * <p>Every new game under an id starts a new round, and rounds are never deleted on the request
+ * path: starting a game is one insert. Only the highest round of a game is live, older ones are
+ * history which {@link #pruneHistory(long)} removes in the background. Row 0 of a round also
+ * keeps when it started and the names of its players, indexed for {@link #recentGames}.
+ *
+ * <p>GAMECHECKPOINT keeps the latest checkpoint of each game next to the move log, so a replay
+ * only reads the rows written after it. A checkpoint of an older round is ignored.
+ */
+public class SqliteGameStore implements GameStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SqliteGameStore.class);
+
+  // Game id given to the rows of a GAMEHISTORY table created before multi-game support
+  private static final String LEGACY_GAME_ID = "default";
+
+  // Rounds deleted per transaction by pruneHistory, so writers only wait for a short while
+  private static final int PRUNE_BATCH_SIZE = 256;
+
+  private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS GAMEHISTORY"
+      + "(gameId VARCHAR(32) NOT NULL,"
+      + " round INT NOT NULL DEFAULT 0,"
+      + " moveId INT NOT NULL,"
+      + " moveType VARCHAR(1) NOT NULL,"
+      + " playerId INT NOT NULL,"
+      + " moveX INT NOT NULL,"
+      + " moveY INT NOT NULL,"
+      + " gameStarted INT NOT NULL,"
+      + " isDraw INT NOT NULL,"
+      + " winner INT NOT NULL,"
+      + " boardSize INT NOT NULL DEFAULT 3,"
+      + " winLength INT NOT NULL DEFAULT 3,"
+      + " startedAt INTEGER NOT NULL DEFAULT 0,"
+      + " player1Name VARCHAR(32),"
+      + " player2Name VARCHAR(32),"
+      + " ai VARCHAR(8),"
+      + " PRIMARY KEY (gameId, round, moveId))";
+
+  // Only row 0 of a round carries the names, so the indexes skip the move rows
+  private static final String CREATE_PLAYER1_INDEX_SQL = "CREATE INDEX IF NOT EXISTS"
+      + " GAMEHISTORY_PLAYER1 ON GAMEHISTORY (player1Name, startedAt) WHERE moveId = 0";
+
+  private static final String CREATE_PLAYER2_INDEX_SQL = "CREATE INDEX IF NOT EXISTS"
+      + " GAMEHISTORY_PLAYER2 ON GAMEHISTORY (player2Name, startedAt) WHERE moveId = 0";
+
+  private static final String CURRENT_ROUND_SQL =
+      "(SELECT IFNULL(MAX(round), 0) FROM GAMEHISTORY WHERE gameId = ?)";
+
+  // The current round of every game
+  private static final String CURRENT_ROUNDS_SQL =
+      "(SELECT gameId, MAX(round) AS round FROM GAMEHISTORY GROUP BY gameId)";
+
+  private static final String CREATE_CHECKPOINT_TABLE_SQL = "CREATE TABLE IF NOT EXISTS"
+      + " GAMECHECKPOINT"
+      + "(gameId VARCHAR(32) NOT NULL PRIMARY KEY,"
+      + " round INT NOT NULL DEFAULT 0,"
+      + " moveId INT NOT NULL,"
+      + " board TEXT NOT NULL)";
+
+  // Serializes every call, not a monitor so a blocked virtual thread releases its carrier
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Connection connection;
+
+  private final PreparedStatement insertStmt;
+
+  private final PreparedStatement insertRoundStmt;
+
+  private final PreparedStatement startGameStmt;
+
+  private final PreparedStatement saveCheckpointStmt;
+
+  private final PreparedStatement selectCheckpointsStmt;
+
+  private final PreparedStatement selectTailStmt;
+
+  private final PreparedStatement selectCheckpointStmt;
+
+  private final PreparedStatement selectGameTailStmt;
+
+  private final PreparedStatement selectRoundStmt;
+
+  private final PreparedStatement selectMovesStmt;
+
+  private final PreparedStatement selectPlayerGamesStmt;
+
+  private final PreparedStatement selectPrunableStmt;
+
+  private final PreparedStatement deleteRoundStmt;
+
+  /** Open the database, create or migrate the GAMEHISTORY table and prepare all statements.
+   *
+   * @param url String: JDBC url of the database, e.g. jdbc:sqlite:tictactoe.db
+   */
+  public SqliteGameStore(String url) {
+    try {
+      Class.forName("org.sqlite.JDBC");
+      connection = DriverManager.getConnection(url);
+      try (Statement stmt = connection.createStatement()) {
+        // WAL lets a commit append to the log instead of rewriting the database pages
+        stmt.execute("PRAGMA journal_mode=WAL;");
+      }
+      connection.setAutoCommit(false);
+      try (Statement stmt = connection.createStatement()) {
+        stmt.executeUpdate(CREATE_TABLE_SQL);
+        migrateSingleGameHistory(stmt);
+        addBoardSizeColumns(stmt);
+        migrateToRounds(stmt);
+        if (!hasColumn(stmt, "ai")) {
+          stmt.executeUpdate("ALTER TABLE GAMEHISTORY ADD COLUMN ai VARCHAR(8);");
+        }
+        stmt.executeUpdate(CREATE_CHECKPOINT_TABLE_SQL);
+        if (!hasColumn(stmt, "GAMECHECKPOINT", "round")) {
+          stmt.executeUpdate("ALTER TABLE GAMECHECKPOINT ADD COLUMN round INT NOT NULL DEFAULT 0;");
+        }
+        stmt.executeUpdate(CREATE_PLAYER1_INDEX_SQL);
+        stmt.executeUpdate(CREATE_PLAYER2_INDEX_SQL);
+      }
+      connection.commit();
+
+      insertStmt = connection.prepareStatement("INSERT INTO GAMEHISTORY "
+          + "(gameId, round, moveId, moveType, playerId, moveX, moveY, gameStarted, isDraw,"
+          + " winner, boardSize, winLength) VALUES (?, " + CURRENT_ROUND_SQL
+          + ", ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);");
+      insertRoundStmt = connection.prepareStatement("INSERT INTO GAMEHISTORY "
+          + "(gameId, round, moveId, moveType, playerId, moveX, moveY, gameStarted, isDraw,"
+          + " winner, boardSize, winLength, startedAt, player1Name) VALUES (?,"
+          + " (SELECT IFNULL(MAX(round), -1) + 1 FROM GAMEHISTORY WHERE gameId = ?),"
+          + " ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);");
+      startGameStmt = connection.prepareStatement("UPDATE GAMEHISTORY SET gameStarted = 1,"
+          + " player2Name = ?, ai = ? WHERE gameId = ? AND round = " + CURRENT_ROUND_SQL
+          + " AND moveId = 0;");
+      saveCheckpointStmt = connection.prepareStatement("INSERT OR REPLACE INTO GAMECHECKPOINT"
+          + " (gameId, round, moveId, board) VALUES (?, " + CURRENT_ROUND_SQL + ", ?, ?);");
+      selectCheckpointsStmt = connection.prepareStatement("SELECT c.gameId, c.moveId, c.board"
+          + " FROM GAMECHECKPOINT c JOIN " + CURRENT_ROUNDS_SQL + " r"
+          + " ON r.gameId = c.gameId AND r.round = c.round ORDER BY c.gameId;");
+      // Only the current rounds, and in them the rows after the checkpoint, if any
+      selectTailStmt = connection.prepareStatement("SELECT h.* FROM GAMEHISTORY h"
+          + " JOIN " + CURRENT_ROUNDS_SQL + " r ON r.gameId = h.gameId AND r.round = h.round"
+          + " LEFT JOIN GAMECHECKPOINT c ON c.gameId = h.gameId AND c.round = h.round"
+          + " WHERE c.moveId IS NULL OR h.moveId > c.moveId"
+          + " ORDER BY h.gameId, h.moveId;");
+      selectCheckpointStmt = connection.prepareStatement("SELECT gameId, moveId, board"
+          + " FROM GAMECHECKPOINT WHERE gameId = ? AND round = " + CURRENT_ROUND_SQL + ";");
+      selectGameTailStmt = connection.prepareStatement("SELECT * FROM GAMEHISTORY"
+          + " WHERE gameId = ? AND round = " + CURRENT_ROUND_SQL + " AND moveId > ?"
+          + " ORDER BY moveId;");
+      selectRoundStmt = connection.prepareStatement(
+          "SELECT MAX(round) AS round FROM GAMEHISTORY WHERE gameId = ?;");
+      selectMovesStmt = connection.prepareStatement(
+          "SELECT * FROM GAMEHISTORY WHERE gameId = ? AND round = ? ORDER BY moveId;");
+      // Each branch of the OR is served by the index of its player column
+      selectPlayerGamesStmt = connection.prepareStatement("SELECT h.gameId, h.round,"
+          + " h.startedAt, h.player1Name, h.player2Name,"
+          + " (SELECT MAX(m.moveId) FROM GAMEHISTORY m"
+          + " WHERE m.gameId = h.gameId AND m.round = h.round) AS moveCount"
+          + " FROM GAMEHISTORY h WHERE h.moveId = 0 AND (h.player1Name = ? OR h.player2Name = ?)"
+          + " ORDER BY h.startedAt DESC LIMIT ?;");
+      selectPrunableStmt = connection.prepareStatement("SELECT h.gameId, h.round"
+          + " FROM GAMEHISTORY h WHERE h.moveId = 0 AND h.startedAt < ?"
+          + " AND h.round < (SELECT MAX(m.round) FROM GAMEHISTORY m WHERE m.gameId = h.gameId)"
+          + " LIMIT " + PRUNE_BATCH_SIZE + ";");
+      deleteRoundStmt = connection.prepareStatement(
+          "DELETE FROM GAMEHISTORY WHERE gameId = ? AND round = ?;");
+    } catch (ClassNotFoundException | SQLException e) {
+      throw new StorageException("Cannot open database " + url, e);
+    }
+  }
+
+  @Override
+  public void resetGame(MoveRecord initialRow, String playerName) {
+    lock.lock();
+    try {
+      try {
+        insertRound(initialRow, playerName);
+        commit();
+      } catch (SQLException e) {
+        throw rollback("Cannot reset game " + initialRow.getGameId(), e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void markGameStarted(String gameId, String playerName, String ai) {
+    lock.lock();
+    try {
+      try {
+        startGame(gameId, playerName, ai);
+        commit();
+      } catch (SQLException e) {
+        throw rollback("Cannot start game " + gameId, e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void appendMove(MoveRecord move) {
+    lock.lock();
+    try {
+      try {
+        insert(move);
+        commit();
+      } catch (SQLException e) {
+        throw rollback("Cannot store move " + move.getMoveId() + " of game " + move.getGameId(), e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void saveCheckpoint(GameCheckpoint checkpoint) {
+    lock.lock();
+    try {
+      try {
+        saveCheckpointRow(checkpoint);
+        commit();
+      } catch (SQLException e) {
+        throw rollback("Cannot store the checkpoint of game " + checkpoint.getGameId(), e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void applyBatch(List<WriteOp> ops) {
+    lock.lock();
+    try {
+      try {
+        for (WriteOp op : ops) {
+          switch (op.getKind()) {
+            case RESET_GAME:
+              insertRound(op.getRecord(), op.getPlayerName());
+              break;
+            case MARK_STARTED:
+              startGame(op.getGameId(), op.getPlayerName(), op.getAi());
+              break;
+            case SAVE_CHECKPOINT:
+              saveCheckpointRow(op.getCheckpoint());
+              break;
+            default:
+              insert(op.getRecord());
+              break;
+          }
+        }
+        commit();
+      } catch (SQLException e) {
+        throw rollback("Cannot store a batch of " + ops.size() + " writes", e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void replay(Consumer<GameCheckpoint> checkpoints,
+      Consumer<MoveRecord> rows) {
+    lock.lock();
+    try {
+      try (ResultSet res = selectCheckpointsStmt.executeQuery()) {
+        while (res.next()) {
+          checkpoints.accept(new GameCheckpoint(res.getString("gameId"), res.getInt("moveId"),
+              res.getString("board")));
+        }
+      } catch (SQLException e) {
+        throw new StorageException("Cannot read game checkpoints", e);
+      }
+      try (ResultSet res = selectTailStmt.executeQuery()) {
+        while (res.next()) {
+          rows.accept(readRow(res));
+        }
+      } catch (SQLException e) {
+        throw new StorageException("Cannot read game history", e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean loadGame(String gameId, Consumer<GameCheckpoint> checkpoint,
+      Consumer<MoveRecord> rows) {
+    lock.lock();
+    try {
+      try {
+        boolean found = false;
+        int lastMoveId = -1;
+        selectCheckpointStmt.setString(1, gameId);
+        selectCheckpointStmt.setString(2, gameId);
+        try (ResultSet res = selectCheckpointStmt.executeQuery()) {
+          if (res.next()) {
+            found = true;
+            lastMoveId = res.getInt("moveId");
+            checkpoint.accept(new GameCheckpoint(gameId, lastMoveId, res.getString("board")));
+          }
+        }
+        selectGameTailStmt.setString(1, gameId);
+        selectGameTailStmt.setString(2, gameId);
+        selectGameTailStmt.setInt(3, lastMoveId);
+        try (ResultSet res = selectGameTailStmt.executeQuery()) {
+          while (res.next()) {
+            found = true;
+            rows.accept(readRow(res));
+          }
+        }
+        return found;
+      } catch (SQLException e) {
+        throw new StorageException("Cannot read game " + gameId, e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int currentRound(String gameId) {
+    lock.lock();
+    try {
+      try {
+        selectRoundStmt.setString(1, gameId);
+        try (ResultSet res = selectRoundStmt.executeQuery()) {
+          // MAX is NULL when the game has no rows
+          res.next();
+          int round = res.getInt("round");
+          return res.wasNull() ? -1 : round;
+        }
+      } catch (SQLException e) {
+        throw new StorageException("Cannot read the round of game " + gameId, e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<MoveRecord> listMoves(String gameId, int round) {
+    lock.lock();
+    try {
+      List<MoveRecord> moves = new ArrayList<>();
+      try {
+        selectMovesStmt.setString(1, gameId);
+        selectMovesStmt.setInt(2, round);
+        try (ResultSet res = selectMovesStmt.executeQuery()) {
+          while (res.next()) {
+            moves.add(readRow(res));
+          }
+        }
+      } catch (SQLException e) {
+        throw new StorageException("Cannot read round " + round + " of game " + gameId, e);
+      }
+      return moves;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<GameRound> recentGames(String playerName, int limit) {
+    lock.lock();
+    try {
+      List<GameRound> games = new ArrayList<>();
+      try {
+        selectPlayerGamesStmt.setString(1, playerName);
+        selectPlayerGamesStmt.setString(2, playerName);
+        selectPlayerGamesStmt.setInt(3, limit);
+        try (ResultSet res = selectPlayerGamesStmt.executeQuery()) {
+          while (res.next()) {
+            games.add(new GameRound(res.getString("gameId"), res.getInt("round"),
+                res.getLong("startedAt"), res.getString("player1Name"),
+                res.getString("player2Name"), res.getInt("moveCount")));
+          }
+        }
+      } catch (SQLException e) {
+        throw new StorageException("Cannot read the games of player " + playerName, e);
+      }
+      return games;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Delete old rounds in small transactions, releasing the connection between them.
+   *
+   * @param startedBeforeMillis long: Epoch millis before which rounds are deleted
+   * @return int: Number of rounds deleted
+   */
+  @Override
+  public int pruneHistory(long startedBeforeMillis) {
+    int pruned = 0;
+    int batch;
+    do {
+      batch = pruneBatch(startedBeforeMillis);
+      pruned += batch;
+    } while (batch == PRUNE_BATCH_SIZE);
+    return pruned;
+  }
+
+  private int pruneBatch(long startedBeforeMillis) {
+    lock.lock();
+    try {
+      try {
+        List<GameRound> rounds = new ArrayList<>();
+        selectPrunableStmt.setLong(1, startedBeforeMillis);
+        try (ResultSet res = selectPrunableStmt.executeQuery()) {
+          while (res.next()) {
+            rounds.add(new GameRound(res.getString("gameId"), res.getInt("round"), 0, null, null,
+                0));
+          }
+        }
+        for (GameRound round : rounds) {
+          deleteRoundStmt.setString(1, round.getGameId());
+          deleteRoundStmt.setInt(2, round.getRound());
+          deleteRoundStmt.executeUpdate();
+        }
+        commit();
+        return rounds.size();
+      } catch (SQLException e) {
+        throw rollback("Cannot delete old game history", e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        throw new StorageException("Cannot close database", e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static MoveRecord readRow(ResultSet res) throws SQLException {
+    return new MoveRecord(res.getString("gameId"), res.getInt("moveId"),
+        res.getString("moveType").charAt(0), res.getInt("playerId"),
+        res.getInt("moveX"), res.getInt("moveY"), res.getInt("gameStarted") == 1,
+        res.getInt("isDraw") == 1, res.getInt("winner"), res.getInt("boardSize"),
+        res.getInt("winLength"), res.getString("ai"));
+  }
+
+  // Row 0 of a new round, numbered after the highest round stored for the game
+  private void insertRound(MoveRecord row, String playerName) throws SQLException {
+    insertRoundStmt.setString(2, row.getGameId());
+    setRow(insertRoundStmt, row);
+    insertRoundStmt.setLong(13, System.currentTimeMillis());
+    insertRoundStmt.setString(14, playerName);
+    insertRoundStmt.executeUpdate();
+  }
+
+  private void startGame(String gameId, String playerName, String ai) throws SQLException {
+    startGameStmt.setString(1, playerName);
+    startGameStmt.setString(2, ai);
+    startGameStmt.setString(3, gameId);
+    startGameStmt.setString(4, gameId);
+    startGameStmt.executeUpdate();
+  }
+
+  private void saveCheckpointRow(GameCheckpoint checkpoint) throws SQLException {
+    saveCheckpointStmt.setString(1, checkpoint.getGameId());
+    saveCheckpointStmt.setString(2, checkpoint.getGameId());
+    saveCheckpointStmt.setInt(3, checkpoint.getMoveId());
+    saveCheckpointStmt.setString(4, checkpoint.getBoard());
+    saveCheckpointStmt.executeUpdate();
+  }
+
+  // A move goes into the current round of its game
+  private void insert(MoveRecord row) throws SQLException {
+    insertStmt.setString(2, row.getGameId());
+    setRow(insertStmt, row);
+    insertStmt.executeUpdate();
+  }
+
+  // Set the row columns shared by both inserts, the round is parameter 2
+  private static void setRow(PreparedStatement stmt, MoveRecord row) throws SQLException {
+    stmt.setString(1, row.getGameId());
+    stmt.setInt(3, row.getMoveId());
+    stmt.setString(4, String.valueOf(row.getMoveType()));
+    stmt.setInt(5, row.getPlayerId());
+    stmt.setInt(6, row.getMoveX());
+    stmt.setInt(7, row.getMoveY());
+    stmt.setInt(8, row.isGameStarted() ? 1 : 0);
+    stmt.setInt(9, row.isDraw() ? 1 : 0);
+    stmt.setInt(10, row.getWinner());
+    stmt.setInt(11, row.getBoardSize());
+    stmt.setInt(12, row.getWinLength());
+  }
+
+  private StorageException rollback(String message, SQLException cause) {
+    try {
+      connection.rollback();
+    } catch (SQLException e) {
+      cause.addSuppressed(e);
+    }
+    return new StorageException(message, cause);
+  }
+
+  private static boolean hasColumn(Statement stmt, String column) throws SQLException {
+    return hasColumn(stmt, "GAMEHISTORY", column);
+  }
+
+  private static boolean hasColumn(Statement stmt, String table, String column)
+      throws SQLException {
+    try (ResultSet columns = stmt.executeQuery("PRAGMA table_info(" + table + ");")) {
+      while (columns.next()) {
+        if (column.equals(columns.getString("name"))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // Commit the current transaction, timed for the metrics
+  private void commit() throws SQLException {
+    long start = System.nanoTime();
+    connection.commit();
+    Metrics.DB_COMMIT_SECONDS.observeNanos(System.nanoTime() - start);
+  }
+
+  // Move the rows of a GAMEHISTORY table created before multi-game support into the default game
+  private static void migrateSingleGameHistory(Statement stmt) throws SQLException {
+    if (hasColumn(stmt, "gameId")) {
+      return;
+    }
+    stmt.executeUpdate("ALTER TABLE GAMEHISTORY RENAME TO GAMEHISTORY_SINGLE;");
+    stmt.executeUpdate(CREATE_TABLE_SQL);
+    stmt.executeUpdate("INSERT INTO GAMEHISTORY (gameId, moveId, moveType, playerId, moveX, moveY,"
+        + " gameStarted, isDraw, winner) SELECT '" + LEGACY_GAME_ID + "', moveId, moveType,"
+        + " playerId, moveX, moveY, gameStarted, isDraw, winner FROM GAMEHISTORY_SINGLE;");
+    stmt.executeUpdate("DROP TABLE GAMEHISTORY_SINGLE;");
+    LOG.info("Migrated single-game history into game {}", LEGACY_GAME_ID);
+  }
+
+  // Games stored before boards could be resized are all 3 x 3, three in a row
+  private static void addBoardSizeColumns(Statement stmt) throws SQLException {
+    if (hasColumn(stmt, "boardSize")) {
+      return;
+    }
+    stmt.executeUpdate("ALTER TABLE GAMEHISTORY ADD COLUMN boardSize INT NOT NULL DEFAULT 3;");
+    stmt.executeUpdate("ALTER TABLE GAMEHISTORY ADD COLUMN winLength INT NOT NULL DEFAULT 3;");
+  }
+
+  // Rebuild a GAMEHISTORY table keyed by (gameId, moveId), its games become round 0
+  private static void migrateToRounds(Statement stmt) throws SQLException {
+    if (hasColumn(stmt, "round")) {
+      return;
+    }
+    stmt.executeUpdate("ALTER TABLE GAMEHISTORY RENAME TO GAMEHISTORY_UNROUNDED;");
+    stmt.executeUpdate(CREATE_TABLE_SQL);
+    stmt.executeUpdate("INSERT INTO GAMEHISTORY (gameId, moveId, moveType, playerId, moveX, moveY,"
+        + " gameStarted, isDraw, winner, boardSize, winLength) SELECT gameId, moveId, moveType,"
+        + " playerId, moveX, moveY, gameStarted, isDraw, winner, boardSize, winLength"
+        + " FROM GAMEHISTORY_UNROUNDED;");
+    stmt.executeUpdate("DROP TABLE GAMEHISTORY_UNROUNDED;");
+    LOG.info("Migrated game history to rounds");
+  }
+}
@@ -0,0 +1,10 @@
+package storage;
+
+public class StorageException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public StorageException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,352 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Write-behind journal in front of another store.
+ *
+ * <p>Writes are appended to an in-memory queue and a single background writer applies them to the
+ * delegate in batches, one commit per batch. A batch is written once it holds maxBatchSize writes
+ * or flushIntervalMillis after its first write, whichever comes first. Writes keep their order.
+ * Reads first wait for the queue to drain so they always see earlier writes.
+ *
+ * <p>A batch which cannot be stored is retried one write at a time. A game whose write still fails
+ * is reported to the failure listener, which drops the game from memory, and its later writes are
+ * refused until the game is loaded again or reset, so the store keeps a prefix of its moves.
+ */
+public class WriteBehindGameStore implements GameStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WriteBehindGameStore.class);
+
+  private static final long IDLE_POLL_MILLIS = 100;
+
+  private final GameStore delegate;
+
+  private final Durability durability;
+
+  private final long flushIntervalNanos;
+
+  private final int maxBatchSize;
+
+  private final BlockingQueue<PendingWrite> queue;
+
+  private final Thread writer;
+
+  private volatile boolean running = true;
+
+  // Held to queue a write, and exclusively to stop accepting them, so no write comes in too late
+  private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+  // Games which lost a write, whose later writes would leave a gap in their history
+  private final Set<String> failedGames = ConcurrentHashMap.newKeySet();
+
+  private volatile Consumer<String> failureListener = gameId -> { };
+
+  /** Construct the journal and start its writer thread.
+   *
+   * @param delegate GameStore: Store receiving the batches
+   * @param durability Durability: When a write call returns, see {@link Durability}
+   * @param flushIntervalMillis long: Longest time a write waits for its batch to fill up
+   * @param maxBatchSize int: Most writes committed together
+   * @param queueCapacity int: Most queued writes, writers block once it is reached
+   */
+  public WriteBehindGameStore(GameStore delegate, Durability durability, long flushIntervalMillis,
+                              int maxBatchSize, int queueCapacity) {
+    this.delegate = delegate;
+    this.durability = durability;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    this.maxBatchSize = maxBatchSize;
+    this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    this.writer = new Thread(this::runWriter, "game-store-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /** Set what happens to a game once one of its writes is lost.
+   *
+   * <p>Called on the writer thread, so it must not wait for anything that waits for a write.
+   *
+   * @param failureListener Consumer: Receives the id of the game
+   */
+  public void setFailureListener(Consumer<String> failureListener) {
+    this.failureListener = failureListener;
+  }
+
+  @Override
+  public void resetGame(MoveRecord initialRow, String playerName) {
+    write(WriteOp.resetGame(initialRow, playerName));
+  }
+
+  @Override
+  public void markGameStarted(String gameId, String playerName, String ai) {
+    write(WriteOp.markGameStarted(gameId, playerName, ai));
+  }
+
+  @Override
+  public void appendMove(MoveRecord move) {
+    write(WriteOp.appendMove(move));
+  }
+
+  @Override
+  public void saveCheckpoint(GameCheckpoint checkpoint) {
+    write(WriteOp.saveCheckpoint(checkpoint));
+  }
+
+  @Override
+  public void replay(Consumer<GameCheckpoint> checkpoints, Consumer<MoveRecord> rows) {
+    flush();
+    delegate.replay(checkpoints, rows);
+  }
+
+  @Override
+  public boolean loadGame(String gameId, Consumer<GameCheckpoint> checkpoint,
+      Consumer<MoveRecord> rows) {
+    flush();
+    // The game is rebuilt from what is stored, so its next writes follow on from there
+    failedGames.remove(gameId);
+    return delegate.loadGame(gameId, checkpoint, rows);
+  }
+
+  @Override
+  public int currentRound(String gameId) {
+    flush();
+    return delegate.currentRound(gameId);
+  }
+
+  @Override
+  public List<MoveRecord> listMoves(String gameId, int round) {
+    flush();
+    return delegate.listMoves(gameId, round);
+  }
+
+  @Override
+  public List<GameRound> recentGames(String playerName, int limit) {
+    flush();
+    return delegate.recentGames(playerName, limit);
+  }
+
+  @Override
+  public int pruneHistory(long startedBeforeMillis) {
+    return delegate.pruneHistory(startedBeforeMillis);
+  }
+
+  @Override
+  public void flush() {
+    if (running) {
+      await(enqueue(new PendingWrite(null, new CompletableFuture<>())));
+    }
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /** Write out every queued write, stop the writer and close the delegate.
+   *
+   */
+  @Override
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      running = false;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // Left behind if the writer was interrupted
+    List<PendingWrite> rest = new ArrayList<>();
+    queue.drainTo(rest);
+    if (!rest.isEmpty()) {
+      writeBatch(rest, new ArrayList<>());
+    }
+    delegate.close();
+  }
+
+  private void write(WriteOp op) {
+    switch (durability) {
+      case SYNC:
+        op.applyTo(delegate);
+        break;
+      case GROUP_COMMIT:
+        await(enqueue(new PendingWrite(op, new CompletableFuture<>())));
+        break;
+      default:
+        enqueue(new PendingWrite(op, null));
+        break;
+    }
+  }
+
+  private CompletableFuture<Void> enqueue(PendingWrite pending) {
+    closeLock.readLock().lock();
+    try {
+      if (!running) {
+        throw new StorageException("Game store is closed", null);
+      }
+      queue.put(pending);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while queueing a write", e);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    return pending.done;
+  }
+
+  private static void await(CompletableFuture<Void> done) {
+    try {
+      done.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while waiting for a write", e);
+    } catch (ExecutionException e) {
+      throw new StorageException("Write failed", e.getCause());
+    }
+  }
+
+  private void runWriter() {
+    List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+    List<WriteOp> ops = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        // A flush barrier in the batch means someone is waiting, so write without delay
+        boolean flushNow = first.op == null;
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (!flushNow && batch.size() < maxBatchSize) {
+          int drainedFrom = batch.size();
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          for (int i = drainedFrom; i < batch.size(); i++) {
+            flushNow |= batch.get(i).op == null;
+          }
+          long remaining = deadline - System.nanoTime();
+          if (flushNow || batch.size() >= maxBatchSize || remaining <= 0 || !running) {
+            break;
+          }
+          PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          flushNow = next.op == null;
+        }
+      } catch (InterruptedException e) {
+        running = false;
+      }
+      writeBatch(batch, ops);
+      batch.clear();
+      ops.clear();
+    }
+  }
+
+  private void writeBatch(List<PendingWrite> batch, List<WriteOp> ops) {
+    List<PendingWrite> writes = new ArrayList<>(batch.size());
+    for (PendingWrite pending : batch) {
+      if (pending.op == null) {
+        continue;
+      }
+      if (isRefused(pending.op)) {
+        fail(pending, new StorageException("An earlier write of game " + pending.op.getGameId()
+            + " was lost", null));
+      } else {
+        writes.add(pending);
+        ops.add(pending.op);
+      }
+    }
+    boolean stored = true;
+    if (!ops.isEmpty()) {
+      try {
+        delegate.applyBatch(ops);
+      } catch (RuntimeException e) {
+        stored = false;
+        LOG.warn("Cannot write a batch of {} write(s), retrying them one by one", ops.size(), e);
+      }
+    }
+    for (PendingWrite pending : writes) {
+      if (stored) {
+        complete(pending);
+      } else {
+        writeAlone(pending);
+      }
+    }
+    // Barriers last, once every write before them is settled
+    for (PendingWrite pending : batch) {
+      if (pending.op == null) {
+        pending.done.complete(null);
+      }
+    }
+  }
+
+  // Retry a write of a failed batch on its own
+  private void writeAlone(PendingWrite pending) {
+    if (isRefused(pending.op)) {
+      fail(pending, new StorageException("An earlier write of game " + pending.op.getGameId()
+          + " was lost", null));
+      return;
+    }
+    try {
+      pending.op.applyTo(delegate);
+      complete(pending);
+    } catch (RuntimeException e) {
+      LOG.error("Lost a write of game {}", pending.op.getGameId(), e);
+      failedGames.add(pending.op.getGameId());
+      fail(pending, e);
+      try {
+        failureListener.accept(pending.op.getGameId());
+      } catch (RuntimeException listenerFailure) {
+        LOG.error("Failure listener of game {} failed", pending.op.getGameId(), listenerFailure);
+      }
+    }
+  }
+
+  // A new round does not build on the lost write, everything else of a failed game would
+  private boolean isRefused(WriteOp op) {
+    return op.getKind() != WriteOp.Kind.RESET_GAME && failedGames.contains(op.getGameId());
+  }
+
+  private void complete(PendingWrite pending) {
+    if (pending.op.getKind() == WriteOp.Kind.RESET_GAME) {
+      failedGames.remove(pending.op.getGameId());
+    }
+    if (pending.done != null) {
+      pending.done.complete(null);
+    }
+  }
+
+  private static void fail(PendingWrite pending, RuntimeException failure) {
+    if (pending.done != null) {
+      pending.done.completeExceptionally(failure);
+    }
+  }
+
+  // A queued write, op is null for a flush barrier and done is null for an async write
+  private static class PendingWrite {
+
+    private final WriteOp op;
+
+    private final CompletableFuture<Void> done;
+
+    PendingWrite(WriteOp op, CompletableFuture<Void> done) {
+      this.op = op;
+      this.done = done;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package storage;
+
+public class WriteOp {
+
+  public enum Kind {
+    RESET_GAME,
+    MARK_STARTED,
+    APPEND_MOVE,
+    SAVE_CHECKPOINT
+  }
+
+  private final Kind kind;
+
+  private final String gameId;
+
+  private final MoveRecord record;
+
+  private final GameCheckpoint checkpoint;
+
+  private final String playerName;
+
+  private final String ai;
+
+  private WriteOp(Kind kind, String gameId, MoveRecord record, GameCheckpoint checkpoint,
+                  String playerName, String ai) {
+    this.kind = kind;
+    this.gameId = gameId;
+    this.record = record;
+    this.checkpoint = checkpoint;
+    this.playerName = playerName;
+    this.ai = ai;
+  }
+
+  public static WriteOp resetGame(MoveRecord initialRow, String playerName) {
+    return new WriteOp(Kind.RESET_GAME, initialRow.getGameId(), initialRow, null, playerName,
+        null);
+  }
+
+  public static WriteOp markGameStarted(String gameId, String playerName, String ai) {
+    return new WriteOp(Kind.MARK_STARTED, gameId, null, null, playerName, ai);
+  }
+
+  public static WriteOp appendMove(MoveRecord move) {
+    return new WriteOp(Kind.APPEND_MOVE, move.getGameId(), move, null, null, null);
+  }
+
+  public static WriteOp saveCheckpoint(GameCheckpoint checkpoint) {
+    return new WriteOp(Kind.SAVE_CHECKPOINT, checkpoint.getGameId(), null, checkpoint, null,
+        null);
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public String getGameId() {
+    return gameId;
+  }
+
+  public MoveRecord getRecord() {
+    return record;
+  }
+
+  public GameCheckpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  public String getPlayerName() {
+    return playerName;
+  }
+
+  public String getAi() {
+    return ai;
+  }
+
+  /** Run this write against a store.
+   *
+   * @param store GameStore: The store to write to
+   */
+  public void applyTo(GameStore store) {
+    switch (kind) {
+      case RESET_GAME:
+        store.resetGame(record, playerName);
+        break;
+      case MARK_STARTED:
+        store.markGameStarted(gameId, playerName, ai);
+        break;
+      case SAVE_CHECKPOINT:
+        store.saveCheckpoint(checkpoint);
+        break;
+      default:
+        store.appendMove(record);
+        break;
+    }
+  }
+}
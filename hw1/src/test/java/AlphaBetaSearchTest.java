@@ -0,0 +1,155 @@
+import ai.AlphaBetaSearch;
+import ai.Difficulty;
+import ai.Position;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import models.GameBoard;
+import models.GameState;
+import models.Player;
+import models.TicTacToeTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AlphaBetaSearchTest {
+
+  private final AlphaBetaSearch search = new AlphaBetaSearch(1 << 16, 50);
+
+  @Test
+  public void winAndBlockTest() {
+    // X on (0, 0) and (0, 1), O on (1, 1): X to move wins at (0, 2), O to move blocks there
+    GameBoard board = new GameBoard(new Player('X', 1), new Player('O', 2));
+    board.setGameStarted(true);
+    board.setBoardState(0, 0, 'X');
+    board.setBoardState(0, 1, 'X');
+    board.setBoardState(1, 1, 'O');
+    assertEquals(2, search.chooseMove(Position.of(board), Difficulty.HARD));
+    board.setTurn(2);
+    assertEquals(2, search.chooseMove(Position.of(board), Difficulty.HARD));
+
+    // Four in a row on a Gomoku board
+    GameBoard gomoku = new GameBoard(15, 5);
+    gomoku.setP1(new Player('X', 1));
+    gomoku.setP2(new Player('O', 2));
+    for (int y = 5; y < 9; y++) {
+      gomoku.setBoardState(7, y, 'X');
+      gomoku.setBoardState(8, y, 'O');
+    }
+    int cell = search.chooseMove(Position.of(gomoku), Difficulty.HARD);
+    assertTrue(cell == 7 * 15 + 4 || cell == 7 * 15 + 9);
+  }
+
+  @Test
+  public void hardNeverLosesTest() {
+    Random random = new Random(7);
+    for (int game = 0; game < 200; game++) {
+      // The server is player 2 and moves second with X or O
+      char p1Type = game % 2 == 0 ? 'X' : 'O';
+      GameBoard board = new GameBoard(new Player(p1Type, 1),
+          new Player(p1Type == 'X' ? 'O' : 'X', 2));
+      board.setGameStarted(true);
+      GameState result = GameState.CONTINUE;
+      while (result == GameState.CONTINUE) {
+        int x;
+        int y;
+        if (board.getTurn() == 1) {
+          do {
+            x = random.nextInt(3);
+            y = random.nextInt(3);
+          } while (board.isOccupied(x, y));
+        } else {
+          int cell = search.chooseMove(Position.of(board), Difficulty.HARD);
+          x = cell / 3;
+          y = cell % 3;
+          assertFalse(board.isOccupied(x, y));
+        }
+        Player mover = board.getTurn() == 1 ? board.getP1() : board.getP2();
+        board.setBoardState(x, y, mover.getType());
+        board.setTurn(board.getTurn() == 1 ? 2 : 1);
+        result = board.checkGameResult(x, y);
+      }
+      assertNotEquals(GameState.PLAYER1WIN, result);
+    }
+  }
+
+  @Test
+  public void classicBoardFromTableTest() {
+    // No time to search, perfect play on the classic board comes from the solved table
+    AlphaBetaSearch noTime = new AlphaBetaSearch(16, 0);
+    TicTacToeTable table = TicTacToeTable.get();
+    Random random = new Random(11);
+    for (int game = 0; game < 50; game++) {
+      GameBoard board = new GameBoard(new Player('X', 1), new Player('O', 2));
+      board.setGameStarted(true);
+      GameState result = GameState.CONTINUE;
+      while (result == GameState.CONTINUE) {
+        int state = board.getTableState();
+        assertEquals(table.bestMove(state), noTime.chooseMove(Position.of(board), Difficulty.HARD));
+        int cell;
+        do {
+          cell = random.nextInt(9);
+        } while (table.next(state, cell) < 0);
+        Player mover = board.getTurn() == 1 ? board.getP1() : board.getP2();
+        board.setBoardState(cell / 3, cell % 3, mover.getType());
+        board.setTurn(board.getTurn() == 1 ? 2 : 1);
+        result = board.checkGameResult(cell / 3, cell % 3);
+      }
+    }
+  }
+
+  @Test
+  public void warmTableKeepsDifficultyTest() {
+    GameBoard board = new GameBoard(6, 4);
+    board.setP1(new Player('X', 1));
+    board.setP2(new Player('O', 2));
+    board.setBoardState(4, 5, 'X');
+    board.setBoardState(0, 5, 'O');
+    // A hard move first leaves its deep result at the root of the shared table
+    int hard = search.chooseMove(Position.of(board), Difficulty.HARD);
+    Map<Integer, Integer> easy = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      easy.merge(search.chooseMove(Position.of(board), Difficulty.EASY), 1, Integer::sum);
+    }
+    // Easy still plays its own one ply move whenever it does not play at random
+    int easyMove = Collections.max(easy.entrySet(), Map.Entry.comparingByValue()).getKey();
+    assertNotEquals(hard, easyMove);
+    assertTrue(easy.get(easyMove) >= 40, "Easy moves " + easy);
+  }
+
+  @Test
+  public void timeoutRestoresPositionTest() {
+    // No time at all, the search gives up deep inside the tree on the first clock check
+    AlphaBetaSearch noTime = new AlphaBetaSearch(16, 0);
+    GameBoard board = new GameBoard(15, 5);
+    board.setP1(new Player('X', 1));
+    board.setP2(new Player('O', 2));
+    board.setBoardState(7, 7, 'X');
+    board.setBoardState(7, 8, 'O');
+    board.setBoardState(8, 8, 'X');
+    Position position = Position.of(board);
+    String before = position.toString();
+    int cell = noTime.chooseMove(position, Difficulty.HARD);
+    assertEquals(before, position.toString());
+    assertFalse(board.isOccupied(cell / 15, cell % 15));
+  }
+
+  @Test
+  public void largeBoardTimeTest() {
+    GameBoard board = new GameBoard(15, 5);
+    board.setP1(new Player('X', 1));
+    board.setP2(new Player('O', 2));
+    board.setBoardState(7, 7, 'X');
+    board.setBoardState(7, 8, 'O');
+    board.setBoardState(8, 8, 'X');
+    long start = System.nanoTime();
+    int cell = search.chooseMove(Position.of(board), Difficulty.HARD);
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    assertTrue(millis < 1000, "Search took " + millis + " ms");
+    assertFalse(board.isOccupied(cell / 15, cell % 15));
+  }
+}
@@ -0,0 +1,61 @@
+import controllers.PlayGame;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+import kong.unirest.UnirestInstance;
+import kong.unirest.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AsyncThreadModelTest {
+
+  /**
+   * Runs only once before the testing starts.
+   */
+  @BeforeAll
+  public static void init() {
+    // Start Server with the handlers off the Jetty threads
+    System.setProperty("tictactoe.threadModel", "ASYNC");
+    PlayGame.main(null);
+    // Drop the connections kept alive to the server of the previous test class
+    Unirest.config().reset();
+  }
+
+  @Test
+  public void gameFlowTest() {
+    HttpResponse<String> response = Unirest.post("http://localhost:8080/game/async/startgame")
+        .body("type=X").asString();
+    assertEquals("X", new JSONObject(response.getBody()).getJSONObject("p1").get("type"));
+
+    // Redirects set by a handler running on another thread reach the client
+    UnirestInstance noRedirects = Unirest.spawnInstance();
+    noRedirects.config().followRedirects(false);
+    response = noRedirects.get("http://localhost:8080/game/async/joingame").asString();
+    noRedirects.shutDown();
+    assertEquals(302, response.getStatus());
+    assertEquals("/tictactoe.html?p=2&g=async", response.getHeaders().getFirst("Location"));
+
+    response = Unirest.post("http://localhost:8080/game/async/move/1").body("x=0&y=0").asString();
+    assertEquals(true, new JSONObject(response.getBody()).get("moveValidity"));
+    response = Unirest.post("http://localhost:8080/game/async/move/1").body("x=1&y=1").asString();
+    assertEquals(false, new JSONObject(response.getBody()).get("moveValidity"));
+
+    response = Unirest.get("http://localhost:8080/game/async/gameboard").asString();
+    assertEquals(1, new JSONObject(response.getBody()).get("moveCount"));
+    // Exceptions thrown by the handler are still mapped to their status
+    response = Unirest.get("http://localhost:8080/game/missing/gameboard").asString();
+    assertEquals(404, response.getStatus());
+  }
+
+  /**
+   * This method runs only once after all the test cases have been executed.
+   */
+  @AfterAll
+  public static void close() {
+    // Stop Server
+    PlayGame.stop();
+    System.clearProperty("tictactoe.threadModel");
+  }
+}
@@ -0,0 +1,88 @@
+import models.BoardCodec;
+import models.BoardDelta;
+import models.BoardSnapshot;
+import models.GameBoard;
+import models.Message;
+import models.Player;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BoardCodecTest {
+
+  @Test
+  public void boardRoundTripTest() {
+    GameBoard board = new GameBoard(15, 5);
+    board.setP1(new Player('O', 1));
+    board.setP2(new Player('X', 2));
+    board.setGameStarted(true);
+    board.setBoardState(0, 0, 'O');
+    board.setBoardState(7, 8, 'X');
+    board.setBoardState(14, 14, 'O');
+    board.setMoveCount(3);
+    board.setTurn(2);
+
+    byte[] frame = BoardCodec.encodeBoard(board);
+    // 225 cells at four per byte after the 10 byte header
+    assertEquals(10 + 57, frame.length);
+    GameBoard decoded = BoardCodec.decodeBoard(frame);
+    assertEquals(board.getSnapshot().getJson(), decoded.getSnapshot().getJson());
+  }
+
+  @Test
+  public void classicBoardTest() {
+    GameBoard board = new GameBoard(new Player('X', 1));
+    board.setBoardState(1, 1, 'X');
+    byte[] frame = BoardCodec.encodeBoard(board);
+    assertEquals(13, frame.length);
+    assertEquals(BoardCodec.BOARD, frame[0]);
+    assertEquals('X', frame[2]);
+    assertEquals(0, frame[3]);
+    // Cell 4 is the low bits of the second cell byte
+    assertEquals(1, frame[11]);
+    GameBoard decoded = BoardCodec.decodeBoard(frame);
+    assertNull(decoded.getP2());
+    assertEquals('X', decoded.getCell(1, 1));
+  }
+
+  @Test
+  public void snapshotBinaryTest() {
+    GameBoard board = new GameBoard(9, 5);
+    board.setP1(new Player('X', 1));
+    board.setBoardState(4, 4, 'X');
+    board.setMoveCount(1);
+    BoardSnapshot snapshot = board.getSnapshot();
+    byte[] frame = BoardCodec.encodeBoard(board);
+
+    // Changes after the snapshot is taken do not reach its lazily built binary
+    board.setP2(new Player('O', 2));
+    board.setBoardState(0, 8, 'O');
+    board.setMoveCount(2);
+    assertArrayEquals(frame, snapshot.getBinary());
+    assertSame(snapshot.getBinary(), snapshot.getBinary());
+  }
+
+  @Test
+  public void deltaMessageAndMoveTest() {
+    GameBoard board = new GameBoard(new Player('X', 1), new Player('O', 2));
+    board.setGameStarted(true);
+    board.setBoardState(2, 1, 'X');
+    board.setMoveCount(1);
+    board.setTurn(2);
+    byte[] delta = BoardCodec.encodeDelta(new BoardDelta("g1", board, 2, 1));
+    assertArrayEquals(new byte[] {BoardCodec.DELTA, 1, 2, 1, 'X', 2, 0, 0, 1, 2, 'g', '1'},
+        delta);
+
+    Message msg = new Message();
+    msg.setFullMessage(false, 400, "No");
+    assertArrayEquals(new byte[] {BoardCodec.MESSAGE, 0, 1, (byte) 144, 'N', 'o'},
+        BoardCodec.encodeMessage(msg));
+
+    assertArrayEquals(new int[] {2, 1}, BoardCodec.decodeMove(new byte[] {2, 1}));
+    assertThrows(IllegalArgumentException.class, () -> BoardCodec.decodeMove(new byte[3]));
+  }
+}
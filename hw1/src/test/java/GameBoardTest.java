@@ -0,0 +1,161 @@
+import com.google.gson.Gson;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+import models.BoardCodec;
+import models.BoardSnapshot;
+import models.GameBoard;
+import models.GameState;
+import models.Player;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameBoardTest {
+
+  private GameBoard newGame() {
+    return new GameBoard(new Player('O', 1), new Player('X', 2));
+  }
+
+  @Test
+  public void rowColumnAndDiagonalWinTest() {
+    GameBoard row = newGame();
+    row.setBoardState(2, 0, 'O');
+    row.setBoardState(2, 1, 'O');
+    assertEquals(GameState.CONTINUE, row.checkGameResult());
+    row.setBoardState(2, 2, 'O');
+    assertEquals(GameState.PLAYER1WIN, row.checkGameResult());
+
+    GameBoard column = newGame();
+    column.setBoardState(0, 1, 'X');
+    column.setBoardState(1, 1, 'X');
+    column.setBoardState(2, 1, 'X');
+    assertEquals(GameState.PLAYER2WIN, column.checkGameResult());
+
+    GameBoard antiDiagonal = newGame();
+    antiDiagonal.setBoardState(0, 2, 'O');
+    antiDiagonal.setBoardState(1, 1, 'O');
+    antiDiagonal.setBoardState(2, 0, 'O');
+    assertEquals(GameState.PLAYER1WIN, antiDiagonal.checkGameResult());
+  }
+
+  @Test
+  public void drawTest() {
+    GameBoard board = newGame();
+    String rows = "OXOOXXXOO";
+    for (int i = 0; i < rows.length(); i++) {
+      board.setBoardState(i / 3, i % 3, rows.charAt(i));
+    }
+    assertEquals(GameState.DRAW, board.checkGameResult());
+  }
+
+  @Test
+  public void occupiedCellTest() {
+    GameBoard board = newGame();
+    board.setBoardState(1, 2, 'O');
+    assertTrue(board.isOccupied(1, 2));
+    assertFalse(board.isOccupied(2, 1));
+    assertEquals('O', board.getCell(1, 2));
+    assertEquals('\u0000', board.getCell(2, 1));
+    assertFalse(board.isOnBoard(3, 0));
+  }
+
+  @Test
+  public void fiveInARowTest() {
+    GameBoard board = new GameBoard(15, 5);
+    board.setP1(new Player('X', 1));
+    board.setP2(new Player('O', 2));
+    // Four in a row on the anti-diagonal is not enough
+    for (int i = 0; i < 4; i++) {
+      board.setBoardState(10 - i, 4 + i, 'X');
+      assertEquals(GameState.CONTINUE, board.checkGameResult(10 - i, 4 + i));
+    }
+    // An opponent piece at one end does not break the line from the other end
+    board.setBoardState(11, 3, 'O');
+    assertEquals(GameState.CONTINUE, board.checkGameResult(11, 3));
+    board.setBoardState(6, 8, 'X');
+    assertEquals(GameState.PLAYER1WIN, board.checkGameResult(6, 8));
+    assertEquals(GameState.PLAYER1WIN, board.checkGameResult());
+  }
+
+  @Test
+  public void lineAcrossBoardEdgeTest() {
+    // Cells (0, 4) and (1, 0) are next to each other in the bit set but not on the board
+    GameBoard board = new GameBoard(5, 4);
+    board.setP1(new Player('X', 1));
+    board.setBoardState(0, 3, 'X');
+    board.setBoardState(0, 4, 'X');
+    board.setBoardState(1, 0, 'X');
+    board.setBoardState(1, 1, 'X');
+    assertEquals(GameState.CONTINUE, board.checkGameResult(1, 1));
+    assertEquals(GameState.CONTINUE, board.checkGameResult());
+  }
+
+  @Test
+  public void largeBoardJsonTest() {
+    GameBoard board = new GameBoard(19, 5);
+    board.setBoardState(18, 18, 'O');
+    Gson gson = new Gson();
+    GameBoard copy = gson.fromJson(gson.toJson(board), GameBoard.class);
+    assertEquals(19, copy.getSize());
+    assertEquals(5, copy.getWinLength());
+    assertEquals('O', copy.getCell(18, 18));
+    assertEquals(19, copy.getBoardState()[0].length);
+  }
+
+  @Test
+  public void jsonShapeTest() {
+    GameBoard board = newGame();
+    board.setBoardState(0, 0, 'O');
+    board.setBoardState(1, 1, 'X');
+    Gson gson = new Gson();
+    String json = gson.toJson(board);
+
+    JSONObject jsonObject = new JSONObject(json);
+    JSONArray boardState = jsonObject.getJSONArray("boardState");
+    assertEquals(3, boardState.length());
+    assertEquals("O", boardState.getJSONArray(0).getString(0));
+    assertEquals("\u0000", boardState.getJSONArray(0).getString(1));
+    assertEquals("X", jsonObject.getJSONObject("p2").getString("type"));
+
+    GameBoard copy = gson.fromJson(json, GameBoard.class);
+    assertEquals('X', copy.getCell(1, 1));
+    assertEquals('O', copy.getP1().getType());
+    assertEquals(json, gson.toJson(copy));
+  }
+
+  @Test
+  public void snapshotBinaryTest() {
+    GameBoard board = newGame();
+    board.setBoardState(0, 0, 'O');
+    BoardSnapshot snapshot = board.getSnapshot();
+    byte[] expected = BoardCodec.encodeBoard(board);
+
+    // The binary form is built on first use, from the version the snapshot was taken of
+    board.setBoardState(1, 1, 'X');
+    assertArrayEquals(expected, snapshot.getBinary());
+    assertSame(snapshot.getBinary(), snapshot.getBinary());
+  }
+
+  @Test
+  public void snapshotEtagTest() {
+    GameBoard board = newGame();
+    String etag = board.getSnapshot().getEtag();
+    assertEquals(etag, board.getSnapshot().getEtag());
+    assertNotEquals(etag, board.getSnapshot().getBinaryEtag());
+
+    // Same content, different board: a client holding one must not get a 304 for the other
+    GameBoard other = newGame();
+    assertEquals(board.getSnapshot().getJson(), other.getSnapshot().getJson());
+    assertNotEquals(etag, other.getSnapshot().getEtag());
+
+    // Putting the cell back restores the content but not the version
+    board.setBoardState(2, 2, 'X');
+    board.setBoardState(2, 2, '\u0000');
+    assertFalse(board.getSnapshot().matches(etag));
+  }
+}
@@ -0,0 +1,55 @@
+import engine.GameEngine;
+import models.GameBoard;
+import models.GameState;
+import models.Message;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameEngineTest {
+
+  @Test
+  public void playGameTest() {
+    GameBoard board = GameEngine.createGame('O', 3, 3);
+    assertEquals("Bad Request: The game hasn't started yet!",
+        GameEngine.applyMove(board, 1, 0, 0).getMessage());
+    assertTrue(GameEngine.joinGame(board).getMoveValidity());
+    assertEquals('X', board.getP2().getType());
+    assertFalse(GameEngine.joinGame(board).getMoveValidity());
+
+    // Player 1 takes the first column, player 2 the middle one
+    int[][] moves = {{1, 0, 0}, {2, 0, 1}, {1, 1, 0}, {2, 1, 1}, {1, 2, 0}};
+    for (int[] move : moves) {
+      assertEquals(GameState.CONTINUE, GameEngine.getStatus(board));
+      Message msg = GameEngine.applyMove(board, move[0], move[1], move[2]);
+      assertTrue(msg.getMoveValidity());
+    }
+    assertEquals(GameState.PLAYER1WIN, GameEngine.getStatus(board));
+    assertEquals('O', board.getCell(2, 0));
+    assertEquals(5, board.getMoveCount());
+    Message late = GameEngine.applyMove(board, 2, 2, 2);
+    assertEquals(400, late.getCode());
+    assertEquals("Bad Request: The game has already ended!", late.getMessage());
+  }
+
+  @Test
+  public void invalidMovesTest() {
+    GameBoard board = GameEngine.createGame('X', 15, 5);
+    GameEngine.joinGame(board);
+    assertTrue(GameEngine.applyMove(board, 1, 7, 7).getMoveValidity());
+    assertEquals("Bad Request: It's not your turn now!",
+        GameEngine.applyMove(board, 1, 7, 8).getMessage());
+    assertEquals("Bad Request: This position had been token already!",
+        GameEngine.applyMove(board, 2, 7, 7).getMessage());
+    assertEquals("Bad Request: This position is outside the board!",
+        GameEngine.applyMove(board, 2, 15, 0).getMessage());
+    assertEquals(1, board.getMoveCount());
+    assertEquals(2, board.getTurn());
+
+    assertThrows(IllegalArgumentException.class, () -> GameEngine.createGame('Z', 3, 3));
+    assertThrows(IllegalArgumentException.class, () -> GameEngine.createGame('X', 2, 3));
+  }
+}
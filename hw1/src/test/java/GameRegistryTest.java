@@ -0,0 +1,37 @@
+import controllers.GameRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.GameBoard;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class GameRegistryTest {
+
+  @Test
+  public void missingGameCachedUntilPutTest() {
+    AtomicInteger loads = new AtomicInteger();
+    GameRegistry registry = new GameRegistry(60_000, 60_000, 10, gameId -> {
+      loads.incrementAndGet();
+      return null;
+    });
+
+    // A game storage does not have is looked up once, then answered from the registry
+    assertNull(registry.get("missing"));
+    assertNull(registry.get("missing"));
+    assertNull(registry.getBoard("missing"));
+    assertEquals(1, loads.get());
+
+    // Creating the game ends the miss at once
+    GameBoard board = new GameBoard();
+    registry.put("missing", board);
+    assertNotNull(registry.get("missing"));
+    assertEquals(board, registry.getBoard("missing"));
+
+    // Once evicted it is loaded again rather than answered as missing
+    registry.remove("missing");
+    assertNull(registry.get("missing"));
+    assertEquals(2, loads.get());
+  }
+}
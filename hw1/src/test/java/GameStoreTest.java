@@ -0,0 +1,184 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import storage.Durability;
+import storage.GameCheckpoint;
+import storage.GameRound;
+import storage.MoveRecord;
+import storage.SqliteGameStore;
+import storage.StorageException;
+import storage.WriteBehindGameStore;
+import storage.WriteOp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameStoreTest {
+
+  private File dbFile;
+
+  private SqliteGameStore store;
+
+  @BeforeEach
+  public void openStore() throws IOException {
+    dbFile = File.createTempFile("gamestore", ".db");
+    store = new SqliteGameStore("jdbc:sqlite:" + dbFile.getPath());
+  }
+
+  private static MoveRecord move(String gameId, int moveId) {
+    return new MoveRecord(gameId, moveId, moveId % 2 == 1 ? 'X' : 'O', moveId % 2 == 1 ? 1 : 2,
+        moveId / 3, moveId % 3, true, false, 0, 3, 3);
+  }
+
+  @Test
+  public void replayFromCheckpointTest() {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.markGameStarted("a", null);
+    store.appendMove(move("a", 1));
+    store.appendMove(move("a", 2));
+    store.saveCheckpoint(new GameCheckpoint("a", 2, "{\"moveCount\":2}"));
+    store.appendMove(move("a", 3));
+    store.resetGame(new MoveRecord("b", 0, 'O', 1, -1, -1, false, false, 0, 3, 3), null);
+
+    List<GameCheckpoint> checkpoints = new ArrayList<>();
+    List<MoveRecord> rows = new ArrayList<>();
+    store.replay(checkpoints::add, rows::add);
+    assertEquals(1, checkpoints.size());
+    assertEquals("{\"moveCount\":2}", checkpoints.get(0).getBoard());
+    // Game a resumes after its checkpoint, game b has none and is replayed whole
+    assertEquals(2, rows.size());
+    assertEquals("a", rows.get(0).getGameId());
+    assertEquals(3, rows.get(0).getMoveId());
+    assertEquals("b", rows.get(1).getGameId());
+    assertEquals(0, rows.get(1).getMoveId());
+  }
+
+  @Test
+  public void resetDropsCheckpointTest() {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.appendMove(move("a", 1));
+    store.saveCheckpoint(new GameCheckpoint("a", 1, "{}"));
+    store.resetGame(new MoveRecord("a", 0, 'O', 1, -1, -1, false, false, 0, 3, 3), null);
+
+    List<GameCheckpoint> checkpoints = new ArrayList<>();
+    List<MoveRecord> rows = new ArrayList<>();
+    store.replay(checkpoints::add, rows::add);
+    assertEquals(0, checkpoints.size());
+    assertEquals(1, rows.size());
+    assertEquals('O', rows.get(0).getMoveType());
+  }
+
+  @Test
+  public void loadOneGameTest() {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.appendMove(move("a", 1));
+    store.saveCheckpoint(new GameCheckpoint("a", 1, "{}"));
+    store.appendMove(move("a", 2));
+    store.resetGame(new MoveRecord("b", 0, 'O', 1, -1, -1, false, false, 0, 3, 3), null);
+
+    List<GameCheckpoint> checkpoints = new ArrayList<>();
+    List<MoveRecord> rows = new ArrayList<>();
+    assertTrue(store.loadGame("a", checkpoints::add, rows::add));
+    assertEquals(1, checkpoints.size());
+    assertEquals(1, rows.size());
+    assertEquals(2, rows.get(0).getMoveId());
+    assertFalse(store.loadGame("missing", checkpoints::add, rows::add));
+  }
+
+  @Test
+  public void roundsKeepHistoryTest() {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), "ann");
+    store.markGameStarted("a", "ben");
+    store.appendMove(move("a", 1));
+    store.resetGame(new MoveRecord("a", 0, 'O', 1, -1, -1, false, false, 0, 3, 3), "ben");
+    store.markGameStarted("a", "ai-easy", "EASY");
+    store.appendMove(move("a", 1));
+    store.appendMove(move("a", 2));
+
+    assertEquals(1, store.currentRound("a"));
+    assertEquals(-1, store.currentRound("missing"));
+    assertEquals(2, store.listMoves("a", 0).size());
+    assertEquals(3, store.listMoves("a", 1).size());
+    // Row 0 remembers the server plays the new round, not the old one
+    assertEquals(null, store.listMoves("a", 0).get(0).getAi());
+    assertEquals("EASY", store.listMoves("a", 1).get(0).getAi());
+    List<GameRound> games = store.recentGames("ben", 10);
+    assertEquals(2, games.size());
+    assertEquals(1, games.get(0).getRound());
+    assertEquals(2, games.get(0).getMoveCount());
+    assertEquals("ann", games.get(1).getPlayer1Name());
+
+    // Only the finished round goes, the current one is kept however old it is
+    assertEquals(1, store.pruneHistory(System.currentTimeMillis() + 1000));
+    assertEquals(0, store.listMoves("a", 0).size());
+    assertEquals(3, store.listMoves("a", 1).size());
+    assertEquals(1, store.recentGames("ann", 10).size() + store.recentGames("ben", 10).size());
+  }
+
+  @Test
+  public void lostWriteDropsGameTest() {
+    AtomicBoolean failing = new AtomicBoolean(true);
+    SqliteGameStore flaky = new SqliteGameStore("jdbc:sqlite:" + dbFile.getPath()) {
+      @Override
+      public void appendMove(MoveRecord move) {
+        if (move.getGameId().equals("bad") && move.getMoveId() == 2 && failing.get()) {
+          throw new StorageException("Disk full", null);
+        }
+        super.appendMove(move);
+      }
+
+      @Override
+      public void applyBatch(List<WriteOp> ops) {
+        for (WriteOp op : ops) {
+          if (op.getGameId().equals("bad") && failing.get()) {
+            throw new StorageException("Disk full", null);
+          }
+        }
+        super.applyBatch(ops);
+      }
+    };
+    List<String> lost = new CopyOnWriteArrayList<>();
+    WriteBehindGameStore journal = new WriteBehindGameStore(flaky, Durability.ASYNC, 1000, 64, 64);
+    journal.setFailureListener(lost::add);
+    journal.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    journal.resetGame(new MoveRecord("bad", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    journal.appendMove(move("a", 1));
+    journal.appendMove(move("bad", 1));
+    journal.appendMove(move("bad", 2));
+    journal.appendMove(move("bad", 3));
+    journal.appendMove(move("a", 2));
+    journal.flush();
+
+    // Only the failing game loses its writes, and none after the lost one
+    assertEquals(Collections.singletonList("bad"), lost);
+    assertEquals(3, journal.listMoves("a", 0).size());
+    assertEquals(2, journal.listMoves("bad", 0).size());
+
+    // Once reloaded the game carries on from what was stored
+    failing.set(false);
+    assertTrue(journal.loadGame("bad", checkpoint -> { }, row -> { }));
+    journal.appendMove(move("bad", 2));
+    journal.flush();
+    assertEquals(3, journal.listMoves("bad", 0).size());
+
+    journal.close();
+    assertThrows(StorageException.class, () -> journal.appendMove(move("a", 3)));
+  }
+
+  @AfterEach
+  public void closeStore() {
+    store.close();
+    dbFile.delete();
+    new File(dbFile.getPath() + "-wal").delete();
+    new File(dbFile.getPath() + "-shm").delete();
+  }
+}
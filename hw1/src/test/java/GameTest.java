@@ -2,14 +2,23 @@ import com.google.gson.Gson;
 import controllers.PlayGame;
 import kong.unirest.HttpResponse;
 import kong.unirest.Unirest;
+import kong.unirest.json.JSONArray;
 import kong.unirest.json.JSONObject;
+import models.BoardCodec;
 import models.GameBoard;
 import models.Player;
 import org.junit.jupiter.api.*;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -210,6 +219,8 @@ public class GameTest {
     JSONObject jsonObject = new JSONObject(gameBoardResponseBody);
     assertEquals(1, jsonObject.get("winner"));
     assertEquals(false, jsonObject.get("gameStarted"));
+    // Five valid moves were taken in this game
+    assertEquals(5, jsonObject.get("moveCount"));
   }
 
   @Test
@@ -251,6 +262,223 @@ public class GameTest {
     assertEquals(false, jsonObject.get("gameStarted"));
   }
 
+  @Test
+  @Order(12)
+  public void multipleGamesTest() {
+    // Start two games side by side, each with its own players
+    Unirest.post("http://localhost:8080/game/g1/startgame").body("type=X").asString();
+    Unirest.post("http://localhost:8080/game/g2/startgame").body("type=O").asString();
+    Unirest.get("http://localhost:8080/game/g1/joingame").asString();
+    Unirest.get("http://localhost:8080/game/g2/joingame").asString();
+    HttpResponse response = Unirest.post("http://localhost:8080/game/g1/move/1")
+        .body("x=1&y=1").asString();
+    JSONObject jsonObject = new JSONObject((String) response.getBody());
+    assertEquals(true, jsonObject.get("moveValidity"));
+    // The same cell is still free in the other game
+    response = Unirest.post("http://localhost:8080/game/g2/move/1").body("x=1&y=1").asString();
+    jsonObject = new JSONObject((String) response.getBody());
+    assertEquals(true, jsonObject.get("moveValidity"));
+
+    Gson gson = new Gson();
+    response = Unirest.get("http://localhost:8080/game/g1/gameboard").asString();
+    GameBoard g1 = gson.fromJson((String) response.getBody(), GameBoard.class);
+    response = Unirest.get("http://localhost:8080/game/g2/gameboard").asString();
+    GameBoard g2 = gson.fromJson((String) response.getBody(), GameBoard.class);
+    assertEquals('X', g1.getBoardState()[1][1]);
+    assertEquals('O', g2.getBoardState()[1][1]);
+    assertEquals(2, g1.getTurn());
+    assertEquals(2, g2.getTurn());
+
+    // Starting another game leaves the default game untouched
+    response = Unirest.get("http://localhost:8080/gameboard").asString();
+    jsonObject = new JSONObject((String) response.getBody());
+    assertEquals(true, jsonObject.get("isDraw"));
+  }
+
+  @Test
+  @Order(13)
+  public void unknownGameTest() {
+    HttpResponse response = Unirest.get("http://localhost:8080/game/nosuchgame/gameboard")
+        .asString();
+    assertEquals(404, response.getStatus());
+    response = Unirest.get("http://localhost:8080/game/bad!id/gameboard").asString();
+    assertEquals(400, response.getStatus());
+  }
+
+  @Test
+  @Order(14)
+  public void gameBoardEtagTest() {
+    HttpResponse response = Unirest.get("http://localhost:8080/game/g1/gameboard").asString();
+    String etag = response.getHeaders().getFirst("ETag");
+    // Polling an unchanged board returns 304 without a body
+    response = Unirest.get("http://localhost:8080/game/g1/gameboard")
+        .header("If-None-Match", etag).asString();
+    assertEquals(304, response.getStatus());
+    // A move changes the board and so its ETag
+    Unirest.post("http://localhost:8080/game/g1/move/2").body("x=0&y=0").asString();
+    response = Unirest.get("http://localhost:8080/game/g1/gameboard")
+        .header("If-None-Match", etag).asString();
+    assertEquals(200, response.getStatus());
+    JSONObject jsonObject = new JSONObject((String) response.getBody());
+    assertEquals(1, jsonObject.get("turn"));
+  }
+
+  @Test
+  @Order(15)
+  public void concurrentMovesTest() throws Exception {
+    Unirest.post("http://localhost:8080/game/race/startgame").body("type=X").asString();
+    Unirest.get("http://localhost:8080/game/race/joingame").asString();
+    // Player 1 tries eight cells at once, only one of them can be its move
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<String>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      String body = "x=" + i / 3 + "&y=" + i % 3;
+      results.add(pool.submit(() -> Unirest.post("http://localhost:8080/game/race/move/1")
+          .body(body).asString().getBody()));
+    }
+    int accepted = 0;
+    for (Future<String> result : results) {
+      if (new JSONObject(result.get()).getBoolean("moveValidity")) {
+        accepted++;
+      }
+    }
+    pool.shutdown();
+    assertEquals(1, accepted);
+
+    HttpResponse response = Unirest.get("http://localhost:8080/game/race/gameboard").asString();
+    JSONObject jsonObject = new JSONObject((String) response.getBody());
+    assertEquals(1, jsonObject.get("moveCount"));
+    assertEquals(2, jsonObject.get("turn"));
+  }
+
+  @Test
+  @Order(16)
+  public void metricsTest() {
+    HttpResponse response = Unirest.get("http://localhost:8080/metrics").asString();
+    assertEquals(200, response.getStatus());
+    String metrics = (String) response.getBody();
+    // Requests are recorded under their route pattern, not under each game id
+    assertTrue(metrics.contains("tictactoe_http_request_duration_seconds_count{method=\"POST\","
+        + "route=\"/game/:gameId/move/:playerId\",status=\"200\"}"));
+    assertFalse(metrics.contains("route=\"/game/race/"));
+    assertTrue(metrics.contains("tictactoe_db_commit_duration_seconds_count "));
+    assertTrue(metrics.contains("tictactoe_broadcast_duration_seconds_count{kind=\"move\"}"));
+    assertTrue(metrics.contains("\ntictactoe_active_games "));
+    assertTrue(metrics.contains("\ntictactoe_websocket_sessions "));
+  }
+
+  @Test
+  @Order(17)
+  public void reloadFromCheckpointTest() {
+    // A finished game is checkpointed, so a restart restores it without its moves
+    Unirest.post("http://localhost:8080/game/saved/startgame").body("type=O").asString();
+    Unirest.get("http://localhost:8080/game/saved/joingame").asString();
+    Unirest.post("http://localhost:8080/game/saved/move/1").body("x=0&y=0").asString();
+    Unirest.post("http://localhost:8080/game/saved/move/2").body("x=1&y=0").asString();
+    Unirest.post("http://localhost:8080/game/saved/move/1").body("x=0&y=1").asString();
+    Unirest.post("http://localhost:8080/game/saved/move/2").body("x=1&y=1").asString();
+    Unirest.post("http://localhost:8080/game/saved/move/1").body("x=0&y=2").asString();
+    PlayGame.stop();
+    PlayGame.main(null);
+    Unirest.config().reset();
+    HttpResponse response = Unirest.get("http://localhost:8080/game/saved/gameboard").asString();
+    JSONObject jsonObject = new JSONObject((String) response.getBody());
+    assertEquals(1, jsonObject.get("winner"));
+    assertEquals(5, jsonObject.get("moveCount"));
+    assertEquals("X", jsonObject.getJSONArray("boardState").getJSONArray(1).getString(1));
+    assertEquals("O", jsonObject.getJSONArray("boardState").getJSONArray(0).getString(2));
+  }
+
+  @Test
+  @Order(18)
+  public void historyTest() {
+    // Two rounds under one id, the first one stays queryable
+    Unirest.post("http://localhost:8080/game/hist/startgame").body("type=X&name=alice").asString();
+    Unirest.get("http://localhost:8080/game/hist/joingame?name=bob").asString();
+    Unirest.post("http://localhost:8080/game/hist/move/1").body("x=1&y=1").asString();
+    Unirest.post("http://localhost:8080/game/hist/startgame").body("type=O&name=carol").asString();
+    Unirest.get("http://localhost:8080/game/hist/joingame?name=alice").asString();
+
+    JSONObject current = new JSONObject(
+        Unirest.get("http://localhost:8080/game/hist/history").asString().getBody());
+    int round = current.getInt("round");
+    assertEquals(1, current.getJSONArray("moves").length());
+    JSONObject previous = new JSONObject(Unirest.get(
+        "http://localhost:8080/game/hist/history?round=" + (round - 1)).asString().getBody());
+    assertEquals(2, previous.getJSONArray("moves").length());
+    assertEquals(1, previous.getJSONArray("moves").getJSONObject(1).get("moveX"));
+
+    JSONArray games = new JSONArray(
+        Unirest.get("http://localhost:8080/players/alice/games?limit=2").asString().getBody());
+    assertEquals(2, games.length());
+    assertEquals(round, games.getJSONObject(0).get("round"));
+    assertEquals("carol", games.getJSONObject(0).get("player1Name"));
+    assertEquals("bob", games.getJSONObject(1).get("player2Name"));
+    assertEquals(1, games.getJSONObject(1).get("moveCount"));
+
+    assertEquals(404, Unirest.get("http://localhost:8080/game/nohist/history").asString()
+        .getStatus());
+    assertEquals(400, Unirest.post("http://localhost:8080/game/hist/startgame")
+        .body("type=X&name=a b").asString().getStatus());
+  }
+
+  @Test
+  @Order(19)
+  public void binaryFormatTest() {
+    byte[] started = Unirest.post("http://localhost:8080/game/bin/startgame")
+        .header("Accept", BoardCodec.CONTENT_TYPE).body("type=X").asBytes().getBody();
+    assertEquals('X', BoardCodec.decodeBoard(started).getP1().getType());
+    Unirest.get("http://localhost:8080/game/bin/joingame").asString();
+
+    // The move goes as two bytes and its result comes back as a MESSAGE frame
+    byte[] result = Unirest.post("http://localhost:8080/game/bin/move/1")
+        .header("Content-Type", BoardCodec.CONTENT_TYPE)
+        .header("Accept", BoardCodec.CONTENT_TYPE)
+        .body(new byte[] {2, 0}).asBytes().getBody();
+    assertEquals(BoardCodec.MESSAGE, result[0]);
+    assertEquals(1, result[1]);
+
+    HttpResponse<byte[]> response = Unirest.get("http://localhost:8080/game/bin/gameboard")
+        .header("Accept", BoardCodec.CONTENT_TYPE).asBytes();
+    GameBoard board = BoardCodec.decodeBoard(response.getBody());
+    assertEquals('X', board.getCell(2, 0));
+    assertEquals(2, board.getTurn());
+    // Both encodings are cached separately
+    String etag = response.getHeaders().getFirst("ETag");
+    assertEquals(304, Unirest.get("http://localhost:8080/game/bin/gameboard")
+        .header("Accept", BoardCodec.CONTENT_TYPE).header("If-None-Match", etag).asBytes()
+        .getStatus());
+    assertEquals(200, Unirest.get("http://localhost:8080/game/bin/gameboard")
+        .header("If-None-Match", etag).asString().getStatus());
+
+    assertEquals(400, Unirest.post("http://localhost:8080/game/bin/move/2")
+        .header("Content-Type", BoardCodec.CONTENT_TYPE).body(new byte[] {1})
+        .asString().getStatus());
+  }
+
+
+  @Test
+  @Order(20)
+  public void aiOpponentTest() {
+    Unirest.post("http://localhost:8080/game/ai/startgame").body("type=X").asString();
+    assertEquals(400, Unirest.get("http://localhost:8080/game/ai/joingame?ai=expert")
+        .asString().getStatus());
+    HttpResponse<String> joined =
+        Unirest.get("http://localhost:8080/game/ai/joingame?ai=hard").asString();
+    assertEquals(200, joined.getStatus());
+    GameBoard board = new Gson().fromJson(joined.getBody(), GameBoard.class);
+    assertEquals("HARD", board.getAi());
+    assertTrue(board.isGameStarted());
+
+    // The server answers a corner with the center before the move request returns
+    Unirest.post("http://localhost:8080/game/ai/move/1").body("x=0&y=0").asString();
+    board = new Gson().fromJson(
+        Unirest.get("http://localhost:8080/game/ai/gameboard").asString().getBody(),
+        GameBoard.class);
+    assertEquals(2, board.getMoveCount());
+    assertEquals('O', board.getCell(1, 1));
+    assertEquals(1, board.getTurn());
+  }
 
   /**
    * This will run every time after a test has finished.
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import storage.GameCheckpoint;
+import storage.MappedLogGameStore;
+import storage.MoveRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MappedLogGameStoreTest {
+
+  // Room for a header and three records, so a few moves already rotate segments
+  private static final int SEGMENT_BYTES = 256;
+
+  private Path directory;
+
+  private MappedLogGameStore store;
+
+  @BeforeEach
+  public void openStore() throws IOException {
+    directory = Files.createTempDirectory("movelog");
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+  }
+
+  private static MoveRecord move(String gameId, int moveId) {
+    return new MoveRecord(gameId, moveId, moveId % 2 == 1 ? 'X' : 'O', moveId % 2 == 1 ? 1 : 2,
+        moveId / 3, moveId % 3, true, false, moveId == 5 ? 1 : 0, 3, 3);
+  }
+
+  private List<MoveRecord> load(String gameId) {
+    List<MoveRecord> rows = new ArrayList<>();
+    store.loadGame(gameId, checkpoint -> { }, rows::add);
+    return rows;
+  }
+
+  @Test
+  public void reopenAcrossSegmentsTest() {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.resetGame(new MoveRecord("b", 0, 'O', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.markGameStarted("a", null);
+    for (int moveId = 1; moveId <= 5; moveId++) {
+      store.appendMove(move("a", moveId));
+    }
+    store.saveCheckpoint(new GameCheckpoint("a", 5, "{}"));
+    store.close();
+
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+    List<MoveRecord> rows = load("a");
+    assertEquals(6, rows.size());
+    assertTrue(rows.get(0).isGameStarted());
+    assertEquals('X', rows.get(0).getMoveType());
+    assertEquals(5, rows.get(5).getMoveId());
+    assertEquals(1, rows.get(5).getMoveX());
+    assertEquals(2, rows.get(5).getMoveY());
+    assertEquals(1, rows.get(5).getWinner());
+    assertEquals(1, load("b").size());
+    assertFalse(store.loadGame("missing", checkpoint -> { }, row -> { }));
+
+    // Replay feeds every game ordered by game id
+    List<String> games = new ArrayList<>();
+    store.replay(checkpoint -> { }, row -> games.add(row.getGameId()));
+    assertEquals(7, games.size());
+    assertEquals("b", games.get(6));
+  }
+
+  @Test
+  public void resetDropsEarlierRecordsTest() {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.markGameStarted("a", null);
+    store.appendMove(move("a", 1));
+    store.resetGame(new MoveRecord("a", 0, 'O', 1, -1, -1, false, false, 0, 3, 3), null);
+
+    List<MoveRecord> rows = load("a");
+    assertEquals(1, rows.size());
+    assertEquals('O', rows.get(0).getMoveType());
+    assertFalse(rows.get(0).isGameStarted());
+  }
+
+  @Test
+  public void tornRecordEndsLogTest() throws IOException {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.appendMove(move("a", 1));
+    store.appendMove(move("a", 2));
+    store.close();
+
+    // Damage the last record as a crash in the middle of its write would
+    try (RandomAccessFile file =
+        new RandomAccessFile(directory.resolve("moves-000000.log").toFile(), "rw")) {
+      file.seek(3 * 64 + 40);
+      file.write(0x7f);
+    }
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+    assertEquals(2, load("a").size());
+
+    // The next write takes the place of the damaged record
+    store.appendMove(move("a", 2));
+    store.close();
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+    assertEquals(3, load("a").size());
+  }
+
+  @Test
+  public void damagedRecordTruncatesLogTest() throws IOException {
+    // Ten records over four segments
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    for (int moveId = 1; moveId <= 9; moveId++) {
+      store.appendMove(move("a", moveId));
+    }
+    store.close();
+
+    // Damage the second record, the valid records after it are no longer part of the log
+    try (RandomAccessFile file =
+        new RandomAccessFile(directory.resolve("moves-000000.log").toFile(), "rw")) {
+      file.seek(2 * 64 + 40);
+      file.write(0x7f);
+    }
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+    assertEquals(1, load("a").size());
+    assertFalse(Files.exists(directory.resolve("moves-000001.log")));
+    assertFalse(Files.exists(directory.resolve("moves-000002.log")));
+    assertFalse(Files.exists(directory.resolve("moves-000003.log")));
+
+    // Writing into a new second segment and reopening brings none of the old records back
+    for (int moveId = 1; moveId <= 5; moveId++) {
+      store.appendMove(move("a", moveId));
+    }
+    store.close();
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+    List<MoveRecord> rows = load("a");
+    assertEquals(6, rows.size());
+    assertEquals(5, rows.get(5).getMoveId());
+  }
+
+  @Test
+  public void compactionReclaimsSegmentsTest() throws IOException {
+    store.resetGame(new MoveRecord("b", 0, 'O', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.appendMove(move("b", 1));
+    for (int round = 0; round < 10; round++) {
+      store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+      store.markGameStarted("a", null, "HARD");
+      store.appendMove(move("a", 1));
+      store.appendMove(move("a", 2));
+    }
+    assertEquals(14, segmentCount());
+
+    // Nine earlier rounds of a go, the current ones stay whole
+    assertEquals(9, store.pruneHistory(0));
+    assertEquals(2, segmentCount());
+    assertEquals(0, store.pruneHistory(0));
+    assertEquals(3, load("a").size());
+    assertEquals("HARD", load("a").get(0).getAi());
+    assertEquals(2, load("b").size());
+    assertEquals(9, store.currentRound("a"));
+
+    // Writes carry on after the copies, and the log opens from them
+    store.appendMove(move("a", 3));
+    store.close();
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+    assertEquals(4, load("a").size());
+    assertEquals(3, load("a").get(3).getMoveId());
+    assertEquals(9, store.currentRound("a"));
+    assertFalse(Files.exists(directory.resolve("moves-000000.log")));
+  }
+
+  @Test
+  public void unfinishedCompactionIgnoredTest() throws IOException {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    store.appendMove(move("a", 1));
+    store.close();
+
+    // A copy whose header was never written, as a crash in the middle of a compaction leaves it
+    try (RandomAccessFile file =
+        new RandomAccessFile(directory.resolve("moves-000001.log").toFile(), "rw")) {
+      file.setLength(SEGMENT_BYTES);
+      file.seek(64);
+      file.write(new byte[] {1, 2, 3});
+    }
+    store = new MappedLogGameStore(directory, SEGMENT_BYTES);
+    assertEquals(2, load("a").size());
+    assertFalse(Files.exists(directory.resolve("moves-000001.log")));
+  }
+
+  @Test
+  public void segmentSizeFromHeaderTest() throws IOException {
+    store.resetGame(new MoveRecord("a", 0, 'X', 1, -1, -1, false, false, 0, 3, 3), null);
+    for (int moveId = 1; moveId <= 5; moveId++) {
+      store.appendMove(move("a", moveId));
+    }
+    store.close();
+
+    // Positions are computed from the size the log was written with, not the configured one
+    store = new MappedLogGameStore(directory, 4 * SEGMENT_BYTES);
+    List<MoveRecord> rows = load("a");
+    assertEquals(6, rows.size());
+    assertEquals(5, rows.get(5).getMoveId());
+    store.appendMove(move("a", 6));
+    assertEquals(3, segmentCount());
+  }
+
+  private long segmentCount() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+
+  @AfterEach
+  public void closeStore() throws IOException {
+    store.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+}
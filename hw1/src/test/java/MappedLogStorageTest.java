@@ -0,0 +1,90 @@
+import controllers.PlayGame;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import kong.unirest.HttpResponse;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MappedLogStorageTest {
+
+  private static Path directory;
+
+  /**
+   * Runs only once before the testing starts.
+   */
+  @BeforeAll
+  public static void init() throws IOException {
+    // Start Server on the move log instead of the database
+    directory = Files.createTempDirectory("movelog-server");
+    System.setProperty("tictactoe.storage", "mappedlog");
+    System.setProperty("tictactoe.logDir", directory.toString());
+    System.setProperty("tictactoe.logSegmentBytes", "65536");
+    PlayGame.main(null);
+    // Drop the connections kept alive to the server of the previous test class
+    Unirest.config().reset();
+  }
+
+  private static JSONObject board() {
+    return new JSONObject(
+        Unirest.get("http://localhost:8080/game/ailog/gameboard").asString().getBody());
+  }
+
+  // Play player 1 on the first free cell
+  private static void playFirstFreeCell() {
+    JSONArray cells = board().getJSONArray("boardState");
+    for (int x = 0; x < 3; x++) {
+      for (int y = 0; y < 3; y++) {
+        if ("\u0000".equals(cells.getJSONArray(x).getString(y))) {
+          HttpResponse<String> response = Unirest.post("http://localhost:8080/game/ailog/move/1")
+              .body("x=" + x + "&y=" + y).asString();
+          assertEquals(true, new JSONObject(response.getBody()).get("moveValidity"));
+          return;
+        }
+      }
+    }
+  }
+
+  @Test
+  public void aiGameSurvivesReloadTest() {
+    Unirest.post("http://localhost:8080/game/ailog/startgame").body("type=X").asString();
+    Unirest.get("http://localhost:8080/game/ailog/joingame?ai=hard").asString();
+    playFirstFreeCell();
+    assertEquals(2, board().get("moveCount"));
+
+    // The restarted server loads the game from the log, and still plays player 2
+    PlayGame.stop();
+    PlayGame.main(null);
+    Unirest.config().reset();
+    assertEquals("HARD", board().get("ai"));
+    playFirstFreeCell();
+    JSONObject board = board();
+    assertEquals(4, board.get("moveCount"));
+    assertEquals(1, board.get("turn"));
+  }
+
+  /**
+   * This method runs only once after all the test cases have been executed.
+   */
+  @AfterAll
+  public static void close() throws IOException {
+    // Stop Server
+    PlayGame.stop();
+    // The next test class starts its own server, keep none of these connections for it
+    Unirest.config().reset();
+    System.clearProperty("tictactoe.storage");
+    System.clearProperty("tictactoe.logDir");
+    System.clearProperty("tictactoe.logSegmentBytes");
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+}
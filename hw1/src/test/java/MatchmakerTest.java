@@ -0,0 +1,135 @@
+import controllers.Matchmaker;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MatchmakerTest {
+
+  private final BlockingQueue<String> matches = new LinkedBlockingQueue<>();
+
+  // Record every pair as "p1 p2 p1Type"
+  private Matchmaker<String> start(int capacity, long preferenceMillis) {
+    Matchmaker<String> matchmaker = new Matchmaker<>(capacity, preferenceMillis,
+        (p1, p2, p1Type) -> matches.add(p1.getClient() + " " + p2.getClient() + " " + p1Type));
+    matchmaker.start();
+    return matchmaker;
+  }
+
+  private String nextMatch() throws InterruptedException {
+    return matches.poll(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void preferenceTest() throws InterruptedException {
+    Matchmaker<String> matchmaker = start(100, 60000);
+    assertEquals(Matchmaker.Admission.QUEUED, matchmaker.enqueue("a", 'X', null));
+    assertEquals(Matchmaker.Admission.QUEUED, matchmaker.enqueue("b", 'X', null));
+    assertEquals(Matchmaker.Admission.ALREADY_QUEUED, matchmaker.enqueue("a", 'O', null));
+    // Two players who both want X wait for an opponent who does not
+    assertNull(matches.poll(100, TimeUnit.MILLISECONDS));
+    matchmaker.enqueue("c", 'O', null);
+    assertEquals("a c X", nextMatch());
+    matchmaker.enqueue("d", '\u0000', null);
+    assertEquals("b d X", nextMatch());
+
+    // A player taking either piece leaves the other one its choice
+    matchmaker.enqueue("e", '\u0000', null);
+    matchmaker.enqueue("f", 'X', null);
+    assertEquals("e f O", nextMatch());
+
+    // A cancelled player is skipped
+    matchmaker.enqueue("g", '\u0000', null);
+    assertTrue(matchmaker.cancel("g"));
+    assertFalse(matchmaker.cancel("g"));
+    matchmaker.enqueue("h", 'O', null);
+    matchmaker.enqueue("i", 'O', null);
+    matchmaker.enqueue("j", '\u0000', null);
+    assertEquals("h j O", nextMatch());
+    assertEquals(1, matchmaker.getWaitingCount());
+    matchmaker.stop();
+  }
+
+  @Test
+  public void preferenceExpiryAndCapacityTest() throws InterruptedException {
+    Matchmaker<String> matchmaker = start(2, 50);
+    matchmaker.enqueue("a", 'O', null);
+    matchmaker.enqueue("b", 'O', null);
+    assertEquals(Matchmaker.Admission.FULL, matchmaker.enqueue("c", 'X', null));
+    // Once the preference has expired the two players are paired anyway
+    assertEquals("a b X", nextMatch());
+    assertEquals(Matchmaker.Admission.QUEUED, matchmaker.enqueue("c", 'X', null));
+    matchmaker.stop();
+  }
+
+  @Test
+  public void manyPlayersTest() throws InterruptedException {
+    Matchmaker<String> matchmaker = start(100000, 60000);
+    int threads = 4;
+    int perThread = 12500;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      new Thread(() -> {
+        char[] pieces = {'X', 'O', '\u0000'};
+        for (int i = 0; i < perThread; i++) {
+          matchmaker.enqueue(thread + "-" + i, pieces[i % 3], null);
+        }
+        done.countDown();
+      }).start();
+    }
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    // Every player is matched exactly once
+    Set<String> seen = ConcurrentHashMap.newKeySet();
+    for (int i = 0; i < threads * perThread / 2; i++) {
+      String[] match = nextMatch().split(" ");
+      assertTrue(seen.add(match[0]));
+      assertTrue(seen.add(match[1]));
+    }
+    assertEquals(0, matchmaker.getWaitingCount());
+    matchmaker.stop();
+  }
+
+  @Test
+  public void cancelWhileMatchingTest() throws InterruptedException {
+    Set<String> matched = ConcurrentHashMap.newKeySet();
+    Matchmaker<String> matchmaker = new Matchmaker<>(100000, 60000, (p1, p2, p1Type) -> {
+      matched.add(p1.getClient());
+      matched.add(p2.getClient());
+    });
+    matchmaker.start();
+    int players = 20000;
+    BlockingQueue<String> queued = new LinkedBlockingQueue<>();
+    Thread enqueuer = new Thread(() -> {
+      for (int i = 0; i < players; i++) {
+        matchmaker.enqueue("p" + i, '\u0000', null);
+        queued.add("p" + i);
+      }
+    });
+    enqueuer.start();
+    // Every player cancels right away, racing the matcher
+    Set<String> cancelled = ConcurrentHashMap.newKeySet();
+    for (int i = 0; i < players; i++) {
+      String client = queued.poll(5, TimeUnit.SECONDS);
+      if (matchmaker.cancel(client)) {
+        cancelled.add(client);
+      }
+    }
+    enqueuer.join();
+    Thread.sleep(200);
+    // A cancel only fails for a player who was matched, nobody is left waiting
+    for (int i = 0; i < players; i++) {
+      assertTrue(matched.contains("p" + i) != cancelled.contains("p" + i), "p" + i);
+    }
+    assertEquals(0, matchmaker.getWaitingCount());
+    matchmaker.stop();
+  }
+}
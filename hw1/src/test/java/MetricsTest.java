@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+  @Test
+  public void histogramRenderTest() {
+    MetricsRegistry registry = new MetricsRegistry();
+    Histogram histogram = registry.histogram("test_seconds", "Test", "route");
+    histogram.labels("/a").observeNanos(30_000);
+    histogram.labels("/a").observeNanos(2_000_000);
+    histogram.labels("/a").observeNanos(60_000_000_000L);
+    String text = registry.render();
+    assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+    // Buckets are cumulative and the last one counts everything
+    assertTrue(text.contains("test_seconds_bucket{route=\"/a\",le=\"5.0E-5\"} 1\n"));
+    assertTrue(text.contains("test_seconds_bucket{route=\"/a\",le=\"0.0025\"} 2\n"));
+    assertTrue(text.contains("test_seconds_bucket{route=\"/a\",le=\"10.0\"} 2\n"));
+    assertTrue(text.contains("test_seconds_bucket{route=\"/a\",le=\"+Inf\"} 3\n"));
+    assertTrue(text.contains("test_seconds_count{route=\"/a\"} 3\n"));
+    assertTrue(text.contains("test_seconds_sum{route=\"/a\"} 60.00203\n"));
+  }
+
+  @Test
+  public void histogramRenderWhileRecordingTest() throws InterruptedException {
+    MetricsRegistry registry = new MetricsRegistry();
+    Histogram histogram = registry.histogram("busy_seconds", "Busy");
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread writer = new Thread(() -> {
+      while (running.get()) {
+        histogram.observeNanos(1_000);
+      }
+    });
+    writer.start();
+    try {
+      for (int i = 0; i < 2000; i++) {
+        long last = -1;
+        long count = -1;
+        for (String line : registry.render().split("\n")) {
+          if (line.startsWith("busy_seconds_bucket")) {
+            long value = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            // Cumulative buckets never go down, +Inf included
+            assertTrue(value >= last, line);
+            last = value;
+          } else if (line.startsWith("busy_seconds_count")) {
+            count = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+          }
+        }
+        assertEquals(last, count);
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+  }
+
+  @Test
+  public void gaugeRenderTest() {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.gauge("test_games", "Games", () -> 1);
+    // Registering again, as a restarted server does, replaces the supplier
+    registry.gauge("test_games", "Games", () -> 7);
+    registry.counter("test_sent_total", "Sent", () -> 42L);
+    String text = registry.render();
+    assertTrue(text.contains("# TYPE test_games gauge\ntest_games 7\n"));
+    assertTrue(text.contains("# TYPE test_sent_total counter\ntest_sent_total 42\n"));
+  }
+}
@@ -0,0 +1,57 @@
+import java.util.Random;
+import models.GameBoard;
+import models.GameState;
+import models.Player;
+import models.TicTacToeTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TicTacToeTableTest {
+
+  private final TicTacToeTable table = TicTacToeTable.get();
+
+  @Test
+  public void solvedGameTest() {
+    // 5478 positions for each piece moving first
+    assertEquals(2 * 5478, table.getStateCount());
+    int start = table.stateOf(0, 'X');
+    assertEquals(0b111111111, table.legalMoves(start));
+    assertEquals(TicTacToeTable.DRAW, table.outcome(start));
+
+    // X on 0 and 1, O on 3 and 4: X to move takes the row, O to move takes its own
+    int code = 1 + 3 + 2 * 27 + 2 * 81;
+    assertEquals(2, table.bestMove(table.stateOf(code, 'X')));
+    assertEquals(5, table.bestMove(table.stateOf(code, 'O')));
+    assertEquals(TicTacToeTable.X_WINS, table.outcome(table.stateOf(code, 'X')));
+    int won = table.next(table.stateOf(code, 'X'), 2);
+    assertEquals(TicTacToeTable.X_WINS, table.resultOf(table.codeOf(won)));
+    assertEquals(0, table.legalMoves(won));
+    assertEquals(-1, table.next(table.stateOf(code, 'X'), 0));
+  }
+
+  @Test
+  public void boardFollowsTableTest() {
+    Random random = new Random(42);
+    for (int game = 0; game < 200; game++) {
+      GameBoard board = new GameBoard(new Player(game % 2 == 0 ? 'X' : 'O', 1),
+          new Player(game % 2 == 0 ? 'O' : 'X', 2));
+      int state = board.getTableState();
+      GameState result = GameState.CONTINUE;
+      while (result == GameState.CONTINUE) {
+        int cell = random.nextInt(9);
+        if (table.next(state, cell) < 0) {
+          continue;
+        }
+        Player mover = board.getTurn() == 1 ? board.getP1() : board.getP2();
+        board.setBoardState(cell / 3, cell % 3, mover.getType());
+        board.setTurn(board.getTurn() == 1 ? 2 : 1);
+        state = table.next(state, cell);
+        assertEquals(state, board.getTableState());
+        result = board.checkGameResult(cell / 3, cell % 3);
+      }
+      assertTrue(table.resultOf(table.codeOf(state)) != TicTacToeTable.CONTINUE);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+import engine.Strategies;
+import engine.Strategy;
+import engine.Tournament;
+import engine.TournamentResult;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TournamentTest {
+
+  private final Tournament tournament = new Tournament(ForkJoinPool.commonPool(), 3, 3);
+
+  @Test
+  public void randomSelfPlayTest() {
+    // Random play on 3 x 3 ends about 58.5% / 28.8% / 12.7%
+    TournamentResult result = tournament.play(Strategies.RANDOM, Strategies.RANDOM, 100000);
+    assertEquals(100000, result.getGames());
+    assertEquals(0.585, result.getPlayer1Wins() / 100000.0, 0.01);
+    assertEquals(0.288, result.getPlayer2Wins() / 100000.0, 0.01);
+    assertTrue(result.getMoves() >= 5 * result.getGames());
+  }
+
+  @Test
+  public void roundRobinTest() {
+    Map<String, Strategy> strategies = new LinkedHashMap<>();
+    strategies.put("greedy", Strategies.GREEDY);
+    strategies.put("minimax", Strategies.byName("minimax"));
+    Map<String, TournamentResult> results = tournament.roundRobin(strategies, 2000);
+    assertEquals(4, results.size());
+    // Perfect play never loses and draws against itself
+    assertEquals(0, results.get("greedy vs minimax").getPlayer1Wins());
+    assertEquals(0, results.get("minimax vs greedy").getPlayer2Wins());
+    assertEquals(2000, results.get("minimax vs minimax").getDraws());
+    TournamentResult greedy = results.get("greedy vs greedy");
+    assertEquals(2000, greedy.getPlayer1Wins() + greedy.getPlayer2Wins() + greedy.getDraws());
+
+    assertThrows(IllegalArgumentException.class, () -> Strategies.byName("perfect"));
+    assertThrows(IllegalStateException.class, () -> tournament.play(board -> 0, board -> 0, 1));
+  }
+}
@@ -0,0 +1,216 @@
+import controllers.PlayGame;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import kong.unirest.Unirest;
+import kong.unirest.json.JSONObject;
+import models.BoardCodec;
+import models.GameBoard;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WebSocketTest {
+
+  /**
+   * Runs only once before the testing starts.
+   */
+  @BeforeAll
+  public static void init() {
+    // Start Server
+    PlayGame.main(null);
+  }
+
+  // Connect to the board WebSocket and collect the binary messages it receives
+  private static WebSocket connectBinary(String query, BlockingQueue<byte[]> frames) {
+    WebSocket.Listener listener = new WebSocket.Listener() {
+      private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+
+      @Override
+      public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        frame.writeBytes(bytes);
+        if (last) {
+          frames.add(frame.toByteArray());
+          frame.reset();
+        }
+        webSocket.request(1);
+        return null;
+      }
+    };
+    return HttpClient.newHttpClient().newWebSocketBuilder()
+        .buildAsync(URI.create("ws://localhost:8080/gameboard" + query), listener).join();
+  }
+
+  // Connect to the board WebSocket and collect the text messages it receives
+  private static WebSocket connect(String query, BlockingQueue<String> messages) {
+    WebSocket.Listener listener = new WebSocket.Listener() {
+      private final StringBuilder text = new StringBuilder();
+
+      @Override
+      public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        text.append(data);
+        if (last) {
+          messages.add(text.toString());
+          text.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+      }
+    };
+    return HttpClient.newHttpClient().newWebSocketBuilder()
+        .buildAsync(URI.create("ws://localhost:8080/gameboard" + query), listener).join();
+  }
+
+  private static JSONObject next(BlockingQueue<String> messages) throws InterruptedException {
+    String message = messages.poll(5, TimeUnit.SECONDS);
+    return new JSONObject(message);
+  }
+
+  @Test
+  public void deltaProtocolTest() throws InterruptedException {
+    BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    WebSocket webSocket = connect("?protocol=delta&gameId=ws1", messages);
+
+    Unirest.post("http://localhost:8080/game/ws1/startgame").body("type=X").asString();
+    Unirest.get("http://localhost:8080/game/ws1/joingame").asString();
+    // Joining is not a move, so it comes as a snapshot
+    JSONObject joined = next(messages);
+    assertEquals("snapshot", joined.get("type"));
+    assertEquals(true, joined.getJSONObject("board").get("gameStarted"));
+
+    Unirest.post("http://localhost:8080/game/ws1/move/1").body("x=2&y=1").asString();
+    JSONObject delta = next(messages);
+    assertEquals("delta", delta.get("type"));
+    assertEquals("ws1", delta.get("gameId"));
+    assertEquals(1, delta.get("seq"));
+    assertEquals(2, delta.get("x"));
+    assertEquals(1, delta.get("y"));
+    assertEquals("X", delta.get("piece"));
+    assertEquals(2, delta.get("turn"));
+
+    // A client which missed updates asks for the whole board
+    webSocket.sendText("{\"type\":\"resync\",\"gameId\":\"ws1\"}", true).join();
+    JSONObject snapshot = next(messages);
+    assertEquals("snapshot", snapshot.get("type"));
+    assertEquals(1, snapshot.getJSONObject("board").get("moveCount"));
+    webSocket.abort();
+  }
+
+  @Test
+  public void fullBoardProtocolTest() throws InterruptedException {
+    BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    WebSocket webSocket = connect("?gameId=ws2", messages);
+
+    Unirest.post("http://localhost:8080/game/ws2/startgame").body("type=O").asString();
+    Unirest.get("http://localhost:8080/game/ws2/joingame").asString();
+    next(messages);
+    Unirest.post("http://localhost:8080/game/ws2/move/1").body("x=0&y=0").asString();
+    // The bundled UI keeps receiving the whole board
+    JSONObject board = next(messages);
+    assertEquals("O", board.getJSONArray("boardState").getJSONArray(0).getString(0));
+    webSocket.abort();
+  }
+
+  @Test
+  public void perGameRoutingTest() throws InterruptedException {
+    BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    WebSocket webSocket = connect("?gameId=ws3", messages);
+
+    // Updates of another game never reach this session
+    Unirest.post("http://localhost:8080/game/ws4/startgame").body("type=X").asString();
+    Unirest.get("http://localhost:8080/game/ws4/joingame").asString();
+    Unirest.post("http://localhost:8080/game/ws4/move/1").body("x=1&y=1").asString();
+    Unirest.post("http://localhost:8080/game/ws3/startgame").body("type=O").asString();
+    Unirest.get("http://localhost:8080/game/ws3/joingame").asString();
+    JSONObject board = next(messages);
+    assertEquals("O", board.getJSONObject("p1").get("type"));
+
+    // Switching to the other game answers with its board, then follows it
+    webSocket.sendText("{\"type\":\"subscribe\",\"gameId\":\"ws4\"}", true).join();
+    board = next(messages);
+    assertEquals("X", board.getJSONArray("boardState").getJSONArray(1).getString(1));
+    Unirest.post("http://localhost:8080/game/ws3/move/1").body("x=0&y=0").asString();
+    Unirest.post("http://localhost:8080/game/ws4/move/2").body("x=0&y=0").asString();
+    board = next(messages);
+    assertEquals(2, board.get("moveCount"));
+    assertEquals(null, messages.poll(200, TimeUnit.MILLISECONDS));
+    webSocket.abort();
+  }
+
+  @Test
+  public void binaryFormatTest() throws InterruptedException {
+    BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+    WebSocket webSocket = connectBinary("?format=binary&gameId=ws5", frames);
+
+    Unirest.post("http://localhost:8080/game/ws5/startgame").body("type=X").asString();
+    Unirest.get("http://localhost:8080/game/ws5/joingame").asString();
+    GameBoard board = BoardCodec.decodeBoard(frames.poll(5, TimeUnit.SECONDS));
+    assertEquals(true, board.isGameStarted());
+
+    Unirest.post("http://localhost:8080/game/ws5/move/1").body("x=0&y=2").asString();
+    byte[] delta = frames.poll(5, TimeUnit.SECONDS);
+    assertArrayEquals(new byte[] {BoardCodec.DELTA, 1, 0, 2, 'X', 2, 0, 0, 1, 3, 'w', 's', '5'},
+        delta);
+
+    // Requests stay JSON, the reply is a BOARD frame
+    webSocket.sendText("{\"type\":\"resync\",\"gameId\":\"ws5\"}", true).join();
+    board = BoardCodec.decodeBoard(frames.poll(5, TimeUnit.SECONDS));
+    assertEquals('X', board.getCell(0, 2));
+    webSocket.abort();
+  }
+
+  @Test
+  public void matchmakingTest() throws InterruptedException {
+    BlockingQueue<String> first = new LinkedBlockingQueue<>();
+    BlockingQueue<String> second = new LinkedBlockingQueue<>();
+    WebSocket p1 = connect("?protocol=delta&gameId=lobby", first);
+    WebSocket p2 = connect("?protocol=delta&gameId=lobby", second);
+
+    p1.sendText("{\"type\":\"enqueue\",\"piece\":\"O\",\"name\":\"dana\"}", true).join();
+    assertEquals("queued", next(first).get("type"));
+    p1.sendText("{\"type\":\"enqueue\"}", true).join();
+    assertEquals("alreadyQueued", next(first).get("type"));
+    p2.sendText("{\"type\":\"enqueue\"}", true).join();
+    assertEquals("queued", next(second).get("type"));
+
+    // Both players are moved to a new game, the first one with the piece it asked for
+    JSONObject matched = next(first);
+    assertEquals("matched", matched.get("type"));
+    assertEquals(1, matched.get("playerId"));
+    assertEquals("O", matched.get("piece"));
+    String gameId = matched.getString("gameId");
+    JSONObject opponent = next(second);
+    assertEquals(gameId, opponent.get("gameId"));
+    assertEquals(2, opponent.get("playerId"));
+    assertEquals("X", opponent.get("piece"));
+    assertEquals(true, next(first).getJSONObject("board").get("gameStarted"));
+    assertEquals("snapshot", next(second).get("type"));
+
+    Unirest.post("http://localhost:8080/game/" + gameId + "/move/1").body("x=1&y=1").asString();
+    assertEquals("O", next(second).get("piece"));
+    p2.sendText("{\"type\":\"dequeue\"}", true).join();
+    assertEquals("notQueued", next(second).get("type"));
+    p1.abort();
+    p2.abort();
+  }
+
+  /**
+   * This method runs only once after all the test cases have been executed.
+   */
+  @AfterAll
+  public static void close() {
+    // Stop Server
+    PlayGame.stop();
+  }
+}
@@ -0,0 +1,144 @@
+import controllers.WsBroadcaster;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class WsBroadcasterTest {
+
+  // Session whose writes only complete when the test says so
+  private static class FakeSession {
+    private final List<String> written = new ArrayList<>();
+    private final List<WriteCallback> callbacks = new ArrayList<>();
+    private boolean open = true;
+    private int closeCode;
+
+    private final Session session = (Session) Proxy.newProxyInstance(
+        Session.class.getClassLoader(), new Class<?>[] {Session.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "isOpen":
+              return open;
+            case "getRemote":
+              return remote();
+            case "close":
+              open = false;
+              closeCode = args == null ? 0 : (Integer) args[0];
+              return null;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+
+    private RemoteEndpoint remote() {
+      return (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+          new Class<?>[] {RemoteEndpoint.class}, (proxy, method, args) -> {
+            if ("sendString".equals(method.getName()) && args.length == 2) {
+              written.add((String) args[0]);
+              callbacks.add((WriteCallback) args[1]);
+            }
+            return null;
+          });
+    }
+
+    private void completeWrite() {
+      callbacks.get(callbacks.size() - 1).writeSuccess();
+    }
+  }
+
+  @Test
+  public void slowSessionDoesNotBlockOthersTest() {
+    WsBroadcaster broadcaster = new WsBroadcaster(4, 60000);
+    FakeSession slow = new FakeSession();
+    FakeSession fast = new FakeSession();
+    for (int i = 1; i <= 3; i++) {
+      broadcaster.send(slow.session, "g1", "delta" + i, false);
+      broadcaster.send(fast.session, "g1", "delta" + i, false);
+      fast.completeWrite();
+    }
+    // One write at a time, the rest waits in the queue
+    assertEquals(List.of("delta1"), slow.written);
+    assertEquals(List.of("delta1", "delta2", "delta3"), fast.written);
+    assertEquals(2, broadcaster.getQueueDepth());
+
+    slow.completeWrite();
+    assertEquals(List.of("delta1", "delta2"), slow.written);
+  }
+
+  @Test
+  public void fullBoardSupersedesPendingMessagesTest() {
+    WsBroadcaster broadcaster = new WsBroadcaster(4, 60000);
+    FakeSession session = new FakeSession();
+    broadcaster.send(session.session, "g1", "board1", true);
+    broadcaster.send(session.session, "g1", "delta2", false);
+    broadcaster.send(session.session, "g2", "other", true);
+    broadcaster.send(session.session, "g1", "board3", true);
+    assertEquals(1, broadcaster.getCoalescedCount());
+
+    session.completeWrite();
+    session.completeWrite();
+    session.completeWrite();
+    assertEquals(List.of("board1", "other", "board3"), session.written);
+    assertEquals(0, broadcaster.getQueueDepth());
+  }
+
+  @Test
+  public void controlMessagesAreNotSupersededTest() {
+    WsBroadcaster broadcaster = new WsBroadcaster(4, 60000);
+    FakeSession first = new FakeSession();
+    FakeSession second = new FakeSession();
+    for (FakeSession player : List.of(first, second)) {
+      // Still writing the queue reply when the match comes in
+      broadcaster.send(player.session, WsBroadcaster.CONTROL, "queued", false);
+      broadcaster.send(player.session, WsBroadcaster.CONTROL, "matched", false);
+    }
+    for (FakeSession player : List.of(first, second)) {
+      broadcaster.send(player.session, "m1", "board", true);
+    }
+    assertEquals(0, broadcaster.getCoalescedCount());
+
+    for (FakeSession player : List.of(first, second)) {
+      player.completeWrite();
+      player.completeWrite();
+      assertEquals(List.of("queued", "matched", "board"), player.written);
+    }
+  }
+
+  @Test
+  public void fullQueueDropsOldestTest() {
+    WsBroadcaster broadcaster = new WsBroadcaster(2, 60000);
+    FakeSession session = new FakeSession();
+    for (int i = 1; i <= 5; i++) {
+      broadcaster.send(session.session, "g1", "delta" + i, false);
+    }
+    assertEquals(2, broadcaster.getQueueDepth());
+    assertEquals(2, broadcaster.getDroppedCount());
+
+    session.completeWrite();
+    session.completeWrite();
+    assertEquals(List.of("delta1", "delta4", "delta5"), session.written);
+  }
+
+  @Test
+  public void laggingSessionIsEvictedTest() throws InterruptedException {
+    WsBroadcaster broadcaster = new WsBroadcaster(8, 10);
+    FakeSession session = new FakeSession();
+    broadcaster.send(session.session, "g1", "delta1", false);
+    Thread.sleep(50);
+    broadcaster.send(session.session, "g1", "delta2", false);
+    assertFalse(session.open);
+    assertEquals(1008, session.closeCode);
+    assertEquals(1, broadcaster.getEvictedCount());
+    assertEquals(0, broadcaster.getSessionCount());
+    assertEquals(0, broadcaster.getQueueDepth());
+  }
+}